@@ -228,33 +228,36 @@ public abstract class AbstractPath implements Comparable<AbstractPath> {
         if (queryString == null) {
             return Collections.emptyMap();
         }
-        Map<String, List<String>> out = new HashMap<String, List<String>>();
-        if (queryString != null && queryString.length() > 0) {
-            String qs = queryString;
-            if (queryString.startsWith("?")) {
-                qs = queryString.substring(1);
-            }
-            for (String kvPair : qs.split("&")) {
-                String[] kv = kvPair.split("=", 2);
-                if (kv[0].length() == 0) {
-                    continue;
-                }
-                List<String> values = out.get(kv[0]);
+        final Map<String, List<String>> out = new HashMap<String, List<String>>();
+        QueryParser.parse(queryString, new QueryParser.IQueryListener() {
+            public void onParam(
+                CharSequence query,
+                int nameBegin,
+                int nameEnd,
+                int valueBegin,
+                int valueEnd) {
+                String name = QueryParser.getString(
+                    query,
+                    nameBegin,
+                    nameEnd,
+                    false);
+                List<String> values = out.get(name);
                 if (values == null) {
                     values = new ArrayList<String>();
-                    out.put(kv[0], values);
+                    out.put(name, values);
                 }
-                String value = kv.length > 0 && kv[1].length() > 0
-                    ? decode(kv[1])
-                    : "";
+                String value = valueBegin < valueEnd ? QueryParser.getString(
+                    query,
+                    valueBegin,
+                    valueEnd,
+                    true) : "";
                 values.add(value);
             }
-        }
+        });
         for (Map.Entry<String, List<String>> entry : out.entrySet()) {
             entry.setValue(Collections.unmodifiableList(entry.getValue()));
         }
-        out = Collections.unmodifiableMap(out);
-        return out;
+        return Collections.unmodifiableMap(out);
     }
 
     /**
@@ -437,6 +440,14 @@ public abstract class AbstractPath implements Comparable<AbstractPath> {
 
     public abstract List<String> getPathSegments();
 
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
     public abstract boolean hasPathTrailingSeparator();
 
     public abstract boolean isAbsolutePath();
@@ -329,6 +329,48 @@ public abstract class AbstractUri {
 
     public abstract Path.Builder getPathBuilder();
 
+    /**
+     * Returns the first value of the query parameter with the specified name.
+     * If there is no such a parameter or if it has no value then this method
+     * returns <code>null</code>.
+     * 
+     * @param name the name of the query parameter
+     * @return the first value of the parameter with the specified name
+     * @see #hasParam(String)
+     */
+    public String getParam(String name) {
+        List<QueryItem> query = getQueryItems();
+        if (query != null && name != null) {
+            for (QueryItem item : query) {
+                if (name.equals(item.name)) {
+                    return item.getValue(false, false);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all values of the query parameter with the specified name in the
+     * order they are defined in the query.
+     * 
+     * @param name the name of the query parameter
+     * @return a list of all values of the parameter with the specified name;
+     *         this method never returns <code>null</code>
+     */
+    public List<String> getParams(String name) {
+        List<String> result = new ArrayList<String>();
+        List<QueryItem> query = getQueryItems();
+        if (query != null && name != null) {
+            for (QueryItem item : query) {
+                if (name.equals(item.name)) {
+                    result.add(item.getValue(false, false));
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * @return the port number of this uri
      */
@@ -546,6 +588,25 @@ public abstract class AbstractUri {
         return !isEmpty(getUserInfo()) || !isEmpty(getHost()) || getPort() != 0;
     }
 
+    /**
+     * Returns <code>true</code> if the query of this uri contains a parameter
+     * with the specified name (with or without value).
+     * 
+     * @param name the name of the parameter to check
+     * @return <code>true</code> if the query contains the specified parameter
+     */
+    public boolean hasParam(String name) {
+        List<QueryItem> query = getQueryItems();
+        if (query != null && name != null) {
+            for (QueryItem item : query) {
+                if (name.equals(item.name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public int hashCode() {
         int a = hashCode(getSchemeSegments());
@@ -1,11 +1,15 @@
 package org.ubimix.commons.uri;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 import org.ubimix.commons.uri.AbstractPathBuilder.PathParseListener;
 import org.ubimix.commons.uri.Path.Builder;
+import org.ubimix.commons.uri.QueryParser.IQueryListener;
 import org.ubimix.commons.uri.UriParser.CompositeUriListener;
 import org.ubimix.commons.uri.UriParser.IUriListener;
 
@@ -17,6 +21,41 @@ public abstract class AbstractUriBuilder<T extends AbstractUriBuilder<T>>
     extends
     AbstractUri {
 
+    /**
+     * Filters of this type are used to select query items in bulk query
+     * operations.
+     * 
+     * @see AbstractUriBuilder#removeParams(IQueryItemFilter)
+     * @see AbstractUriBuilder#retainParams(IQueryItemFilter)
+     */
+    public interface IQueryItemFilter {
+
+        /**
+         * @param item the query item to check
+         * @return <code>true</code> if the given item is selected by this
+         *         filter
+         */
+        boolean accept(QueryItem item);
+
+    }
+
+    /**
+     * This filter selects query items with names from the given collection.
+     */
+    private static class NameFilter implements IQueryItemFilter {
+
+        private final Collection<String> fNames;
+
+        public NameFilter(Collection<String> names) {
+            fNames = names;
+        }
+
+        public boolean accept(QueryItem item) {
+            return fNames.contains(item.name);
+        }
+
+    }
+
     public static class UriParseListener extends UriParser.UriListener {
         private AbstractUriBuilder<?> fBuilder;
 
@@ -130,6 +169,17 @@ public abstract class AbstractUriBuilder<T extends AbstractUriBuilder<T>>
         return list;
     }
 
+    /**
+     * This comparator is used to sort query items by their names. Items with
+     * the same names keep their relative order. It is also used by the
+     * {@link UriNormalizer}.
+     */
+    final static Comparator<QueryItem> NAME_COMPARATOR = new Comparator<QueryItem>() {
+        public int compare(QueryItem o1, QueryItem o2) {
+            return o1.name.compareTo(o2.name);
+        }
+    };
+
     private String fFragment;
 
     private String fHost;
@@ -554,21 +604,178 @@ public abstract class AbstractUriBuilder<T extends AbstractUriBuilder<T>>
     }
 
     public T removeParam(String key) {
-        if (fQueryItems == null || fQueryItems.size() == 0 || key == null) {
+        if (key == null) {
+            return cast();
+        }
+        return removeParams(Collections.singleton(key));
+    }
+
+    /**
+     * Removes all query items with names from the given collection. All
+     * remaining items keep their order. This method scans the query only once
+     * so the given collection should provide fast look-ups (like sets).
+     * 
+     * @param keys names of query parameters to remove
+     * @return a reference to this object
+     */
+    public T removeParams(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return cast();
+        }
+        return filterParams(new NameFilter(keys), false);
+    }
+
+    /**
+     * Removes all query items accepted by the given filter. All remaining
+     * items keep their order.
+     * 
+     * @param filter the filter selecting items to remove
+     * @return a reference to this object
+     */
+    public T removeParams(IQueryItemFilter filter) {
+        return filterParams(filter, false);
+    }
+
+    /**
+     * Keeps in the query only items accepted by the given filter and removes
+     * all the others. The order of items is preserved.
+     * 
+     * @param filter the filter selecting items to keep
+     * @return a reference to this object
+     */
+    public T retainParams(IQueryItemFilter filter) {
+        return filterParams(filter, true);
+    }
+
+    /**
+     * Keeps in the query only items with names from the given collection and
+     * removes all the others. The order of items is preserved.
+     * 
+     * @param keys names of query parameters to keep
+     * @return a reference to this object
+     */
+    public T retainParams(Collection<String> keys) {
+        if (keys == null) {
+            keys = Collections.emptySet();
+        }
+        return filterParams(new NameFilter(keys), true);
+    }
+
+    /**
+     * Replaces the value of the specified query parameter. The first item with
+     * the given name gets a new value and all other items with the same name
+     * are removed. If there is no such a parameter then a new item is
+     * appended to the query.
+     * 
+     * @param key the name of the parameter
+     * @param value the new value of the parameter
+     * @return a reference to this object
+     */
+    public T replaceParam(String key, String value) {
+        return replaceParam(key, value, true);
+    }
+
+    /**
+     * Replaces the value of the specified query parameter.
+     * 
+     * @param key the name of the parameter
+     * @param value the new value of the parameter
+     * @param decode if this flag is <code>true</code> then the given name and
+     *        value are decoded
+     * @return a reference to this object
+     * @see #replaceParam(String, String)
+     */
+    public T replaceParam(String key, String value, boolean decode) {
+        if (key == null) {
             return cast();
         }
-        for (int i = fQueryItems.size() - 1; i >= 0; i--) {
+        QueryItem newItem = new QueryItem(key, value, decode);
+        String name = newItem.name;
+        int len = fQueryItems.size();
+        int pos = 0;
+        boolean replaced = false;
+        for (int i = 0; i < len; i++) {
             QueryItem item = fQueryItems.get(i);
-            if (key.equals(item.name)) {
-                fQueryItems.remove(i);
+            if (name.equals(item.name)) {
+                if (replaced) {
+                    continue;
+                }
+                item = newItem;
+                replaced = true;
             }
+            fQueryItems.set(pos++, item);
+        }
+        truncateParams(pos);
+        if (!replaced) {
+            fQueryItems.add(newItem);
+        }
+        return cast();
+    }
+
+    /**
+     * Sorts query items by their names. Items with the same names keep their
+     * relative order.
+     * 
+     * @return a reference to this object
+     */
+    public T sortParams() {
+        return sortParams(NAME_COMPARATOR);
+    }
+
+    /**
+     * Sorts query items using the given comparator. The sort is stable - equal
+     * items keep their relative order.
+     * 
+     * @param comparator the comparator used to sort items
+     * @return a reference to this object
+     */
+    public T sortParams(Comparator<QueryItem> comparator) {
+        if (fQueryItems.size() > 1) {
+            Collections.sort(fQueryItems, comparator);
+        }
+        return cast();
+    }
+
+    /**
+     * Removes or keeps query items accepted by the filter. This method
+     * compacts the list of items in place in one pass.
+     * 
+     * @param filter the filter to apply
+     * @param keep if this flag is <code>true</code> then this method keeps
+     *        items accepted by the filter; otherwise these items are removed
+     * @return a reference to this object
+     */
+    private T filterParams(IQueryItemFilter filter, boolean keep) {
+        if (filter == null) {
+            return cast();
         }
-        if (fQueryItems.isEmpty()) {
-            fQueryItems = null;
+        int len = fQueryItems.size();
+        int pos = 0;
+        for (int i = 0; i < len; i++) {
+            QueryItem item = fQueryItems.get(i);
+            if (filter.accept(item) == keep) {
+                if (pos != i) {
+                    fQueryItems.set(pos, item);
+                }
+                pos++;
+            }
         }
+        truncateParams(pos);
         return cast();
     }
 
+    /**
+     * Removes all query items starting from the specified position.
+     * 
+     * @param size the new number of query items
+     */
+    private void truncateParams(int size) {
+        int len = fQueryItems.size();
+        if (size < len) {
+            fQueryItems.subList(size, len).clear();
+        }
+    }
+
     /**
      * Returns a copy of this uri with removed scheme segments. If the given
      * <code>begin</code> flag is <code>true</code> then this method removes
@@ -732,17 +939,36 @@ public abstract class AbstractUriBuilder<T extends AbstractUriBuilder<T>>
             return;
         }
         fQueryItems.clear();
-        String[] array = query.split("[&]");
-        for (String str : array) {
-            String[] pair = str.split("=");
-            String name = pair[0].trim();
-            if ("".equals(name)) {
-                continue;
+        QueryParser.parse(query, 0, query.length(), new IQueryListener() {
+            public void onParam(
+                CharSequence query,
+                int nameBegin,
+                int nameEnd,
+                int valueBegin,
+                int valueEnd) {
+                // Items are decoded only if they contain encoded symbols
+                boolean decode = QueryParser.isEncoded(
+                    query,
+                    nameBegin,
+                    nameEnd);
+                String name = QueryParser.getString(
+                    query,
+                    nameBegin,
+                    nameEnd,
+                    false);
+                String value = null;
+                if (valueBegin < valueEnd) {
+                    decode |= QueryParser.isEncoded(query, valueBegin, valueEnd);
+                    value = QueryParser.getString(
+                        query,
+                        valueBegin,
+                        valueEnd,
+                        false);
+                }
+                QueryItem item = new QueryItem(name, value, decode);
+                fQueryItems.add(item);
             }
-            String value = pair.length > 1 ? pair[1] : null;
-            QueryItem item = new QueryItem(name, value);
-            fQueryItems.add(item);
-        }
+        });
     }
 
     /**
@@ -57,6 +57,11 @@ public class Path extends AbstractPath {
 
     public final static Path EMPTY = new Path("");
 
+    /**
+     * The cached hash code of this immutable path
+     */
+    private int fHashCode;
+
     protected final boolean fPathAbsolute;
 
     protected final List<String> fPathSegments;
@@ -134,7 +139,12 @@ public class Path extends AbstractPath {
      */
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        int hashCode = fHashCode;
+        if (hashCode == 0) {
+            hashCode = super.hashCode();
+            fHashCode = hashCode;
+        }
+        return hashCode;
     }
 
     @Override
@@ -0,0 +1,191 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+/**
+ * This class splits query strings to individual parameters in one pass. It
+ * does not create any objects by itself - it just notifies the listener about
+ * the positions of names and values of all parameters. Parameters are
+ * separated by the '&amp;' and ';' symbols; the name of each parameter is
+ * separated from its value by the first '=' symbol, so values can contain
+ * '=' symbols as well.
+ *
+ * <pre>
+ *   name1=value1&amp;name2=value2=x;name3&amp;name4=
+ *   \___/ \____/ \___/ \______/ \___/ \___/|
+ *   name  value  name   value   name  name (empty value)
+ * </pre>
+ *
+ * @author kotelnikov
+ */
+public class QueryParser {
+
+    /**
+     * Listeners of this type are notified about each parameter found in the
+     * parsed query string.
+     */
+    public interface IQueryListener {
+
+        /**
+         * This method is called for each non-empty parameter of the query.
+         *
+         * @param query the parsed query string or array of characters
+         * @param nameBegin the position of the first symbol of the name
+         * @param nameEnd the position after the last symbol of the name
+         * @param valueBegin the position of the first symbol of the value or
+         *        <code>-1</code> if the parameter has no value (there is no
+         *        '=' symbol)
+         * @param valueEnd the position after the last symbol of the value or
+         *        <code>-1</code> if the parameter has no value
+         */
+        void onParam(
+            CharSequence query,
+            int nameBegin,
+            int nameEnd,
+            int valueBegin,
+            int valueEnd);
+
+    }
+
+    /**
+     * Returns a substring of the given query. If the flag <code>decode</code>
+     * is <code>true</code> and the substring contains encoded symbols then the
+     * returned value is decoded. Strings without encoded symbols are returned
+     * as is, without decoding.
+     *
+     * @param query the query string
+     * @param begin the begin of the substring to return
+     * @param end the end of the substring to return
+     * @param decode if this flag is <code>true</code> then the returned value
+     *        is decoded
+     * @return a (decoded) substring of the query
+     */
+    public static String getString(
+        CharSequence query,
+        int begin,
+        int end,
+        boolean decode) {
+        String str = query.subSequence(begin, end).toString();
+        if (decode && isEncoded(query, begin, end)) {
+            str = AbstractPath.decode(str);
+        }
+        return str;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified part of the given string
+     * contains encoded or escaped symbols ("%xx" sequences or '+' symbols).
+     *
+     * @param str the string to check
+     * @param begin the begin of the region to check
+     * @param end the end of the region to check
+     * @return <code>true</code> if the specified region should be decoded
+     */
+    public static boolean isEncoded(CharSequence str, int begin, int end) {
+        for (int i = begin; i < end; i++) {
+            char ch = str.charAt(i);
+            if (ch == '%' || ch == '+') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the given query string and notifies the listener about all
+     * found parameters. A leading '?' symbol is ignored. Spaces around names
+     * are skipped; parameters with empty names are ignored.
+     *
+     * @param query the query string to parse
+     * @param listener the listener to notify
+     */
+    public static void parse(String query, IQueryListener listener) {
+        if (query == null) {
+            return;
+        }
+        int begin = 0;
+        if (query.startsWith("?")) {
+            begin++;
+        }
+        parse(query, begin, query.length(), listener);
+    }
+
+    /**
+     * Parses the specified region of the query and notifies the listener
+     * about all found parameters. The query could be a string or any other
+     * sequence of characters, like a view on a shared array of characters.
+     *
+     * @param query the query to parse
+     * @param begin the begin of the region to parse
+     * @param end the end of the region to parse
+     * @param listener the listener to notify
+     */
+    public static void parse(
+        CharSequence query,
+        int begin,
+        int end,
+        IQueryListener listener) {
+        int start = begin;
+        int eq = -1;
+        for (int pos = begin; pos <= end; pos++) {
+            char ch = pos < end ? query.charAt(pos) : '&';
+            switch (ch) {
+                case '=':
+                    if (eq < 0) {
+                        eq = pos;
+                    }
+                    break;
+                case '&':
+                case ';':
+                    int nameEnd = eq >= 0 ? eq : pos;
+                    int nameBegin = start;
+                    while (nameBegin < nameEnd
+                        && query.charAt(nameBegin) <= ' ') {
+                        nameBegin++;
+                    }
+                    while (nameEnd > nameBegin
+                        && query.charAt(nameEnd - 1) <= ' ') {
+                        nameEnd--;
+                    }
+                    if (nameBegin < nameEnd) {
+                        if (eq >= 0) {
+                            listener.onParam(
+                                query,
+                                nameBegin,
+                                nameEnd,
+                                eq + 1,
+                                pos);
+                        } else {
+                            listener.onParam(query, nameBegin, nameEnd, -1, -1);
+                        }
+                    }
+                    start = pos + 1;
+                    eq = -1;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * This class contains only static methods.
+     */
+    private QueryParser() {
+    }
+
+}
@@ -39,6 +39,18 @@ public class Uri extends AbstractUri {
             return new Uri(this);
         }
 
+        /**
+         * Returns a canonical instance of the URI defined by this builder. If
+         * the given interner is <code>null</code> then this method just
+         * creates a new URI.
+         * 
+         * @param interner the interner used to share URIs and their components
+         * @return a canonical instance of the URI defined by this builder
+         */
+        public Uri build(UriInterner interner) {
+            return interner != null ? interner.intern(this) : build();
+        }
+
         @Override
         protected Builder cast(AbstractUri uri) {
             if (uri instanceof Builder) {
@@ -58,16 +70,99 @@ public class Uri extends AbstractUri {
 
     }
 
+    /**
+     * This index is used to access query parameters by their names without
+     * scanning the whole list of query items. It is an open-addressing hash
+     * table containing positions of the first items with each name; all
+     * other items with the same name are chained in the order of their
+     * appearance in the query.
+     */
+    private static class QueryIndex {
+
+        private final QueryItem[] fItems;
+
+        private final int fMask;
+
+        private final int[] fNext;
+
+        private final int[] fSlots;
+
+        public QueryIndex(List<QueryItem> items) {
+            int len = items.size();
+            fItems = items.toArray(new QueryItem[len]);
+            fNext = new int[len];
+            int capacity = 2;
+            while (capacity < len * 2) {
+                capacity <<= 1;
+            }
+            fSlots = new int[capacity];
+            fMask = capacity - 1;
+            // Items are indexed from the end to keep the first item with each
+            // name in the table and all the others chained in the query order
+            for (int i = len - 1; i >= 0; i--) {
+                String name = fItems[i].name;
+                int slot = getSlot(name);
+                int pos = fSlots[slot] - 1;
+                fNext[i] = pos;
+                fSlots[slot] = i + 1;
+            }
+        }
+
+        /**
+         * Returns the position of the first item with the specified name or
+         * <code>-1</code> if there is no such an item.
+         */
+        public int getFirst(String name) {
+            return fSlots[getSlot(name)] - 1;
+        }
+
+        public QueryItem getItem(int pos) {
+            return fItems[pos];
+        }
+
+        public int getNext(int pos) {
+            return fNext[pos];
+        }
+
+        /**
+         * Returns the slot occupied by the specified name or the first free
+         * slot where this name should be stored.
+         */
+        private int getSlot(String name) {
+            int h = name.hashCode();
+            h ^= (h >>> 16);
+            int slot = h & fMask;
+            while (true) {
+                int pos = fSlots[slot] - 1;
+                if (pos < 0 || name.equals(fItems[pos].name)) {
+                    return slot;
+                }
+                slot = (slot + 1) & fMask;
+            }
+        }
+
+    }
+
     public final static Uri EMPTY = new Uri("");
 
     private final String fFragment;
 
+    /**
+     * The cached hash code of this immutable uri
+     */
+    private int fHashCode;
+
     private final String fHost;
 
     private final Path fPath;
 
     private final int fPort;
 
+    /**
+     * The lazily created index of query parameters
+     */
+    private QueryIndex fQueryIndex;
+
     private final List<QueryItem> fQueryItems;
 
     private final List<String> fSchemeSegments;
@@ -80,9 +175,11 @@ public class Uri extends AbstractUri {
         fHost = uri.getHost();
         fPort = uri.getPort();
         List<QueryItem> queryItems = uri.getQueryItems();
-        fQueryItems = queryItems != null
-            ? Collections.unmodifiableList(queryItems)
-            : new ArrayList<AbstractUri.QueryItem>();
+        // The list is copied to keep the query index consistent even if the
+        // source builder is modified later
+        fQueryItems = queryItems != null && !queryItems.isEmpty()
+            ? Collections.unmodifiableList(new ArrayList<QueryItem>(queryItems))
+            : Collections.<QueryItem> emptyList();
         fSchemeSegments = Collections.unmodifiableList(uri.getSchemeSegments());
         fUserInfo = uri.getUserInfo();
     }
@@ -110,6 +207,36 @@ public class Uri extends AbstractUri {
         return fHost;
     }
 
+    /**
+     * @see org.ubimix.commons.uri.AbstractUri#getParam(java.lang.String)
+     */
+    @Override
+    public String getParam(String name) {
+        if (name == null || fQueryItems.isEmpty()) {
+            return null;
+        }
+        QueryIndex index = getQueryIndex();
+        int pos = index.getFirst(name);
+        return pos >= 0 ? index.getItem(pos).getValue(false, false) : null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.AbstractUri#getParams(java.lang.String)
+     */
+    @Override
+    public List<String> getParams(String name) {
+        List<String> result = new ArrayList<String>();
+        if (name == null || fQueryItems.isEmpty()) {
+            return result;
+        }
+        QueryIndex index = getQueryIndex();
+        for (int pos = index.getFirst(name); pos >= 0; pos = index
+            .getNext(pos)) {
+            result.add(index.getItem(pos).getValue(false, false));
+        }
+        return result;
+    }
+
     public Uri getParent() {
         Path path = getPath();
         if (path.isEmpty()) {
@@ -148,6 +275,22 @@ public class Uri extends AbstractUri {
         return fQueryItems;
     }
 
+    /**
+     * Returns the index of query parameters. This index is created on demand.
+     * Note that this instance is immutable so the index can be safely re-used
+     * (and eventually re-created by concurrent threads).
+     * 
+     * @return the index of query parameters
+     */
+    private QueryIndex getQueryIndex() {
+        QueryIndex index = fQueryIndex;
+        if (index == null) {
+            index = new QueryIndex(fQueryItems);
+            fQueryIndex = index;
+        }
+        return index;
+    }
+
     public Uri getRelative(AbstractUri anotherUri) {
         return getBuilder().getRelative(anotherUri).build();
     }
@@ -182,4 +325,28 @@ public class Uri extends AbstractUri {
         return fUserInfo;
     }
 
+    /**
+     * @see org.ubimix.commons.uri.AbstractUri#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = fHashCode;
+        if (hashCode == 0) {
+            hashCode = super.hashCode();
+            fHashCode = hashCode;
+        }
+        return hashCode;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.AbstractUri#hasParam(java.lang.String)
+     */
+    @Override
+    public boolean hasParam(String name) {
+        if (name == null || fQueryItems.isEmpty()) {
+            return false;
+        }
+        return getQueryIndex().getFirst(name) >= 0;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,874 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A column-oriented batch of URIs. It is used to analyze big numbers of URIs
+ * without creating objects for each URI and each of its parts.
+ * <p>
+ * All URIs of the batch are stored one after another in one array of
+ * characters. When a URI is added it is split in parts with the same rules as
+ * the {@link UriParser} and the positions of these parts are stored in
+ * parallel arrays of integers: one pair of arrays (begin, end) for each
+ * component (scheme, user info, host, path, query and fragment), one array
+ * for ports and shared arrays with the positions of path segments and query
+ * parameters. All values are kept as they are in the original strings; they
+ * are not decoded nor normalized.
+ * </p>
+ * <p>
+ * Bulk operations ({@link #filterByHost(String, boolean)},
+ * {@link #groupByExtension()}, {@link #extractParam(String)}) scan these
+ * arrays sequentially and create strings only for returned values.
+ * </p>
+ *
+ * <pre>
+ * UriBatch batch = new UriBatch();
+ * for (String str : lines) {
+ *     batch.add(str);
+ * }
+ * int[] selected = batch.filterByHost("example.com", true);
+ * Map&lt;String, int[]&gt; types = batch.groupByExtension();
+ * String[] ids = batch.extractParam("id");
+ * </pre>
+ * <p>
+ * Instances of this class are not thread-safe.
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public class UriBatch implements Iterable<Uri> {
+
+    /**
+     * A view on the shared array of characters; it is used to split queries
+     * with the {@link QueryParser} without copying them.
+     */
+    private class Chars implements CharSequence, QueryParser.IQueryListener {
+
+        public char charAt(int index) {
+            return fChars[index];
+        }
+
+        public int length() {
+            return fLength;
+        }
+
+        public void onParam(
+            CharSequence query,
+            int nameBegin,
+            int nameEnd,
+            int valueBegin,
+            int valueEnd) {
+            addParam(nameBegin, nameEnd, valueBegin, valueEnd);
+        }
+
+        public CharSequence subSequence(int begin, int end) {
+            return getString(begin, end);
+        }
+
+        @Override
+        public String toString() {
+            return getString(0, fLength);
+        }
+
+    }
+
+    public static final int FRAGMENT = 5;
+
+    public static final int HOST = 2;
+
+    public static final int PATH = 3;
+
+    public static final int QUERY = 4;
+
+    public static final int SCHEME = 0;
+
+    public static final int USER_INFO = 1;
+
+    private static final int COMPONENT_COUNT = 6;
+
+    private static final byte FLAG_ABSOLUTE = 1;
+
+    private static final byte FLAG_TRAILING_SEPARATOR = 2;
+
+    private static int[] grow(int[] array, int size) {
+        if (size <= array.length) {
+            return array;
+        }
+        int[] result = new int[Math.max(size, array.length * 2)];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static boolean isSeparator(char ch) {
+        return ch == '/' || ch == '\\';
+    }
+
+    /**
+     * Positions of components. For each component there are two values per
+     * URI: the begin and the end of the component. The begin is
+     * <code>-1</code> if the component is not defined.
+     */
+    private final int[][] fBounds = new int[COMPONENT_COUNT][];
+
+    private char[] fChars;
+
+    private final Chars fCharsView = new Chars();
+
+    private byte[] fFlags;
+
+    private int fLength;
+
+    /**
+     * Positions of query parameters: four values (name begin, name end, value
+     * begin, value end) for each parameter. The value begin is
+     * <code>-1</code> if the parameter has no value.
+     */
+    private int[] fParamBounds;
+
+    private int fParamCount;
+
+    /**
+     * Index of the first parameter of each URI in the {@link #fParamBounds}
+     * array; it has <code>size + 1</code> values.
+     */
+    private int[] fParamIndex;
+
+    private int[] fPorts;
+
+    /**
+     * Positions of path segments: two values (begin, end) for each segment.
+     */
+    private int[] fSegmentBounds;
+
+    private int fSegmentCount;
+
+    /**
+     * Index of the first path segment of each URI in the
+     * {@link #fSegmentBounds} array; it has <code>size + 1</code> values.
+     */
+    private int[] fSegmentIndex;
+
+    private int fSize;
+
+    /**
+     * Positions of URIs in the array of characters; it has
+     * <code>size + 1</code> values.
+     */
+    private int[] fUriOffsets;
+
+    /**
+     * Creates a new empty batch.
+     */
+    public UriBatch() {
+        this(1024, 64);
+    }
+
+    /**
+     * @param capacity the expected number of URIs
+     * @param averageLength the expected average length of URIs
+     */
+    public UriBatch(int capacity, int averageLength) {
+        capacity = Math.max(capacity, 1);
+        fChars = new char[Math.max(capacity * averageLength, 16)];
+        fUriOffsets = new int[capacity + 1];
+        for (int i = 0; i < COMPONENT_COUNT; i++) {
+            fBounds[i] = new int[capacity * 2];
+        }
+        fPorts = new int[capacity];
+        fFlags = new byte[capacity];
+        fSegmentIndex = new int[capacity + 1];
+        fSegmentBounds = new int[capacity * 4];
+        fParamIndex = new int[capacity + 1];
+        fParamBounds = new int[capacity * 4];
+    }
+
+    /**
+     * Adds a new URI to this batch.
+     *
+     * @param uri the URI to add
+     * @return the index of the added URI
+     */
+    public int add(CharSequence uri) {
+        int len = uri != null ? uri.length() : 0;
+        if (fLength + len > fChars.length) {
+            char[] chars = new char[Math.max(fLength + len, fChars.length * 2)];
+            System.arraycopy(fChars, 0, chars, 0, fLength);
+            fChars = chars;
+        }
+        for (int i = 0; i < len; i++) {
+            fChars[fLength + i] = uri.charAt(i);
+        }
+        int begin = fLength;
+        fLength += len;
+        ensureCapacity(fSize + 1);
+        int index = fSize++;
+        fUriOffsets[index + 1] = fLength;
+        for (int i = 0; i < COMPONENT_COUNT; i++) {
+            setBounds(i, index, -1, -1);
+        }
+        fPorts[index] = 0;
+        fFlags[index] = 0;
+        parse(index, begin, fLength);
+        fSegmentIndex[index + 1] = fSegmentCount;
+        fParamIndex[index + 1] = fParamCount;
+        return index;
+    }
+
+    /**
+     * Adds all given URIs to this batch.
+     *
+     * @param uris the URIs to add
+     */
+    public void addAll(Iterable<? extends CharSequence> uris) {
+        for (CharSequence uri : uris) {
+            add(uri);
+        }
+    }
+
+    private void addParam(int nameBegin, int nameEnd, int valueBegin, int valueEnd) {
+        fParamBounds = grow(fParamBounds, (fParamCount + 1) * 4);
+        int pos = fParamCount * 4;
+        fParamBounds[pos] = nameBegin;
+        fParamBounds[pos + 1] = nameEnd;
+        fParamBounds[pos + 2] = valueBegin;
+        fParamBounds[pos + 3] = valueEnd;
+        fParamCount++;
+    }
+
+    private void addSegment(int begin, int end) {
+        fSegmentBounds = grow(fSegmentBounds, (fSegmentCount + 1) * 2);
+        fSegmentBounds[fSegmentCount * 2] = begin;
+        fSegmentBounds[fSegmentCount * 2 + 1] = end;
+        fSegmentCount++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fSize) {
+            throw new IndexOutOfBoundsException("Index: "
+                + index
+                + ", Size: "
+                + fSize);
+        }
+    }
+
+    /**
+     * Removes all URIs from this batch. Allocated memory is kept for new URIs.
+     */
+    public void clear() {
+        fSize = 0;
+        fLength = 0;
+        fSegmentCount = 0;
+        fParamCount = 0;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size < fPorts.length) {
+            return;
+        }
+        int capacity = Math.max(size, fPorts.length * 2);
+        fUriOffsets = grow(fUriOffsets, capacity + 1);
+        for (int i = 0; i < COMPONENT_COUNT; i++) {
+            fBounds[i] = grow(fBounds[i], capacity * 2);
+        }
+        fPorts = grow(fPorts, capacity);
+        byte[] flags = new byte[capacity];
+        System.arraycopy(fFlags, 0, flags, 0, fFlags.length);
+        fFlags = flags;
+        fSegmentIndex = grow(fSegmentIndex, capacity + 1);
+        fParamIndex = grow(fParamIndex, capacity + 1);
+    }
+
+    private boolean equalsIgnoreCase(int begin, int end, String str, int offset) {
+        if (end - begin != str.length() - offset) {
+            return false;
+        }
+        for (int i = begin, j = offset; i < end; i++, j++) {
+            char a = fChars[i];
+            char b = str.charAt(j);
+            if (a != b
+                && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first value of the specified query parameter for each URI
+     * of this batch. Values are decoded. If a URI has no such a parameter (or
+     * if the parameter has no value) then the corresponding array item is
+     * <code>null</code>.
+     *
+     * @param name the name of the parameter
+     * @return an array with values of the parameter for all URIs
+     * @see AbstractUri#getParam(String)
+     */
+    public String[] extractParam(String name) {
+        String[] result = new String[fSize];
+        for (int i = 0; i < fSize; i++) {
+            int param = findParam(i, name);
+            if (param >= 0) {
+                result[i] = getParamValue(param);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns indexes of all URIs with the specified host. Hosts are compared
+     * ignoring case.
+     *
+     * @param host the host to search
+     * @param includeSubdomains if this flag is <code>true</code> then URIs on
+     *        sub-domains of the host are returned as well
+     * @return indexes of URIs on the specified host in the ascending order
+     */
+    public int[] filterByHost(String host, boolean includeSubdomains) {
+        int[] result = new int[16];
+        int count = 0;
+        int[] bounds = fBounds[HOST];
+        int len = host.length();
+        for (int i = 0; i < fSize; i++) {
+            int begin = bounds[i * 2];
+            int end = bounds[i * 2 + 1];
+            if (begin < 0 || end - begin < len) {
+                continue;
+            }
+            boolean accept;
+            if (end - begin == len) {
+                accept = equalsIgnoreCase(begin, end, host, 0);
+            } else {
+                accept = includeSubdomains
+                    && fChars[end - len - 1] == '.'
+                    && equalsIgnoreCase(end - len, end, host, 0);
+            }
+            if (accept) {
+                result = grow(result, count + 1);
+                result[count++] = i;
+            }
+        }
+        int[] array = new int[count];
+        System.arraycopy(result, 0, array, 0, count);
+        return array;
+    }
+
+    /**
+     * Returns the index of the first parameter with the given name in the
+     * specified URI or <code>-1</code> if there is no such a parameter.
+     */
+    private int findParam(int index, String name) {
+        int last = fParamIndex[index + 1];
+        for (int param = fParamIndex[index]; param < last; param++) {
+            int begin = fParamBounds[param * 4];
+            int end = fParamBounds[param * 4 + 1];
+            if (isEncoded(begin, end)) {
+                if (name.equals(AbstractPath.decode(getString(begin, end)))) {
+                    return param;
+                }
+            } else if (regionEquals(begin, end, name)) {
+                return param;
+            }
+        }
+        return -1;
+    }
+
+    private int getBegin(int component, int index) {
+        return fBounds[component][index * 2];
+    }
+
+    /**
+     * Returns the specified component of a URI as it is in the original
+     * string.
+     *
+     * @param index the index of the URI
+     * @param component the component to return; it is one of the
+     *        {@link #SCHEME}, {@link #USER_INFO}, {@link #HOST}, {@link #PATH},
+     *        {@link #QUERY} and {@link #FRAGMENT} constants
+     * @return the value of the component or <code>null</code> if it is not
+     *         defined
+     */
+    public String getComponent(int index, int component) {
+        checkIndex(index);
+        int begin = getBegin(component, index);
+        return begin >= 0 ? getString(begin, getEnd(component, index)) : null;
+    }
+
+    private int getEnd(int component, int index) {
+        return fBounds[component][index * 2 + 1];
+    }
+
+    private int getExtensionHash(int begin, int end) {
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(fChars[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the extension of the file name of the specified URI.
+     *
+     * @param index the index of the URI
+     * @return the extension of the file or <code>null</code> if the path of
+     *         the URI has no extension
+     * @see AbstractPath#getFileExtension(AbstractPath)
+     */
+    public String getFileExtension(int index) {
+        checkIndex(index);
+        int begin = getFileExtensionBegin(index);
+        return begin >= 0 ? getString(begin, getLastSegmentEnd(index)) : null;
+    }
+
+    private int getFileExtensionBegin(int index) {
+        if ((fFlags[index] & FLAG_TRAILING_SEPARATOR) != 0) {
+            return -1;
+        }
+        int last = fSegmentIndex[index + 1] - 1;
+        if (last < fSegmentIndex[index]) {
+            return -1;
+        }
+        int begin = fSegmentBounds[last * 2];
+        for (int i = fSegmentBounds[last * 2 + 1] - 1; i >= begin; i--) {
+            if (fChars[i] == '.') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the host of the specified URI.
+     *
+     * @param index the index of the URI
+     * @return the host of the URI or <code>null</code> if it is not defined
+     */
+    public String getHost(int index) {
+        return getComponent(index, HOST);
+    }
+
+    private int getLastSegmentEnd(int index) {
+        return fSegmentBounds[(fSegmentIndex[index + 1] - 1) * 2 + 1];
+    }
+
+    /**
+     * Returns the first value of the query parameter with the specified name.
+     * The returned value is decoded.
+     *
+     * @param index the index of the URI
+     * @param name the name of the parameter
+     * @return the value of the parameter or <code>null</code> if there is no
+     *         such a parameter or if it has no value
+     * @see AbstractUri#getParam(String)
+     */
+    public String getParam(int index, String name) {
+        checkIndex(index);
+        int param = findParam(index, name);
+        return param >= 0 ? getParamValue(param) : null;
+    }
+
+    private String getParamValue(int param) {
+        int begin = fParamBounds[param * 4 + 2];
+        int end = fParamBounds[param * 4 + 3];
+        if (begin < 0 || begin >= end) {
+            return null;
+        }
+        String value = getString(begin, end);
+        return isEncoded(begin, end) ? AbstractPath.decode(value) : value;
+    }
+
+    /**
+     * Returns the number of path segments of the specified URI.
+     *
+     * @param index the index of the URI
+     * @return the number of path segments
+     */
+    public int getPathDepth(int index) {
+        checkIndex(index);
+        return fSegmentIndex[index + 1] - fSegmentIndex[index];
+    }
+
+    /**
+     * Returns the number of path segments for each URI in this batch.
+     *
+     * @return an array with the number of path segments of all URIs
+     */
+    public int[] getPathDepths() {
+        int[] result = new int[fSize];
+        for (int i = 0; i < fSize; i++) {
+            result[i] = fSegmentIndex[i + 1] - fSegmentIndex[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns a path segment of the specified URI as it is in the original
+     * string.
+     *
+     * @param index the index of the URI
+     * @param segment the index of the segment
+     * @return the path segment
+     */
+    public String getPathSegment(int index, int segment) {
+        if (segment < 0 || segment >= getPathDepth(index)) {
+            throw new IndexOutOfBoundsException("Segment: " + segment);
+        }
+        int pos = (fSegmentIndex[index] + segment) * 2;
+        return getString(fSegmentBounds[pos], fSegmentBounds[pos + 1]);
+    }
+
+    /**
+     * Returns the port of the specified URI.
+     *
+     * @param index the index of the URI
+     * @return the port or <code>0</code> if it is not defined
+     */
+    public int getPort(int index) {
+        checkIndex(index);
+        return fPorts[index];
+    }
+
+    private String getString(int begin, int end) {
+        return new String(fChars, begin, end - begin);
+    }
+
+    /**
+     * Returns the specified URI as a string.
+     *
+     * @param index the index of the URI
+     * @return the URI string
+     */
+    public String getUri(int index) {
+        checkIndex(index);
+        return getString(fUriOffsets[index], fUriOffsets[index + 1]);
+    }
+
+    /**
+     * Groups URIs by extensions of their file names. Extensions are
+     * transformed to lower case; URIs without extensions are grouped under
+     * the empty string.
+     *
+     * @return a map of extensions to indexes of URIs (in the ascending order)
+     * @see #getFileExtension(int)
+     */
+    public Map<String, int[]> groupByExtension() {
+        // Each URI gets the number of its group; groups are identified by the
+        // first URI having the same extension, so strings are created only
+        // once for each group.
+        int[] groups = new int[fSize];
+        int[] counts = new int[16];
+        int[] firsts = new int[16];
+        int[] table = new int[64];
+        int groupCount = 0;
+        for (int i = 0; i < fSize; i++) {
+            int begin = getFileExtensionBegin(i);
+            int end = begin >= 0 ? getLastSegmentEnd(i) : -1;
+            int hash = getExtensionHash(begin, end);
+            int mask = table.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            int group = -1;
+            while (table[slot] != 0) {
+                int g = table[slot] - 1;
+                if (hasSameExtension(firsts[g], begin, end)) {
+                    group = g;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (group < 0) {
+                group = groupCount++;
+                firsts = grow(firsts, groupCount);
+                counts = grow(counts, groupCount);
+                firsts[group] = i;
+                table[slot] = group + 1;
+                if (groupCount * 2 > table.length) {
+                    table = rehash(table, firsts, groupCount);
+                }
+            }
+            groups[i] = group;
+            counts[group]++;
+        }
+        int[][] indexes = new int[groupCount][];
+        for (int g = 0; g < groupCount; g++) {
+            indexes[g] = new int[counts[g]];
+            counts[g] = 0;
+        }
+        for (int i = 0; i < fSize; i++) {
+            int g = groups[i];
+            indexes[g][counts[g]++] = i;
+        }
+        Map<String, int[]> result = new LinkedHashMap<String, int[]>();
+        for (int g = 0; g < groupCount; g++) {
+            String extension = getFileExtension(firsts[g]);
+            extension = extension != null ? extension.toLowerCase() : "";
+            result.put(extension, indexes[g]);
+        }
+        return result;
+    }
+
+    private boolean hasSameExtension(int index, int begin, int end) {
+        int otherBegin = getFileExtensionBegin(index);
+        if (otherBegin < 0 || begin < 0) {
+            return otherBegin < 0 && begin < 0;
+        }
+        int otherEnd = getLastSegmentEnd(index);
+        if (otherEnd - otherBegin != end - begin) {
+            return false;
+        }
+        for (int i = begin, j = otherBegin; i < end; i++, j++) {
+            if (Character.toLowerCase(fChars[i]) != Character
+                .toLowerCase(fChars[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the path of the specified URI starts with
+     * a separator.
+     *
+     * @param index the index of the URI
+     * @return <code>true</code> if the path is absolute
+     */
+    public boolean isAbsolutePath(int index) {
+        checkIndex(index);
+        return (fFlags[index] & FLAG_ABSOLUTE) != 0;
+    }
+
+    private boolean isEncoded(int begin, int end) {
+        for (int i = begin; i < end; i++) {
+            char ch = fChars[i];
+            if (ch == '%' || ch == '+') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an iterator over all URIs of this batch. Each URI is parsed
+     * again in a new {@link Uri} object.
+     *
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Uri> iterator() {
+        return new Iterator<Uri>() {
+
+            private int fIndex;
+
+            public boolean hasNext() {
+                return fIndex < fSize;
+            }
+
+            public Uri next() {
+                if (fIndex >= fSize) {
+                    throw new NoSuchElementException();
+                }
+                return toUri(fIndex++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void parse(int index, int begin, int end) {
+        char[] array = fChars;
+        int pos = begin;
+
+        // Scheme: all segments before the last ':' symbol
+        int schemeEnd = -1;
+        for (int i = begin; i < end; i++) {
+            char ch = array[i];
+            if (ch == ':') {
+                schemeEnd = i;
+            } else if (ch == '/' || ch == '?' || ch == '#') {
+                break;
+            }
+        }
+        if (schemeEnd > begin) {
+            setBounds(SCHEME, index, begin, schemeEnd);
+        }
+        if (schemeEnd >= 0) {
+            pos = schemeEnd + 1;
+        }
+
+        // Authority
+        if (pos < end - 2 && array[pos] == '/' && array[pos + 1] == '/') {
+            pos = parseAuthority(index, pos + 2, end);
+        }
+
+        // Path
+        int start = pos;
+        boolean absolute = false;
+        boolean separator = false;
+        int pathBegin = pos;
+        while (pos < end && array[pos] != '?' && array[pos] != '#') {
+            separator = isSeparator(array[pos]);
+            if (separator) {
+                if (pos == pathBegin) {
+                    absolute = true;
+                    separator = false;
+                }
+                if (pos > start) {
+                    addSegment(start, pos);
+                }
+                start = pos + 1;
+            }
+            pos++;
+        }
+        if (pos > start) {
+            addSegment(start, pos);
+        }
+        if (pos > pathBegin) {
+            setBounds(PATH, index, pathBegin, pos);
+        }
+        fFlags[index] = (byte) ((absolute ? FLAG_ABSOLUTE : 0) | (separator
+            ? FLAG_TRAILING_SEPARATOR
+            : 0));
+
+        // Query
+        if (pos < end && array[pos] == '?') {
+            int queryBegin = ++pos;
+            while (pos < end && array[pos] != '#') {
+                pos++;
+            }
+            if (pos > queryBegin) {
+                setBounds(QUERY, index, queryBegin, pos);
+                QueryParser.parse(fCharsView, queryBegin, pos, fCharsView);
+            }
+        }
+
+        // Fragment
+        if (pos < end - 1 && array[pos] == '#') {
+            setBounds(FRAGMENT, index, pos + 1, end);
+        }
+    }
+
+    private int parseAuthority(int index, int pos, int end) {
+        char[] array = fChars;
+        int start = pos;
+        int hostStart = start;
+        int portPos = -1;
+        boolean validPort = false;
+        loop: while (pos < end) {
+            char ch = array[pos];
+            if (pos == hostStart && ch == '.') {
+                break;
+            }
+            switch (ch) {
+                case '/':
+                case '?':
+                case '#':
+                    break loop;
+                case '@':
+                    setBounds(USER_INFO, index, -1, -1);
+                    if (pos > start) {
+                        setBounds(USER_INFO, index, start, pos);
+                    }
+                    hostStart = pos + 1;
+                    break;
+                case ':':
+                    portPos = pos + 1;
+                    validPort = true;
+                    break;
+                default:
+                    if (portPos > 0) {
+                        validPort &= Character.isDigit(ch);
+                    }
+                    break;
+            }
+            pos++;
+        }
+        int hostEnd = pos;
+        if (portPos >= 0 && validPort && portPos < pos) {
+            long port = 0;
+            for (int i = portPos; i < pos && port <= Integer.MAX_VALUE; i++) {
+                port = port * 10 + Character.digit(array[i], 10);
+            }
+            if (port <= Integer.MAX_VALUE) {
+                fPorts[index] = (int) port;
+                hostEnd = portPos - 1;
+            }
+        }
+        if (hostEnd > hostStart) {
+            setBounds(HOST, index, hostStart, hostEnd);
+        }
+        return pos;
+    }
+
+    private boolean regionEquals(int begin, int end, String str) {
+        if (end - begin != str.length()) {
+            return false;
+        }
+        for (int i = begin, j = 0; i < end; i++, j++) {
+            if (fChars[i] != str.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] rehash(int[] table, int[] firsts, int groupCount) {
+        int[] result = new int[table.length * 2];
+        int mask = result.length - 1;
+        for (int g = 0; g < groupCount; g++) {
+            int begin = getFileExtensionBegin(firsts[g]);
+            int end = begin >= 0 ? getLastSegmentEnd(firsts[g]) : -1;
+            int hash = getExtensionHash(begin, end);
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (result[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            result[slot] = g + 1;
+        }
+        return result;
+    }
+
+    private void setBounds(int component, int index, int begin, int end) {
+        int[] bounds = fBounds[component];
+        bounds[index * 2] = begin;
+        bounds[index * 2 + 1] = end;
+    }
+
+    /**
+     * Returns the number of URIs in this batch.
+     *
+     * @return the number of URIs in this batch
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Parses the specified URI of this batch and returns it as a {@link Uri}
+     * object.
+     *
+     * @param index the index of the URI
+     * @return a new {@link Uri} object
+     */
+    public Uri toUri(int index) {
+        return new Uri(getUri(index));
+    }
+
+}
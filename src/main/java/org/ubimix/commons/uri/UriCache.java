@@ -0,0 +1,380 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of parsed URIs. It maps raw strings to immutable
+ * {@link Uri} objects so the same string is not parsed again and again.
+ * <p>
+ * The cache is split into independent segments, each guarded by its own lock.
+ * Each segment keeps entries in the LRU order and uses a small frequency
+ * sketch to decide whether a new entry should replace the least recently used
+ * one: a new URI is admitted only if it was requested more often than the
+ * evicted one. So a burst of URIs seen only once does not wipe out the URIs
+ * which are used all the time. Frequencies are periodically divided by two,
+ * so the cache adapts when the popular URIs change.
+ * </p>
+ * <p>
+ * Instances of this class are thread-safe.
+ * </p>
+ *
+ * <pre>
+ * UriCache cache = new UriCache(10000);
+ * ...
+ * Uri uri = cache.get(str);
+ * </pre>
+ *
+ * @author kotelnikov
+ */
+public class UriCache {
+
+    /**
+     * A count-min sketch with small saturating counters. It is used to
+     * estimate how often a key was requested recently.
+     */
+    private static class FrequencySketch {
+
+        private static final int DEPTH = 4;
+
+        private static final int MAX_COUNT = 15;
+
+        private static final int[] SEEDS = {
+            0x97cb3127,
+            0xc3a5c85c,
+            0x9ae16a3b,
+            0x5d27e7b9 };
+
+        private int fAdditions;
+
+        private final int fMask;
+
+        private final int fSampleSize;
+
+        private final byte[] fTable;
+
+        private final int fWidth;
+
+        public FrequencySketch(int maxSize) {
+            int width = 64;
+            while (width < 4 * maxSize && width < (1 << 24)) {
+                width <<= 1;
+            }
+            fWidth = width;
+            fMask = width - 1;
+            fTable = new byte[width * DEPTH];
+            fSampleSize = Math.max(10 * maxSize, 64);
+        }
+
+        public void clear() {
+            for (int i = 0; i < fTable.length; i++) {
+                fTable[i] = 0;
+            }
+            fAdditions = 0;
+        }
+
+        public int getFrequency(int hash) {
+            int result = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                result = Math.min(result, fTable[getIndex(hash, i)]);
+            }
+            return result;
+        }
+
+        private int getIndex(int hash, int i) {
+            int h = (hash ^ SEEDS[i]) * 0x9e3779b9;
+            h ^= (h >>> 16);
+            return i * fWidth + (h & fMask);
+        }
+
+        public void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int idx = getIndex(hash, i);
+                if (fTable[idx] < MAX_COUNT) {
+                    fTable[idx]++;
+                    added = true;
+                }
+            }
+            if (added && ++fAdditions >= fSampleSize) {
+                for (int i = 0; i < fTable.length; i++) {
+                    fTable[i] >>>= 1;
+                }
+                fAdditions /= 2;
+            }
+        }
+
+    }
+
+    /**
+     * An independent part of the cache. All methods of this class should be
+     * called under the lock of the segment.
+     */
+    private static class Segment {
+
+        long fEvictionCount;
+
+        long fHitCount;
+
+        private final Map<String, Uri> fMap;
+
+        private final int fMaxSize;
+
+        long fMissCount;
+
+        long fRejectionCount;
+
+        private final FrequencySketch fSketch;
+
+        public Segment(int maxSize) {
+            fMaxSize = maxSize;
+            fMap = new LinkedHashMap<String, Uri>(16, 0.75f, true);
+            fSketch = new FrequencySketch(maxSize);
+        }
+
+        public void clear() {
+            fMap.clear();
+            fSketch.clear();
+        }
+
+        public Uri get(String key, int hash) {
+            fSketch.increment(hash);
+            Uri result = fMap.get(key);
+            if (result != null) {
+                fHitCount++;
+            } else {
+                fMissCount++;
+            }
+            return result;
+        }
+
+        public Uri put(String key, int hash, Uri value) {
+            Uri result = fMap.get(key);
+            if (result != null) {
+                // Another thread already added the same URI
+                return result;
+            }
+            if (fMap.size() >= fMaxSize) {
+                Iterator<Map.Entry<String, Uri>> iterator = fMap
+                    .entrySet()
+                    .iterator();
+                Map.Entry<String, Uri> victim = iterator.next();
+                int victimFrequency = fSketch.getFrequency(spread(victim
+                    .getKey()
+                    .hashCode()));
+                if (fSketch.getFrequency(hash) <= victimFrequency) {
+                    fRejectionCount++;
+                    return value;
+                }
+                iterator.remove();
+                fEvictionCount++;
+            }
+            fMap.put(key, value);
+            return value;
+        }
+
+        public int size() {
+            return fMap.size();
+        }
+
+    }
+
+    /**
+     * The default maximal number of URIs in the cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10 * 1024;
+
+    /**
+     * The number of independent segments; it should be a power of two.
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    private static int spread(int h) {
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 15);
+    }
+
+    private final Segment[] fSegments;
+
+    /**
+     * Creates a new cache with the default maximal size.
+     */
+    public UriCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximal number of URIs retained by this cache
+     */
+    public UriCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(
+                "The maximal size should be a positive number");
+        }
+        int count = SEGMENT_COUNT;
+        while (count > 1 && maxSize / count < 16) {
+            count >>= 1;
+        }
+        fSegments = new Segment[count];
+        int segmentSize = Math.max(1, maxSize / count);
+        for (int i = 0; i < count; i++) {
+            fSegments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Removes all URIs from this cache. Statistics are not reset.
+     */
+    public void clear() {
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns a parsed URI corresponding to the given string. If there is no
+     * such an URI in the cache then the string is parsed and the resulting
+     * URI could be added to the cache.
+     *
+     * @param str the string to parse
+     * @return a parsed URI corresponding to the given string
+     */
+    public Uri get(String str) {
+        if (str == null) {
+            return null;
+        }
+        int hash = spread(str.hashCode());
+        Segment segment = getSegment(hash);
+        Uri result;
+        synchronized (segment) {
+            result = segment.get(str, hash);
+        }
+        if (result == null) {
+            // Parse outside of the lock
+            result = new Uri(str);
+            synchronized (segment) {
+                result = segment.put(str, hash, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of URIs removed from the cache to free place for new
+     * entries.
+     *
+     * @return the number of evicted URIs
+     */
+    public long getEvictionCount() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fEvictionCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of requests returning already cached URIs.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fHitCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a cached URI corresponding to the given string or
+     * <code>null</code> if there is no such an URI in the cache. This method
+     * does not change statistics.
+     *
+     * @param str the string corresponding to the required URI
+     * @return a cached URI or <code>null</code>
+     */
+    public Uri getIfPresent(String str) {
+        if (str == null) {
+            return null;
+        }
+        Segment segment = getSegment(spread(str.hashCode()));
+        synchronized (segment) {
+            return segment.fMap.get(str);
+        }
+    }
+
+    /**
+     * Returns the number of requests which required to parse strings.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fMissCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of parsed URIs which were not added to the full cache
+     * because they were used less often than the cached ones.
+     *
+     * @return the number of rejected URIs
+     */
+    public long getRejectionCount() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fRejectionCount;
+            }
+        }
+        return result;
+    }
+
+    private Segment getSegment(int hash) {
+        return fSegments[(hash >>> 16) & (fSegments.length - 1)];
+    }
+
+    /**
+     * Returns the number of URIs in this cache.
+     *
+     * @return the number of cached URIs
+     */
+    public int size() {
+        int result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+
+}
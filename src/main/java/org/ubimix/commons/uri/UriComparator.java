@@ -0,0 +1,220 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Comparators of URIs. Each comparator defines a sort key for URIs (see
+ * {@link #getSortKey(AbstractUri)}); URIs are compared in the same way as
+ * their keys. Keys are strings, so they are cheap to compare and can be
+ * stored or compared outside of this library.
+ * <p>
+ * To sort a big number of URIs the {@link #sort(AbstractUri[])} and
+ * {@link #sort(List)} methods should be used: they compute the key of each
+ * URI only once and then sort URIs by these keys.
+ * </p>
+ *
+ * <pre>
+ * UriComparator.HOST.sort(uris);
+ * </pre>
+ *
+ * @author kotelnikov
+ */
+public abstract class UriComparator implements Comparator<AbstractUri> {
+
+    /**
+     * A URI with its precomputed sort key.
+     */
+    private static class Entry implements Comparable<Entry> {
+
+        private final String fKey;
+
+        private final AbstractUri fUri;
+
+        public Entry(String key, AbstractUri uri) {
+            fKey = key;
+            fUri = uri;
+        }
+
+        public int compareTo(Entry o) {
+            return fKey.compareTo(o.fKey);
+        }
+
+    }
+
+    /**
+     * Writes sort keys as strings. Each char of a string is written as is;
+     * zero chars are escaped so the terminator (0x0000 0x0001) is less than
+     * any char.
+     */
+    private static class StringKeyBuilder extends UriKeyBuilder {
+
+        private final StringBuilder fBuf = new StringBuilder();
+
+        @Override
+        public String toString() {
+            return fBuf.toString();
+        }
+
+        @Override
+        protected void writeInt(int value) {
+            fBuf.append((char) (value >>> 16));
+            fBuf.append((char) value);
+        }
+
+        @Override
+        protected void writeMarker(int marker) {
+            fBuf.append((char) marker);
+        }
+
+        @Override
+        protected void writeString(String str, int begin, int end) {
+            for (int i = begin; i < end; i++) {
+                char ch = str.charAt(i);
+                if (ch == 0) {
+                    fBuf.append((char) 0x0000).append((char) 0xFFFF);
+                } else {
+                    fBuf.append(ch);
+                }
+            }
+            fBuf.append((char) 0x0000).append((char) 0x0001);
+        }
+
+    }
+
+    /**
+     * Compares URIs by their string representations (see
+     * {@link AbstractUri#getUri()}). URIs should be normalized before (see
+     * {@link UriNormalizer}) if equivalent URIs should be ordered together.
+     */
+    public static final UriComparator CANONICAL = new UriComparator() {
+        @Override
+        public String getSortKey(AbstractUri uri) {
+            return uri.getUri();
+        }
+    };
+
+    /**
+     * Compares URIs by hosts (with labels in the reversed order: "www.foo.bar"
+     * is compared as "bar", "foo", "www"), then by ports, paths, query items,
+     * fragments, schemes and user info. So all URIs of the same domain and all
+     * URIs in the same directory are ordered together. Keys are built by the
+     * {@link UriKeyBuilder}, so this order is the same as the order of binary
+     * keys defined by the <code>org.ubimix.commons.uri.io.UriKeyEncoder</code>
+     * class.
+     */
+    public static final UriComparator HOST = new UriComparator() {
+        @Override
+        public String getSortKey(AbstractUri uri) {
+            StringKeyBuilder builder = new StringKeyBuilder();
+            builder.writeKey(uri);
+            return builder.toString();
+        }
+    };
+
+    /**
+     * Compares URIs only by their paths, in the order defined by the
+     * {@link AbstractPath#compareTo(AbstractPath)} method.
+     */
+    public static final UriComparator PATH = new UriComparator() {
+
+        @Override
+        public int compare(AbstractUri first, AbstractUri second) {
+            return first.getPath().compareTo(second.getPath());
+        }
+
+        @Override
+        public String getSortKey(AbstractUri uri) {
+            StringKeyBuilder builder = new StringKeyBuilder();
+            builder.writePath(uri.getPath(), true);
+            return builder.toString();
+        }
+    };
+
+    /**
+     * Instances of this type are available only as constants.
+     */
+    private UriComparator() {
+    }
+
+    /**
+     * Compares sort keys of the given URIs. Both keys are built on each call,
+     * so to sort many URIs the {@link #sort(AbstractUri[])} and
+     * {@link #sort(List)} methods should be used instead of
+     * {@link java.util.Collections#sort(List, Comparator)}: they build the key
+     * of each URI only once.
+     *
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    public int compare(AbstractUri first, AbstractUri second) {
+        return getSortKey(first).compareTo(getSortKey(second));
+    }
+
+    /**
+     * Returns the sort key of the given URI. Keys of URIs compared by
+     * {@link String#compareTo(String)} have the same order as URIs themselves.
+     *
+     * @param uri the URI
+     * @return the sort key of the URI
+     */
+    public abstract String getSortKey(AbstractUri uri);
+
+    /**
+     * Sorts the given array of URIs. Sort keys are computed only once for
+     * each URI. This sort is stable: equal URIs are not reordered.
+     *
+     * @param uris the array to sort
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AbstractUri> void sort(T[] uris) {
+        Entry[] entries = toEntries(Arrays.asList(uris));
+        for (int i = 0; i < entries.length; i++) {
+            uris[i] = (T) entries[i].fUri;
+        }
+    }
+
+    /**
+     * Sorts the given list of URIs. Sort keys are computed only once for each
+     * URI. This sort is stable: equal URIs are not reordered.
+     *
+     * @param uris the list to sort
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AbstractUri> void sort(List<T> uris) {
+        Entry[] entries = toEntries(uris);
+        ListIterator<T> iterator = uris.listIterator();
+        for (Entry entry : entries) {
+            iterator.next();
+            iterator.set((T) entry.fUri);
+        }
+    }
+
+    private Entry[] toEntries(List<? extends AbstractUri> uris) {
+        Entry[] entries = new Entry[uris.size()];
+        int i = 0;
+        for (AbstractUri uri : uris) {
+            entries[i++] = new Entry(getSortKey(uri), uri);
+        }
+        Arrays.sort(entries);
+        return entries;
+    }
+
+}
@@ -0,0 +1,98 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A mutable URI with fields for all components. It is used to create
+ * {@link Uri} objects from already parsed (decoded, interned...) components
+ * without re-parsing them. Fields are not checked or copied, so the given
+ * lists should not be changed after the {@link Uri} is created.
+ *
+ * <pre>
+ * UriComponents components = new UriComponents();
+ * components.fHost = host;
+ * components.fPath = path;
+ * Uri uri = new Uri(components);
+ * </pre>
+ *
+ * @author kotelnikov
+ */
+public class UriComponents extends AbstractUri {
+
+    public String fFragment;
+
+    public String fHost;
+
+    public Path fPath = Path.EMPTY;
+
+    public int fPort;
+
+    public List<QueryItem> fQueryItems = Collections.emptyList();
+
+    public List<String> fSchemeSegments = Collections.emptyList();
+
+    public String fUserInfo;
+
+    @Override
+    protected AbstractPath getAbstractPath() {
+        return fPath;
+    }
+
+    @Override
+    public String getFragment() {
+        return fFragment;
+    }
+
+    @Override
+    public String getHost() {
+        return fHost;
+    }
+
+    @Override
+    public Path getPath() {
+        return fPath;
+    }
+
+    @Override
+    public Path.Builder getPathBuilder() {
+        return fPath.getBuilder();
+    }
+
+    @Override
+    public int getPort() {
+        return fPort;
+    }
+
+    @Override
+    public List<QueryItem> getQueryItems() {
+        return fQueryItems;
+    }
+
+    @Override
+    public List<String> getSchemeSegments() {
+        return fSchemeSegments;
+    }
+
+    @Override
+    public String getUserInfo() {
+        return fUserInfo;
+    }
+
+}
@@ -0,0 +1,545 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.List;
+
+import org.ubimix.commons.uri.AbstractUri.QueryItem;
+
+/**
+ * This class calculates 64- and 128-bit fingerprints of URIs. Fingerprints
+ * are calculated incrementally directly from the parsed components of URIs
+ * without serializing them into strings. Equal URIs (see
+ * {@link AbstractUri#equals(Object)}) have equal fingerprints.
+ * <p>
+ * The hash function is MurmurHash3 (x64, 128 bit, seed 0) applied to a byte
+ * stream describing URI components: each component starts with its own tag
+ * byte, strings are written as their lengths followed by UTF-16LE symbols and
+ * integers as 4 little-endian bytes. The resulting values do not depend on
+ * the JVM, so they can be used to partition URIs between nodes or to store
+ * them in persistent structures.
+ * </p>
+ * <p>
+ * The same instance can be used to hash arbitrary sequences of symbols (for
+ * example canonical strings produced by {@link UriNormalizer}). Instances of
+ * this class are not thread-safe.
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public class UriFingerprint {
+
+    /**
+     * This listener calculates the fingerprint of an URI while it is parsed.
+     * The resulting fingerprint is the same as the fingerprint of a
+     * {@link Uri} object created from the same string.
+     *
+     * <pre>
+     * UriFingerprint.FingerprintListener listener = new UriFingerprint.FingerprintListener();
+     * UriParser.parse(str, listener);
+     * long fingerprint = listener.getFingerprint();
+     * </pre>
+     *
+     * @see UriParser#parse(String, UriParser.IUriListener)
+     */
+    public static class FingerprintListener implements UriParser.IUriListener {
+
+        private final UriFingerprint fFingerprint = new UriFingerprint();
+
+        private String fHost;
+
+        private int fPort;
+
+        /**
+         * The next component to add to the fingerprint
+         */
+        private int fStage = STAGE_SCHEME;
+
+        private String fUserInfo;
+
+        /**
+         * Adds all skipped components to the fingerprint up to the given
+         * stage. Authority parts are added only when all of them are known
+         * (the parser can notify about them several times).
+         */
+        private void advance(int stage) {
+            while (fStage < stage) {
+                switch (fStage) {
+                    case STAGE_SCHEME:
+                        updateScheme(fFingerprint, null);
+                        break;
+                    case STAGE_AUTHORITY:
+                        fFingerprint.updateTag(TAG_USER_INFO);
+                        fFingerprint.updateString(fUserInfo);
+                        fFingerprint.updateTag(TAG_HOST);
+                        fFingerprint.updateString(fHost);
+                        fFingerprint.updateTag(TAG_PORT);
+                        fFingerprint.updateInt(fPort);
+                        break;
+                    case STAGE_PATH:
+                        fFingerprint.updateTag(TAG_PATH);
+                        fFingerprint.updateTag(getPathFlags(false, false));
+                        fFingerprint.updateTag(TAG_END);
+                        break;
+                    case STAGE_QUERY:
+                        fFingerprint.updateTag(TAG_QUERY);
+                        fFingerprint.updateTag(TAG_END);
+                        break;
+                    case STAGE_FRAGMENT:
+                        fFingerprint.updateTag(TAG_FRAGMENT);
+                        fFingerprint.updateString(null);
+                        break;
+                    default:
+                        break;
+                }
+                fStage++;
+            }
+        }
+
+        /**
+         * Returns the 64-bit fingerprint of the parsed URI. This method should
+         * be called when the parsing is finished.
+         *
+         * @return the 64-bit fingerprint of the parsed URI
+         */
+        public long getFingerprint() {
+            advance(STAGE_DONE);
+            return fFingerprint.getValue();
+        }
+
+        /**
+         * Returns the 128-bit fingerprint of the parsed URI as an array of two
+         * longs. This method should be called when the parsing is finished.
+         *
+         * @return the 128-bit fingerprint of the parsed URI
+         */
+        public long[] getFingerprint128() {
+            advance(STAGE_DONE);
+            return fFingerprint.getValue128();
+        }
+
+        private boolean hasAuthority() {
+            return fUserInfo != null || fHost != null || fPort != 0;
+        }
+
+        public void onFragment(String fragment) {
+            advance(STAGE_FRAGMENT);
+            fragment = trim(fragment);
+            fFingerprint.updateTag(TAG_FRAGMENT);
+            fFingerprint.updateString(fragment != null ? AbstractPath
+                .decode(fragment) : null);
+            fStage++;
+        }
+
+        public void onHost(String host) {
+            fHost = trim(host);
+        }
+
+        public void onPath(
+            boolean absolute,
+            List<String> segments,
+            boolean hasTrailingSeparator) {
+            advance(STAGE_PATH);
+            int len = segments.size();
+            absolute |= hasAuthority() && len > 0;
+            fFingerprint.updateTag(TAG_PATH);
+            fFingerprint.updateTag(getPathFlags(
+                absolute,
+                hasTrailingSeparator));
+            for (int i = 0; i < len; i++) {
+                fFingerprint.updateTag(TAG_ITEM);
+                fFingerprint.updateString(AbstractPath.decode(segments.get(i)));
+            }
+            fFingerprint.updateTag(TAG_END);
+            fStage++;
+        }
+
+        public void onPort(int port) {
+            fPort = port;
+        }
+
+        public void onQuery(String query) {
+            advance(STAGE_QUERY);
+            fFingerprint.updateTag(TAG_QUERY);
+            if (query != null) {
+                QueryParser.parse(
+                    query,
+                    0,
+                    query.length(),
+                    new QueryParser.IQueryListener() {
+                        public void onParam(
+                            CharSequence str,
+                            int nameBegin,
+                            int nameEnd,
+                            int valueBegin,
+                            int valueEnd) {
+                            fFingerprint.updateTag(TAG_ITEM);
+                            fFingerprint.updateString(QueryParser.getString(
+                                str,
+                                nameBegin,
+                                nameEnd,
+                                true));
+                            fFingerprint.updateString(valueBegin < valueEnd
+                                ? QueryParser.getString(
+                                    str,
+                                    valueBegin,
+                                    valueEnd,
+                                    true)
+                                : null);
+                        }
+                    });
+            }
+            fFingerprint.updateTag(TAG_END);
+            fStage++;
+        }
+
+        public void onScheme(List<String> segments) {
+            advance(STAGE_SCHEME);
+            updateScheme(fFingerprint, segments);
+            fStage++;
+        }
+
+        public void onUserInfo(String userInfo) {
+            fUserInfo = trim(userInfo);
+        }
+
+        /**
+         * Trims the given string and returns <code>null</code> for empty
+         * values (as URI builders do).
+         */
+        private String trim(String str) {
+            if (str == null) {
+                return null;
+            }
+            str = str.trim();
+            return str.length() > 0 ? str : null;
+        }
+
+    }
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final int STAGE_AUTHORITY = 1;
+
+    private static final int STAGE_DONE = 5;
+
+    private static final int STAGE_FRAGMENT = 4;
+
+    private static final int STAGE_PATH = 2;
+
+    private static final int STAGE_QUERY = 3;
+
+    private static final int STAGE_SCHEME = 0;
+
+    private static final int TAG_END = 0xFF;
+
+    private static final int TAG_FRAGMENT = 'F';
+
+    private static final int TAG_HOST = 'H';
+
+    private static final int TAG_ITEM = 'I';
+
+    private static final int TAG_PATH = 'A';
+
+    private static final int TAG_PORT = 'P';
+
+    private static final int TAG_QUERY = 'Q';
+
+    private static final int TAG_SCHEME = 'S';
+
+    private static final int TAG_USER_INFO = 'U';
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Returns the 64-bit fingerprint of the given URI.
+     *
+     * @param uri the URI to hash
+     * @return the 64-bit fingerprint of the given URI
+     */
+    public static long getFingerprint(AbstractUri uri) {
+        return new UriFingerprint().update(uri).getValue();
+    }
+
+    /**
+     * Parses the given string and returns the fingerprint of the
+     * corresponding URI without creating URI objects.
+     *
+     * @param uri the string representation of the URI to hash
+     * @return the 64-bit fingerprint of the given URI
+     */
+    public static long getFingerprint(String uri) {
+        FingerprintListener listener = new FingerprintListener();
+        UriParser.parse(uri != null ? uri.trim() : "", listener);
+        return listener.getFingerprint();
+    }
+
+    /**
+     * Returns the 128-bit fingerprint of the given URI.
+     *
+     * @param uri the URI to hash
+     * @return an array of two longs containing the 128-bit fingerprint of the
+     *         given URI
+     */
+    public static long[] getFingerprint128(AbstractUri uri) {
+        return new UriFingerprint().update(uri).getValue128();
+    }
+
+    private static int getPathFlags(boolean absolute, boolean trailing) {
+        return (absolute ? 1 : 0) | (trailing ? 2 : 0);
+    }
+
+    private static void updateScheme(
+        UriFingerprint fingerprint,
+        List<String> segments) {
+        fingerprint.updateTag(TAG_SCHEME);
+        if (segments != null) {
+            for (String segment : segments) {
+                fingerprint.updateTag(TAG_ITEM);
+                fingerprint.updateString(segment);
+            }
+        }
+        fingerprint.updateTag(TAG_END);
+    }
+
+    private long fH1;
+
+    private long fH2;
+
+    private long fK1;
+
+    private long fK2;
+
+    private long fLength;
+
+    /**
+     * The number of bytes in the current (incomplete) 16-byte block
+     */
+    private int fPos;
+
+    public UriFingerprint() {
+    }
+
+    /**
+     * Returns the 64-bit value of the fingerprint (the first half of the
+     * 128-bit value). This method does not change the state of this object,
+     * so it is possible to continue to add new data after that.
+     *
+     * @return the 64-bit value of the fingerprint
+     */
+    public long getValue() {
+        return getValue128()[0];
+    }
+
+    /**
+     * Returns the 128-bit value of the fingerprint as an array of two longs.
+     * This method does not change the state of this object.
+     *
+     * @return the 128-bit value of the fingerprint
+     */
+    public long[] getValue128() {
+        long h1 = fH1;
+        long h2 = fH2;
+        if (fPos > 8) {
+            long k2 = fK2;
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+        if (fPos > 0) {
+            long k1 = fK1;
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+        h1 ^= fLength;
+        h2 ^= fLength;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[] { h1, h2 };
+    }
+
+    private void mixBlock() {
+        long k1 = fK1;
+        long k2 = fK2;
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        fH1 ^= k1;
+        fH1 = Long.rotateLeft(fH1, 27);
+        fH1 += fH2;
+        fH1 = fH1 * 5 + 0x52dce729;
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        fH2 ^= k2;
+        fH2 = Long.rotateLeft(fH2, 31);
+        fH2 += fH1;
+        fH2 = fH2 * 5 + 0x38495ab5;
+        fK1 = 0;
+        fK2 = 0;
+        fPos = 0;
+    }
+
+    /**
+     * Resets this object to its initial state.
+     */
+    public void reset() {
+        fH1 = 0;
+        fH2 = 0;
+        fK1 = 0;
+        fK2 = 0;
+        fLength = 0;
+        fPos = 0;
+    }
+
+    /**
+     * Adds all components of the given URI to this fingerprint.
+     *
+     * @param uri the URI to add
+     * @return a reference to this object
+     */
+    public UriFingerprint update(AbstractUri uri) {
+        updateScheme(this, uri.getSchemeSegments());
+        updateTag(TAG_USER_INFO);
+        updateString(uri.getUserInfo());
+        updateTag(TAG_HOST);
+        updateString(uri.getHost());
+        updateTag(TAG_PORT);
+        updateInt(uri.getPort());
+        AbstractPath path = uri.getAbstractPath();
+        updateTag(TAG_PATH);
+        updateTag(getPathFlags(
+            path.isAbsolutePath(),
+            path.hasPathTrailingSeparator()));
+        for (String segment : path.getPathSegments()) {
+            updateTag(TAG_ITEM);
+            updateString(segment);
+        }
+        updateTag(TAG_END);
+        updateTag(TAG_QUERY);
+        List<QueryItem> items = uri.getQueryItems();
+        if (items != null) {
+            for (QueryItem item : items) {
+                updateTag(TAG_ITEM);
+                updateString(item.name);
+                updateString(item.getValue(false, false));
+            }
+        }
+        updateTag(TAG_END);
+        updateTag(TAG_FRAGMENT);
+        updateString(uri.getFragment());
+        return this;
+    }
+
+    /**
+     * Adds one byte to this fingerprint.
+     *
+     * @param b the byte to add
+     * @return a reference to this object
+     */
+    public UriFingerprint update(byte b) {
+        long value = b & 0xFFL;
+        if (fPos < 8) {
+            fK1 |= value << (fPos << 3);
+        } else {
+            fK2 |= value << ((fPos - 8) << 3);
+        }
+        fLength++;
+        if (++fPos == 16) {
+            mixBlock();
+        }
+        return this;
+    }
+
+    /**
+     * Adds one symbol (two bytes in the little-endian order) to this
+     * fingerprint.
+     *
+     * @param ch the symbol to add
+     * @return a reference to this object
+     */
+    public UriFingerprint update(char ch) {
+        update((byte) ch);
+        update((byte) (ch >>> 8));
+        return this;
+    }
+
+    /**
+     * Adds all symbols of the given sequence to this fingerprint. Note that
+     * the length of the sequence is not added, so this method can be called
+     * several times to add one long sequence by parts.
+     *
+     * @param str the sequence of symbols to add
+     * @return a reference to this object
+     */
+    public UriFingerprint update(CharSequence str) {
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            update(str.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Adds an integer value (four bytes in the little-endian order) to this
+     * fingerprint.
+     *
+     * @param value the value to add
+     * @return a reference to this object
+     */
+    public UriFingerprint updateInt(int value) {
+        update((byte) value);
+        update((byte) (value >>> 8));
+        update((byte) (value >>> 16));
+        update((byte) (value >>> 24));
+        return this;
+    }
+
+    /**
+     * Adds a string and its length to this fingerprint. <code>null</code>
+     * values are distinguished from empty strings.
+     */
+    private void updateString(String str) {
+        if (str == null) {
+            updateInt(-1);
+        } else {
+            updateInt(str.length());
+            update(str);
+        }
+    }
+
+    private void updateTag(int tag) {
+        update((byte) tag);
+    }
+
+}
@@ -0,0 +1,282 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ubimix.commons.uri.AbstractUri.QueryItem;
+
+/**
+ * This class is used to share identical URIs and their components (hosts,
+ * scheme segments, path segments and names of query parameters) between URI
+ * objects. All pools are bounded: the least recently used values are removed
+ * from pools when they are full, so this object never retains more than the
+ * configured number of values. Each pool is split into independent
+ * synchronized segments to reduce the contention between threads.
+ *
+ * <pre>
+ * UriInterner interner = new UriInterner();
+ * ...
+ * Uri uri = new Uri.Builder(str).build(interner);
+ * </pre>
+ *
+ * @author kotelnikov
+ * @see Uri.Builder#build(UriInterner)
+ */
+public class UriInterner {
+
+    /**
+     * A bounded pool of canonical values. Each segment of the pool is an LRU
+     * map guarded by its own lock.
+     */
+    private static class Pool<T> {
+
+        private final Map<T, T>[] fSegments;
+
+        @SuppressWarnings("unchecked")
+        public Pool(int maxSize) {
+            int count = SEGMENT_COUNT;
+            fSegments = (Map<T, T>[]) new Map<?, ?>[count];
+            final int segmentSize = Math.max(1, maxSize / count);
+            for (int i = 0; i < count; i++) {
+                fSegments[i] = new LinkedHashMap<T, T>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<T, T> eldest) {
+                        return size() > segmentSize;
+                    }
+                };
+            }
+        }
+
+        public void clear() {
+            for (Map<T, T> segment : fSegments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+
+        private Map<T, T> getSegment(Object value) {
+            int h = value.hashCode();
+            h ^= (h >>> 16);
+            return fSegments[h & (fSegments.length - 1)];
+        }
+
+        public T get(Object key) {
+            Map<T, T> segment = getSegment(key);
+            synchronized (segment) {
+                return segment.get(key);
+            }
+        }
+
+        public T intern(T value) {
+            Map<T, T> segment = getSegment(value);
+            synchronized (segment) {
+                T result = segment.get(value);
+                if (result == null) {
+                    segment.put(value, value);
+                    result = value;
+                }
+                return result;
+            }
+        }
+
+        public int size() {
+            int size = 0;
+            for (Map<T, T> segment : fSegments) {
+                synchronized (segment) {
+                    size += segment.size();
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * The default maximal number of strings (hosts, path segments...) in
+     * pools.
+     */
+    public static final int DEFAULT_MAX_STRINGS = 64 * 1024;
+
+    /**
+     * The default maximal number of URIs in the pool.
+     */
+    public static final int DEFAULT_MAX_URIS = 16 * 1024;
+
+    /**
+     * The number of independent segments in each pool; it should be a power
+     * of two.
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Pool<String> fHosts;
+
+    private final Pool<List<String>> fSchemes;
+
+    private final Pool<String> fSegments;
+
+    private final Pool<Uri> fUris;
+
+    /**
+     * Creates a new interner with the default sizes of pools.
+     */
+    public UriInterner() {
+        this(DEFAULT_MAX_URIS, DEFAULT_MAX_STRINGS);
+    }
+
+    /**
+     * @param maxUris the maximal number of URIs retained by this interner
+     * @param maxStrings the maximal number of hosts and path segments
+     *        (each) retained by this interner
+     */
+    public UriInterner(int maxUris, int maxStrings) {
+        fUris = new Pool<Uri>(maxUris);
+        fHosts = new Pool<String>(maxStrings);
+        fSegments = new Pool<String>(maxStrings);
+        fSchemes = new Pool<List<String>>(Math.max(
+            SEGMENT_COUNT,
+            maxStrings / 64));
+    }
+
+    /**
+     * Removes all values from this interner.
+     */
+    public void clear() {
+        fUris.clear();
+        fHosts.clear();
+        fSegments.clear();
+        fSchemes.clear();
+    }
+
+    /**
+     * Returns the number of URIs retained by this interner.
+     *
+     * @return the number of URIs in the pool
+     */
+    public int getUriCount() {
+        return fUris.size();
+    }
+
+    /**
+     * Returns a canonical instance of the URI equal to the given one. If there
+     * is no such an URI in the pool then a new {@link Uri} object with interned
+     * components is created and added to the pool.
+     *
+     * @param uri the URI to intern
+     * @return the canonical instance of the URI
+     */
+    public Uri intern(AbstractUri uri) {
+        if (uri == null) {
+            return null;
+        }
+        Uri result = fUris.get(uri);
+        if (result != null) {
+            return result;
+        }
+        UriComponents components = new UriComponents();
+        components.fSchemeSegments = internSchemeSegments(uri
+            .getSchemeSegments());
+        components.fUserInfo = uri.getUserInfo();
+        components.fHost = internHost(uri.getHost());
+        components.fPort = uri.getPort();
+        components.fPath = internPath(uri.getPath());
+        components.fQueryItems = internQueryItems(uri.getQueryItems());
+        components.fFragment = uri.getFragment();
+        result = new Uri(components);
+        return fUris.intern(result);
+    }
+
+    /**
+     * Returns the canonical instance of the given host name.
+     *
+     * @param host the host to intern
+     * @return the canonical instance of the host name
+     */
+    public String internHost(String host) {
+        return host != null ? fHosts.intern(host) : null;
+    }
+
+    /**
+     * Returns a path with interned segments corresponding to the given one.
+     *
+     * @param path the path to intern
+     * @return a path with interned path segments
+     */
+    public Path internPath(AbstractPath path) {
+        Path.Builder builder = new Path.Builder(path);
+        List<String> segments = builder.getPathSegments();
+        int len = segments.size();
+        for (int i = 0; i < len; i++) {
+            segments.set(i, internSegment(segments.get(i)));
+        }
+        return builder.build();
+    }
+
+    private List<QueryItem> internQueryItems(List<QueryItem> items) {
+        if (items == null || items.isEmpty()) {
+            return items;
+        }
+        List<QueryItem> result = new ArrayList<QueryItem>(items.size());
+        for (QueryItem item : items) {
+            String name = internSegment(item.name);
+            if (name != item.name) {
+                item = new QueryItem(name, item.getValue(false, false), false);
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the canonical immutable list of scheme segments equal to the
+     * given one.
+     *
+     * @param segments the scheme segments to intern
+     * @return the canonical list of scheme segments
+     */
+    public List<String> internSchemeSegments(List<String> segments) {
+        if (segments == null) {
+            return null;
+        }
+        if (segments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> list = new ArrayList<String>(segments.size());
+        for (String segment : segments) {
+            list.add(internSegment(segment));
+        }
+        return fSchemes.intern(Collections.unmodifiableList(list));
+    }
+
+    /**
+     * Returns the canonical instance of the given segment. This method is used
+     * to intern path segments, scheme segments and names of query parameters.
+     *
+     * @param segment the segment to intern
+     * @return the canonical instance of the segment
+     */
+    public String internSegment(String segment) {
+        return segment != null ? fSegments.intern(segment) : null;
+    }
+
+}
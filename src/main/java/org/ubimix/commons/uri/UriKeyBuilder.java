@@ -0,0 +1,218 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.List;
+
+import org.ubimix.commons.uri.AbstractUri.QueryItem;
+
+/**
+ * This class defines the structure of sort keys of URIs. Keys start with host
+ * labels in the reversed order ("www.foo.bar" is written as "bar", "foo",
+ * "www"; IP addresses are not reversed), followed by the port, path segments,
+ * query items, the fragment, scheme segments and the user info. Strings and
+ * lists are separated by the markers defined in this class.
+ * <p>
+ * Subclasses define how markers, numbers and strings are written; they should
+ * keep the order of {@link String#compareTo(String)} for strings and use
+ * terminators which are less than any char. The {@link UriComparator#HOST}
+ * comparator writes keys as strings and the
+ * <code>org.ubimix.commons.uri.io.UriKeyEncoder</code> class writes them as
+ * bytes, so both have the same order.
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public abstract class UriKeyBuilder {
+
+    /**
+     * This marker closes a list of strings (path segments, host labels...)
+     */
+    public static final int END = 0x01;
+
+    /**
+     * This marker closes a path with a trailing separator
+     */
+    public static final int END_TRAILING = 0x02;
+
+    /**
+     * This marker precedes each element of a list
+     */
+    public static final int ITEM = 0x03;
+
+    /**
+     * This marker is used for <code>null</code> values
+     */
+    public static final int NULL = 0x00;
+
+    /**
+     * This marker precedes non-empty values
+     */
+    public static final int VALUE = 0x01;
+
+    /**
+     * Returns <code>true</code> if the given host is an IP address. Labels of
+     * such hosts are not reversed.
+     *
+     * @param host the host to check
+     * @return <code>true</code> if the given host is an IP address
+     */
+    public static boolean isAddress(String host) {
+        if (host.length() > 0 && host.charAt(0) == '[') {
+            return true;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char ch = host.charAt(i);
+            if (ch != '.' && (ch < '0' || ch > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the host with reversed labels. If the <code>close</code> flag is
+     * <code>false</code> then the list of labels is not closed, so the written
+     * key is a prefix of keys of all sub-domains of the host.
+     *
+     * @param host the host to write; it could be <code>null</code>
+     * @param close if this flag is <code>true</code> then the list of labels
+     *        is closed
+     */
+    public void writeHost(String host, boolean close) {
+        if (host == null) {
+            writeMarker(NULL);
+            return;
+        }
+        writeMarker(VALUE);
+        if (isAddress(host)) {
+            writeMarker(ITEM);
+            writeString(host, 0, host.length());
+        } else {
+            int end = host.length();
+            for (int i = end - 1; i >= -1; i--) {
+                if (i < 0 || host.charAt(i) == '.') {
+                    writeMarker(ITEM);
+                    writeString(host, i + 1, end);
+                    end = i;
+                }
+            }
+        }
+        if (close) {
+            writeMarker(END);
+        }
+    }
+
+    /**
+     * Writes an integer value; signed values should be already shifted to
+     * keep their order as unsigned ones.
+     *
+     * @param value the value to write
+     */
+    protected abstract void writeInt(int value);
+
+    /**
+     * Writes the full key of the given URI.
+     *
+     * @param uri the URI to write
+     */
+    public void writeKey(AbstractUri uri) {
+        writeHost(uri.getHost(), true);
+        writePort(uri.getPort());
+        writePath(uri.getPath(), true);
+        List<QueryItem> items = uri.getQueryItems();
+        if (items != null) {
+            for (QueryItem item : items) {
+                writeMarker(ITEM);
+                writeString(item.getName(false, false));
+                writeNullableString(item.getValue(false, false));
+            }
+        }
+        writeMarker(END);
+        writeNullableString(uri.getFragment());
+        List<String> scheme = uri.getSchemeSegments();
+        if (scheme != null) {
+            writeList(scheme);
+        }
+        writeMarker(END);
+        writeNullableString(uri.getUserInfo());
+    }
+
+    private void writeList(List<String> list) {
+        for (String str : list) {
+            writeMarker(ITEM);
+            writeString(str);
+        }
+    }
+
+    /**
+     * Writes one of the markers defined in this class.
+     *
+     * @param marker the marker to write
+     */
+    protected abstract void writeMarker(int marker);
+
+    private void writeNullableString(String str) {
+        if (str == null) {
+            writeMarker(NULL);
+        } else {
+            writeMarker(VALUE);
+            writeString(str);
+        }
+    }
+
+    /**
+     * Writes the given path. If the <code>close</code> flag is
+     * <code>false</code> then the list of segments is not closed, so the
+     * written key is a prefix of keys of all paths in this "directory".
+     *
+     * @param path the path to write
+     * @param close if this flag is <code>true</code> then the list of
+     *        segments is closed
+     */
+    public void writePath(AbstractPath path, boolean close) {
+        writeMarker(path.isAbsolutePath() ? VALUE : NULL);
+        writeList(path.getPathSegments());
+        if (close) {
+            writeMarker(path.hasPathTrailingSeparator() ? END_TRAILING : END);
+        }
+    }
+
+    /**
+     * Writes the port of a URI.
+     *
+     * @param port the port to write
+     */
+    public void writePort(int port) {
+        writeInt(port ^ Integer.MIN_VALUE);
+    }
+
+    private void writeString(String str) {
+        writeString(str, 0, str.length());
+    }
+
+    /**
+     * Writes the specified part of the string followed by a terminator which
+     * is less than any char.
+     *
+     * @param str the string to write
+     * @param begin the begin of the part to write
+     * @param end the end of the part to write
+     */
+    protected abstract void writeString(String str, int begin, int end);
+
+}
@@ -0,0 +1,612 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ubimix.commons.uri.AbstractUri.QueryItem;
+
+/**
+ * This class performs the syntax-based normalization of URIs defined in the
+ * section 6.2.2 of the RFC 3986 (http://www.ietf.org/rfc/rfc3986.txt):
+ * <ul>
+ * <li>schemes and hosts are transformed to the lower case;</li>
+ * <li>hexadecimal digits of percent-encoded symbols are upper-cased and
+ * percent-encoded unreserved symbols are decoded;</li>
+ * <li>dot-segments ("." and "..") are removed from absolute paths;</li>
+ * <li>default ports of known schemes are removed;</li>
+ * <li>empty queries and fragments are removed.</li>
+ * </ul>
+ * In addition to that an empty path of URIs with an authority part is
+ * replaced by "/" (scheme-based normalization, see section 6.2.3).
+ * <p>
+ * Optional rules can be activated for each instance: query parameters can be
+ * sorted by names, some parameters (like "utm_*" tracking parameters) can be
+ * removed and fragments can be dropped.
+ * </p>
+ * <p>
+ * All rules are applied in one pass over the parsed components of the URI.
+ * The result can be returned as a new normalized {@link Uri} object, as a
+ * canonical string or as a 64-bit fingerprint of this string (see
+ * {@link UriFingerprint}). Instances of this class should be configured once
+ * and can be shared between threads after that.
+ * </p>
+ *
+ * <pre>
+ *   HTTP://www.Example.COM:80/a/./b/../c/%7Efoo?utm_source=x&amp;b=1&amp;a=2#
+ *   =&gt; http://www.example.com/a/c/~foo?a=2&amp;b=1
+ *   (with sorted parameters and removed "utm_" parameters)
+ * </pre>
+ *
+ * @author kotelnikov
+ */
+public class UriNormalizer {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Symbols allowed in fragments (except unreserved ones).
+     */
+    private static final String FRAGMENT_SYMBOLS = "!$&'()*+,;=:@/?";
+
+    /**
+     * Symbols allowed in path segments (except unreserved ones).
+     */
+    private static final String PATH_SYMBOLS = "!$&'()*,;=:@";
+
+    /**
+     * Symbols allowed in names and values of query parameters (except
+     * unreserved ones). Parameter separators and the '+' symbol are encoded.
+     */
+    private static final String QUERY_SYMBOLS = "!$'()*,:@/?";
+
+    /**
+     * Symbols allowed in the user info part (except unreserved ones).
+     */
+    private static final String USER_INFO_SYMBOLS = "!$&'()*+,;=:";
+
+    private static int getHexCode(char ch) {
+        if (ch >= '0' && ch <= '9') {
+            return ch - '0';
+        }
+        if (ch >= 'a' && ch <= 'f') {
+            return 10 + (ch - 'a');
+        }
+        if (ch >= 'A' && ch <= 'F') {
+            return 10 + (ch - 'A');
+        }
+        return -1;
+    }
+
+    /**
+     * Returns <code>true</code> if the given symbol is an "unreserved" symbol
+     * as defined by the RFC 3986: ALPHA / DIGIT / "-" / "." / "_" / "~".
+     *
+     * @param ch the symbol to check
+     * @return <code>true</code> if the given symbol is unreserved
+     */
+    public static boolean isUnreserved(int ch) {
+        return (ch >= 'a' && ch <= 'z')
+            || (ch >= 'A' && ch <= 'Z')
+            || (ch >= '0' && ch <= '9')
+            || ch == '-'
+            || ch == '.'
+            || ch == '_'
+            || ch == '~';
+    }
+
+    private static char toLowerCase(char ch) {
+        return (ch >= 'A' && ch <= 'Z') ? (char) (ch + ('a' - 'A')) : ch;
+    }
+
+    private final Map<String, Integer> fDefaultPorts = new HashMap<String, Integer>();
+
+    private final Set<String> fIgnoredParams = new HashSet<String>();
+
+    private final List<String> fIgnoredParamPrefixes = new ArrayList<String>();
+
+    private boolean fRemoveFragment;
+
+    private boolean fSortParams;
+
+    /**
+     * Creates a new normalizer applying only the syntax-based normalization
+     * rules.
+     */
+    public UriNormalizer() {
+        setDefaultPort("http", 80);
+        setDefaultPort("https", 443);
+        setDefaultPort("ftp", 21);
+        setDefaultPort("ws", 80);
+        setDefaultPort("wss", 443);
+    }
+
+    /**
+     * Query parameters with the specified name will be removed from
+     * normalized URIs.
+     *
+     * @param name the name of the parameter to remove
+     * @return a reference to this object
+     */
+    public UriNormalizer addIgnoredParam(String name) {
+        fIgnoredParams.add(name);
+        return this;
+    }
+
+    /**
+     * All query parameters with names starting with the specified prefix will
+     * be removed from normalized URIs. Example: "utm_".
+     *
+     * @param prefix the prefix of parameter names to remove
+     * @return a reference to this object
+     */
+    public UriNormalizer addIgnoredParamPrefix(String prefix) {
+        fIgnoredParamPrefixes.add(prefix);
+        return this;
+    }
+
+    private void appendAuthority(StringBuilder buf, AbstractUri uri) {
+        buf.append("//");
+        String userInfo = uri.getUserInfo();
+        if (!AbstractUri.isEmpty(userInfo)) {
+            appendNormalized(buf, userInfo, USER_INFO_SYMBOLS, false);
+            buf.append('@');
+        }
+        String host = uri.getHost();
+        if (!AbstractUri.isEmpty(host)) {
+            appendNormalized(buf, host, null, true);
+        }
+        int port = getPort(uri);
+        if (port > 0) {
+            buf.append(':');
+            buf.append(port);
+        }
+    }
+
+    /**
+     * Appends the given (decoded) value to the buffer and percent-encodes all
+     * symbols which are not unreserved and which are not in the given list of
+     * allowed symbols. Non-ASCII symbols are encoded using UTF-8.
+     */
+    private void appendEncoded(StringBuilder buf, String value, String allowed) {
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            i = appendEncoded(buf, value, i, allowed);
+        }
+    }
+
+    /**
+     * Appends the symbol from the specified position of the given value and
+     * percent-encodes it if it is required. Returns the position of the last
+     * consumed symbol (surrogate pairs are consumed at once).
+     */
+    private int appendEncoded(
+        StringBuilder buf,
+        String value,
+        int pos,
+        String allowed) {
+        char ch = value.charAt(pos);
+        if (isUnreserved(ch) || allowed.indexOf(ch) >= 0) {
+            buf.append(ch);
+        } else if (ch < 0x80) {
+            appendHex(buf, ch);
+        } else if (ch < 0x800) {
+            appendHex(buf, 0xC0 | (ch >> 6));
+            appendHex(buf, 0x80 | (ch & 0x3F));
+        } else if (Character.isHighSurrogate(ch)
+            && pos + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(pos + 1))) {
+            int code = Character.toCodePoint(ch, value.charAt(++pos));
+            appendHex(buf, 0xF0 | (code >> 18));
+            appendHex(buf, 0x80 | ((code >> 12) & 0x3F));
+            appendHex(buf, 0x80 | ((code >> 6) & 0x3F));
+            appendHex(buf, 0x80 | (code & 0x3F));
+        } else {
+            appendHex(buf, 0xE0 | (ch >> 12));
+            appendHex(buf, 0x80 | ((ch >> 6) & 0x3F));
+            appendHex(buf, 0x80 | (ch & 0x3F));
+        }
+        return pos;
+    }
+
+    private void appendHex(StringBuilder buf, int code) {
+        buf.append('%');
+        buf.append(HEX[(code >> 4) & 0xF]);
+        buf.append(HEX[code & 0xF]);
+    }
+
+    /**
+     * Appends a raw (non-decoded) component to the buffer. Percent-encoded
+     * unreserved symbols are decoded, hex digits of all other encoded symbols
+     * are upper-cased and the remaining symbols are encoded if they are not
+     * allowed. If the <code>allowed</code> parameter is <code>null</code> then
+     * the value is copied without additional encoding.
+     */
+    private void appendNormalized(
+        StringBuilder buf,
+        String value,
+        String allowed,
+        boolean lowerCase) {
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char ch = value.charAt(i);
+            if (ch == '%' && i + 2 < len) {
+                int a = getHexCode(value.charAt(i + 1));
+                int b = getHexCode(value.charAt(i + 2));
+                if (a >= 0 && b >= 0) {
+                    int code = (a << 4) | b;
+                    if (isUnreserved(code)) {
+                        char c = (char) code;
+                        buf.append(lowerCase ? toLowerCase(c) : c);
+                    } else {
+                        appendHex(buf, code);
+                    }
+                    i += 2;
+                    continue;
+                }
+            }
+            if (lowerCase) {
+                ch = toLowerCase(ch);
+            }
+            if (allowed == null) {
+                buf.append(ch);
+            } else {
+                i = appendEncoded(buf, value, i, allowed);
+            }
+        }
+    }
+
+    private void appendPath(StringBuilder buf, AbstractUri uri) {
+        Path path = uri.getPath();
+        List<String> segments = path.getPathSegments();
+        int[] positions = getPathSegmentPositions(path);
+        int count = positions.length;
+        boolean absolute = path.isAbsolutePath() || uri.hasAuthority();
+        if (absolute) {
+            buf.append('/');
+        }
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                buf.append('/');
+            }
+            String segment = segments.get(positions[i]);
+            appendEncoded(buf, segment, PATH_SYMBOLS);
+        }
+        if (count > 0 && hasTrailingSeparator(path, positions)) {
+            buf.append('/');
+        }
+    }
+
+    private void appendQuery(StringBuilder buf, AbstractUri uri) {
+        QueryItem[] items = getQueryItems(uri);
+        if (items.length == 0) {
+            return;
+        }
+        buf.append('?');
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) {
+                buf.append('&');
+            }
+            QueryItem item = items[i];
+            appendEncoded(buf, item.name, QUERY_SYMBOLS);
+            String value = item.getValue(false, false);
+            if (value != null) {
+                buf.append('=');
+                appendEncoded(buf, value, QUERY_SYMBOLS);
+            }
+        }
+    }
+
+    private void appendScheme(StringBuilder buf, AbstractUri uri) {
+        for (String segment : uri.getSchemeSegments()) {
+            if (segment != null) {
+                int len = segment.length();
+                for (int i = 0; i < len; i++) {
+                    buf.append(toLowerCase(segment.charAt(i)));
+                }
+            }
+            buf.append(':');
+        }
+    }
+
+    /**
+     * Returns the normalized string representation of the given URI. Two URIs
+     * are considered as equivalent if they have the same canonical strings.
+     *
+     * @param uri the URI to normalize
+     * @return the canonical string representation of the given URI
+     */
+    public String getCanonicalString(AbstractUri uri) {
+        StringBuilder buf = new StringBuilder();
+        getCanonicalString(uri, buf);
+        return buf.toString();
+    }
+
+    /**
+     * Writes the canonical string representation of the given URI in the
+     * specified buffer.
+     *
+     * @param uri the URI to normalize
+     * @param buf the buffer where the canonical representation is written
+     */
+    public void getCanonicalString(AbstractUri uri, StringBuilder buf) {
+        appendScheme(buf, uri);
+        if (uri.hasAuthority()) {
+            appendAuthority(buf, uri);
+        }
+        appendPath(buf, uri);
+        appendQuery(buf, uri);
+        String fragment = getFragment(uri);
+        if (fragment != null) {
+            buf.append('#');
+            appendEncoded(buf, fragment, FRAGMENT_SYMBOLS);
+        }
+    }
+
+    /**
+     * Returns the default port for the specified scheme or <code>-1</code> if
+     * this scheme has no registered default port.
+     *
+     * @param scheme the scheme (in lower case)
+     * @return the default port for the specified scheme
+     */
+    public int getDefaultPort(String scheme) {
+        Integer port = scheme != null ? fDefaultPorts.get(scheme) : null;
+        return port != null ? port.intValue() : -1;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the canonical form of the given URI.
+     * Equivalent URIs have the same fingerprints.
+     *
+     * @param uri the URI to normalize
+     * @return a 64-bit fingerprint of the canonical form of the URI
+     */
+    public long getFingerprint(AbstractUri uri) {
+        StringBuilder buf = new StringBuilder();
+        getCanonicalString(uri, buf);
+        return new UriFingerprint().update(buf).getValue();
+    }
+
+    /**
+     * Returns a 128-bit fingerprint of the canonical form of the given URI.
+     * The first element of the returned array is equal to the value returned
+     * by the {@link #getFingerprint(AbstractUri)} method.
+     *
+     * @param uri the URI to normalize
+     * @return an array of two longs containing the 128-bit fingerprint of the
+     *         canonical form of the URI
+     */
+    public long[] getFingerprint128(AbstractUri uri) {
+        StringBuilder buf = new StringBuilder();
+        getCanonicalString(uri, buf);
+        return new UriFingerprint().update(buf).getValue128();
+    }
+
+    private String getFragment(AbstractUri uri) {
+        if (fRemoveFragment) {
+            return null;
+        }
+        String fragment = uri.getFragment();
+        return !AbstractUri.isEmpty(fragment) ? fragment : null;
+    }
+
+    /**
+     * Returns positions of path segments remaining after the removal of dot
+     * segments. Dot segments are removed only from absolute paths.
+     */
+    private int[] getPathSegmentPositions(Path path) {
+        List<String> segments = path.getPathSegments();
+        int len = segments.size();
+        int[] positions = new int[len];
+        int count = 0;
+        boolean resolve = path.isAbsolutePath();
+        for (int i = 0; i < len; i++) {
+            String segment = segments.get(i);
+            if (resolve) {
+                if ("".equals(segment) || ".".equals(segment)) {
+                    continue;
+                }
+                if ("..".equals(segment)) {
+                    if (count > 0) {
+                        count--;
+                    }
+                    continue;
+                }
+            }
+            positions[count++] = i;
+        }
+        if (count < len) {
+            int[] array = new int[count];
+            System.arraycopy(positions, 0, array, 0, count);
+            positions = array;
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the port of the given URI or <code>0</code> if the URI has no
+     * port or if it is the default port for the scheme of this URI.
+     */
+    private int getPort(AbstractUri uri) {
+        int port = uri.getPort();
+        if (port <= 0) {
+            return 0;
+        }
+        List<String> schemeSegments = uri.getSchemeSegments();
+        int size = schemeSegments.size();
+        if (size > 0) {
+            String scheme = schemeSegments.get(size - 1);
+            if (scheme != null
+                && port == getDefaultPort(scheme.toLowerCase())) {
+                return 0;
+            }
+        }
+        return port;
+    }
+
+    /**
+     * Returns filtered (and eventually sorted) query items of the given URI.
+     */
+    private QueryItem[] getQueryItems(AbstractUri uri) {
+        List<QueryItem> list = uri.getQueryItems();
+        if (list == null || list.isEmpty()) {
+            return new QueryItem[0];
+        }
+        QueryItem[] items = new QueryItem[list.size()];
+        int count = 0;
+        for (QueryItem item : list) {
+            if (!isIgnoredParam(item.name)) {
+                items[count++] = item;
+            }
+        }
+        if (count < items.length) {
+            QueryItem[] array = new QueryItem[count];
+            System.arraycopy(items, 0, array, 0, count);
+            items = array;
+        }
+        if (fSortParams && count > 1) {
+            Arrays.sort(items, AbstractUriBuilder.NAME_COMPARATOR);
+        }
+        return items;
+    }
+
+    /**
+     * Returns <code>true</code> if the last remaining path segment should be
+     * followed by a separator.
+     */
+    private boolean hasTrailingSeparator(Path path, int[] positions) {
+        List<String> segments = path.getPathSegments();
+        int len = segments.size();
+        int last = positions[positions.length - 1];
+        if (last < len - 1) {
+            // Trailing dot segments were removed
+            return true;
+        }
+        return path.hasPathTrailingSeparator();
+    }
+
+    /**
+     * Returns <code>true</code> if a query parameter with the given name
+     * should be removed.
+     *
+     * @param name the name of the parameter
+     * @return <code>true</code> if the parameter with the given name should be
+     *         removed
+     */
+    public boolean isIgnoredParam(String name) {
+        if (fIgnoredParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : fIgnoredParamPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a new normalized URI corresponding to the given one.
+     *
+     * @param uri the URI to normalize
+     * @return a new normalized URI
+     */
+    public Uri normalize(AbstractUri uri) {
+        Uri.Builder builder = new Uri.Builder();
+        List<String> schemeSegments = uri.getSchemeSegments();
+        String[] scheme = new String[schemeSegments.size()];
+        for (int i = 0; i < scheme.length; i++) {
+            String segment = schemeSegments.get(i);
+            scheme[i] = segment != null ? segment.toLowerCase() : null;
+        }
+        builder.appendSchemeSegments(scheme, false);
+        String userInfo = uri.getUserInfo();
+        if (!AbstractUri.isEmpty(userInfo)) {
+            StringBuilder buf = new StringBuilder();
+            appendNormalized(buf, userInfo, USER_INFO_SYMBOLS, false);
+            builder.setUserInfo(buf.toString());
+        }
+        String host = uri.getHost();
+        if (!AbstractUri.isEmpty(host)) {
+            StringBuilder buf = new StringBuilder();
+            appendNormalized(buf, host, null, true);
+            builder.setHost(buf.toString());
+        }
+        builder.setPort(getPort(uri));
+
+        Path path = uri.getPath();
+        List<String> segments = path.getPathSegments();
+        int[] positions = getPathSegmentPositions(path);
+        Path.Builder pathBuilder = builder.getPathBuilder();
+        String[] array = new String[positions.length];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = segments.get(positions[i]);
+        }
+        pathBuilder.appendPathSegments(array);
+        if (path.isAbsolutePath() || uri.hasAuthority()) {
+            pathBuilder.makeAbsolutePath();
+        }
+        if (array.length > 0 && hasTrailingSeparator(path, positions)) {
+            pathBuilder.appendTrailingSeparator();
+        }
+
+        builder.setQuery(Arrays.asList(getQueryItems(uri)), true);
+        builder.setFragment(getFragment(uri), false);
+        return builder.build();
+    }
+
+    /**
+     * Registers the default port for the specified scheme. This port is
+     * removed from normalized URIs.
+     *
+     * @param scheme the scheme
+     * @param port the default port for this scheme
+     * @return a reference to this object
+     */
+    public UriNormalizer setDefaultPort(String scheme, int port) {
+        fDefaultPorts.put(scheme.toLowerCase(), port);
+        return this;
+    }
+
+    /**
+     * @param removeFragment if this flag is <code>true</code> then fragments
+     *        are removed from normalized URIs
+     * @return a reference to this object
+     */
+    public UriNormalizer setRemoveFragment(boolean removeFragment) {
+        fRemoveFragment = removeFragment;
+        return this;
+    }
+
+    /**
+     * @param sortParams if this flag is <code>true</code> then query
+     *        parameters of normalized URIs are sorted by their names
+     * @return a reference to this object
+     */
+    public UriNormalizer setSortParams(boolean sortParams) {
+        fSortParams = sortParams;
+        return this;
+    }
+
+}
@@ -0,0 +1,297 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class gives access to entries of a block written by a
+ * {@link BlockWriter}. The block itself is not copied or deserialized: entries
+ * are read on demand using {@link Cursor} objects. A reader is immutable and
+ * could be shared between threads; each thread should use its own cursors.
+ *
+ * @author kotelnikov
+ * @see BlockWriter
+ */
+public class BlockReader {
+
+    /**
+     * A cursor is used to read entries of the block one after another. Each
+     * cursor keeps the key of the current entry; this key is re-used and
+     * changed when the cursor moves.
+     */
+    public class Cursor {
+
+        private final ByteBuffer fData;
+
+        private int fIndex = -1;
+
+        private byte[] fKey = new byte[64];
+
+        private int fKeyLength;
+
+        private int fNextOffset;
+
+        private int fValueLength;
+
+        private int fValueOffset;
+
+        Cursor() {
+            fData = fBlock.duplicate();
+        }
+
+        /**
+         * Compares the key of the current entry with the given key.
+         *
+         * @param key the key to compare with
+         * @return a negative value, zero, or a positive value if the current
+         *         key is less than, equal to, or greater than the given one
+         */
+        public int compareKey(byte[] key) {
+            return UriKeyEncoder.compare(
+                fKey,
+                0,
+                fKeyLength,
+                key,
+                0,
+                key.length);
+        }
+
+        /**
+         * Returns the index of the current entry or <code>-1</code> if the
+         * cursor is not positioned on an entry.
+         *
+         * @return the index of the current entry
+         */
+        public int getIndex() {
+            return fIndex;
+        }
+
+        /**
+         * Returns a copy of the key of the current entry.
+         *
+         * @return the key of the current entry
+         */
+        public byte[] getKey() {
+            byte[] result = new byte[fKeyLength];
+            System.arraycopy(fKey, 0, result, 0, fKeyLength);
+            return result;
+        }
+
+        /**
+         * Returns the internal array containing the key of the current entry.
+         * This array is changed when the cursor moves.
+         *
+         * @return an array containing the current key
+         * @see #getKeyLength()
+         */
+        public byte[] getKeyArray() {
+            return fKey;
+        }
+
+        /**
+         * @return the length of the current key
+         */
+        public int getKeyLength() {
+            return fKeyLength;
+        }
+
+        /**
+         * Returns a buffer positioned on the value of the current entry. The
+         * limit of the returned buffer is set to the end of the value.
+         *
+         * @return a buffer containing the value of the current entry
+         */
+        public ByteBuffer getValue() {
+            ByteBuffer result = fBlock.duplicate();
+            result.limit(fValueOffset + fValueLength);
+            result.position(fValueOffset);
+            return result;
+        }
+
+        /**
+         * Moves this cursor to the next entry.
+         *
+         * @return <code>true</code> if the cursor is positioned on the next
+         *         entry and <code>false</code> if there is no more entries
+         */
+        public boolean next() {
+            if (fIndex + 1 >= fEntryCount) {
+                fIndex = fEntryCount;
+                return false;
+            }
+            readEntry(fNextOffset);
+            fIndex++;
+            return true;
+        }
+
+        private void readEntry(int offset) {
+            fData.position(offset);
+            int shared = BufferUtil.readVarint(fData);
+            int unshared = BufferUtil.readVarint(fData);
+            int suffix = BufferUtil.readVarint(fData);
+            int valueLength = BufferUtil.readVarint(fData);
+            int keyLength = shared + unshared + suffix;
+            if (fKey.length < keyLength) {
+                byte[] key = new byte[Math.max(keyLength, fKey.length * 2)];
+                System.arraycopy(fKey, 0, key, 0, fKeyLength);
+                fKey = key;
+            }
+            // The suffix is moved before the middle part is overwritten
+            System.arraycopy(
+                fKey,
+                fKeyLength - suffix,
+                fKey,
+                shared + unshared,
+                suffix);
+            fData.get(fKey, shared, unshared);
+            fKeyLength = keyLength;
+            fValueOffset = fData.position();
+            fValueLength = valueLength;
+            fNextOffset = fValueOffset + valueLength;
+        }
+
+        /**
+         * Positions this cursor on the first entry with a key greater than or
+         * equal to the given one. Keys in the block should be sorted.
+         *
+         * @param key the key to search
+         * @return <code>true</code> if the cursor is positioned on an entry
+         *         and <code>false</code> if all keys are less than the given
+         *         one
+         */
+        public boolean seek(byte[] key) {
+            // Search the last restart point with a key less than the given one
+            int low = 0;
+            int high = fRestartCount - 1;
+            int restart = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                seekRestart(mid);
+                if (compareKey(key) < 0) {
+                    restart = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            seekRestart(restart);
+            while (fIndex < fEntryCount) {
+                if (compareKey(key) >= 0) {
+                    return true;
+                }
+                next();
+            }
+            return false;
+        }
+
+        /**
+         * Positions this cursor on the entry with the specified index.
+         *
+         * @param index the index of the entry
+         * @return <code>true</code> if the cursor is positioned on the entry
+         *         and <code>false</code> if the index is out of bounds
+         */
+        public boolean seek(int index) {
+            if (index < 0 || index >= fEntryCount) {
+                fIndex = fEntryCount;
+                return false;
+            }
+            int restart = index / fRestartInterval;
+            if (fIndex < restart * fRestartInterval || fIndex > index) {
+                seekRestart(restart);
+            }
+            while (fIndex < index) {
+                next();
+            }
+            return true;
+        }
+
+        private void seekRestart(int restart) {
+            if (restart >= fRestartCount) {
+                fIndex = fEntryCount;
+                return;
+            }
+            readEntry(fBlock.getInt(fRestartsOffset + 4 * restart));
+            fIndex = restart * fRestartInterval;
+        }
+
+    }
+
+    private final ByteBuffer fBlock;
+
+    private final int fEntryCount;
+
+    private final int fRestartCount;
+
+    private final int fRestartInterval;
+
+    private final int fRestartsOffset;
+
+    /**
+     * @param block the content of the block
+     */
+    public BlockReader(byte[] block) {
+        this(ByteBuffer.wrap(block));
+    }
+
+    /**
+     * Creates a new reader for the block between the current position and the
+     * limit of the given buffer. The buffer itself is not changed.
+     *
+     * @param block the buffer containing the block
+     */
+    public BlockReader(ByteBuffer block) {
+        fBlock = block.slice();
+        int limit = fBlock.limit();
+        if (limit < 12) {
+            throw new IllegalArgumentException("Bad block: it is too short");
+        }
+        fEntryCount = fBlock.getInt(limit - 4);
+        fRestartInterval = fBlock.getInt(limit - 8);
+        fRestartCount = fBlock.getInt(limit - 12);
+        fRestartsOffset = limit - 12 - 4 * fRestartCount;
+        if (fEntryCount < 0
+            || fRestartInterval <= 0
+            || fRestartsOffset < 0
+            || fRestartCount != (fEntryCount + fRestartInterval - 1)
+                / fRestartInterval) {
+            throw new IllegalArgumentException("Bad block trailer");
+        }
+    }
+
+    /**
+     * Returns the number of entries in this block.
+     *
+     * @return the number of entries in this block
+     */
+    public int getEntryCount() {
+        return fEntryCount;
+    }
+
+    /**
+     * Creates a new cursor. The returned cursor is not positioned on an entry:
+     * {@link Cursor#next()} or one of the <code>seek</code> methods should be
+     * called first.
+     *
+     * @return a new cursor
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+}
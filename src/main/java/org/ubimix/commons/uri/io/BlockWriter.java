@@ -0,0 +1,225 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class writes a block of front-coded entries. Each entry contains a key
+ * and an optional value. A key is stored as the number of its first bytes
+ * shared with the previous key, the number of its last bytes shared with the
+ * previous key and the remaining bytes between them; values are stored as is.
+ * Each N-th key (a "restart point") is stored completely, so the block can be
+ * read starting from any restart point.
+ * <p>
+ * Block layout (all numbers except the trailer are varints):
+ * </p>
+ *
+ * <pre>
+ * entry*:  shared, unshared, suffix, valueLength, key[unshared],
+ *          value[valueLength]
+ * trailer: restartOffset[restartCount] (int32), restartCount (int32),
+ *          restartInterval (int32), entryCount (int32)
+ * </pre>
+ * <p>
+ * Entries are stored in the order they were added. Blocks written with
+ * sorted keys give the best compression and can be searched by key (see
+ * {@link BlockReader.Cursor#seek(byte[])}).
+ * </p>
+ *
+ * @author kotelnikov
+ * @see BlockReader
+ */
+public class BlockWriter {
+
+    /**
+     * The default number of entries between two restart points.
+     */
+    public static final int DEFAULT_RESTART_INTERVAL = 16;
+
+    private ByteBuffer fBuf = ByteBuffer.allocate(1024);
+
+    private int fEntryCount;
+
+    private byte[] fLastKey = new byte[64];
+
+    private int fLastKeyLength;
+
+    private final int fRestartInterval;
+
+    private int[] fRestarts = new int[16];
+
+    private int fRestartCount;
+
+    /**
+     * Creates a new writer with the default restart interval.
+     */
+    public BlockWriter() {
+        this(DEFAULT_RESTART_INTERVAL);
+    }
+
+    /**
+     * @param restartInterval the number of entries between two restart points
+     */
+    public BlockWriter(int restartInterval) {
+        if (restartInterval <= 0) {
+            throw new IllegalArgumentException(
+                "The restart interval should be a positive number");
+        }
+        fRestartInterval = restartInterval;
+    }
+
+    /**
+     * Adds a new entry without value.
+     *
+     * @param key the key of the entry
+     */
+    public void add(byte[] key) {
+        add(key, 0, key.length, null, 0, 0);
+    }
+
+    /**
+     * Adds a new entry to this block.
+     *
+     * @param key the key of the entry
+     * @param value the value of the entry
+     */
+    public void add(byte[] key, byte[] value) {
+        add(key, 0, key.length, value, 0, value != null ? value.length : 0);
+    }
+
+    /**
+     * Adds a new entry to this block.
+     *
+     * @param key an array containing the key of the entry
+     * @param keyOffset the position of the key in the array
+     * @param keyLength the length of the key
+     * @param value an array containing the value of the entry; it could be
+     *        <code>null</code>
+     * @param valueOffset the position of the value in the array
+     * @param valueLength the length of the value
+     */
+    public void add(
+        byte[] key,
+        int keyOffset,
+        int keyLength,
+        byte[] value,
+        int valueOffset,
+        int valueLength) {
+        int shared = 0;
+        int suffix = 0;
+        if (fEntryCount % fRestartInterval == 0) {
+            if (fRestartCount == fRestarts.length) {
+                int[] restarts = new int[fRestarts.length * 2];
+                System.arraycopy(fRestarts, 0, restarts, 0, fRestartCount);
+                fRestarts = restarts;
+            }
+            fRestarts[fRestartCount++] = fBuf.position();
+        } else {
+            int len = Math.min(fLastKeyLength, keyLength);
+            while (shared < len
+                && fLastKey[shared] == key[keyOffset + shared]) {
+                shared++;
+            }
+            // Common endings of keys (like ".html") are shared as well
+            len = Math.min(fLastKeyLength, keyLength) - shared;
+            int lastEnd = fLastKeyLength - 1;
+            int end = keyOffset + keyLength - 1;
+            while (suffix < len
+                && fLastKey[lastEnd - suffix] == key[end - suffix]) {
+                suffix++;
+            }
+        }
+        int unshared = keyLength - shared - suffix;
+        ensureCapacity(20 + unshared + valueLength);
+        BufferUtil.writeVarint(fBuf, shared);
+        BufferUtil.writeVarint(fBuf, unshared);
+        BufferUtil.writeVarint(fBuf, suffix);
+        BufferUtil.writeVarint(fBuf, valueLength);
+        fBuf.put(key, keyOffset + shared, unshared);
+        if (valueLength > 0) {
+            fBuf.put(value, valueOffset, valueLength);
+        }
+        if (fLastKey.length < keyLength) {
+            fLastKey = new byte[Math.max(keyLength, fLastKey.length * 2)];
+        }
+        System.arraycopy(key, keyOffset, fLastKey, 0, keyLength);
+        fLastKeyLength = keyLength;
+        fEntryCount++;
+    }
+
+    private void ensureCapacity(int len) {
+        if (fBuf.remaining() < len) {
+            int capacity = Math.max(fBuf.capacity() * 2, fBuf.position()
+                + len);
+            ByteBuffer buf = ByteBuffer.allocate(capacity);
+            fBuf.flip();
+            buf.put(fBuf);
+            fBuf = buf;
+        }
+    }
+
+    /**
+     * Writes the trailer of the block and returns the resulting bytes. After
+     * this call this writer is reset and can be used to create a new block.
+     *
+     * @return the content of the block
+     */
+    public byte[] finish() {
+        ensureCapacity(4 * (fRestartCount + 3));
+        for (int i = 0; i < fRestartCount; i++) {
+            fBuf.putInt(fRestarts[i]);
+        }
+        fBuf.putInt(fRestartCount);
+        fBuf.putInt(fRestartInterval);
+        fBuf.putInt(fEntryCount);
+        byte[] result = new byte[fBuf.position()];
+        fBuf.flip();
+        fBuf.get(result);
+        reset();
+        return result;
+    }
+
+    /**
+     * Returns the number of entries added to this block.
+     *
+     * @return the number of entries in this block
+     */
+    public int getEntryCount() {
+        return fEntryCount;
+    }
+
+    /**
+     * Returns the size of the block if it would be finished right now.
+     *
+     * @return the estimated size of the block in bytes
+     */
+    public int getSize() {
+        return fBuf.position() + 4 * (fRestartCount + 3);
+    }
+
+    /**
+     * Removes all entries from this writer.
+     */
+    public void reset() {
+        fBuf.clear();
+        fEntryCount = 0;
+        fLastKeyLength = 0;
+        fRestartCount = 0;
+    }
+
+}
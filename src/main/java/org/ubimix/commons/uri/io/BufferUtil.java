@@ -0,0 +1,197 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods used to read and write variable-length integers and UTF-8
+ * strings directly from/to byte buffers.
+ *
+ * @author kotelnikov
+ */
+final class BufferUtil {
+
+    /**
+     * Returns the number of bytes required to write the given string in
+     * UTF-8.
+     *
+     * @param str the string to check
+     * @return the length of the UTF-8 representation of the string
+     */
+    public static int getUtf8Length(CharSequence str) {
+        int len = str.length();
+        int result = len;
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x80) {
+                if (ch < 0x800) {
+                    result++;
+                } else if (Character.isHighSurrogate(ch)
+                    && i + 1 < len
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    // Four bytes for two chars
+                    result += 2;
+                    i++;
+                } else {
+                    result += 2;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes used by the given value written as a
+     * varint.
+     *
+     * @param value the value to check
+     * @return the number of bytes of the varint representation
+     */
+    public static int getVarintLength(int value) {
+        int result = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Reads a string of the specified length (in bytes) in UTF-8.
+     *
+     * @param buf the buffer to read
+     * @param len the number of bytes to read
+     * @return the resulting string
+     */
+    public static String readUtf8(ByteBuffer buf, int len) {
+        char[] chars = new char[len];
+        int count = 0;
+        if (buf.hasArray()) {
+            // Fast path for ASCII symbols in heap buffers
+            byte[] array = buf.array();
+            int pos = buf.arrayOffset() + buf.position();
+            int end = pos + Math.min(len, buf.remaining());
+            while (pos < end && array[pos] >= 0) {
+                chars[count++] = (char) array[pos++];
+            }
+            buf.position(buf.position() + count);
+            if (count == len) {
+                return new String(chars, 0, count);
+            }
+        }
+        int end = buf.position() + len - count;
+        while (buf.position() < end) {
+            int b = buf.get();
+            if (b >= 0) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (buf.get() & 0x3F));
+            } else if ((b & 0xF0) == 0xE0) {
+                int b2 = buf.get();
+                int b3 = buf.get();
+                chars[count++] = (char) (((b & 0x0F) << 12)
+                    | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+            } else {
+                int b2 = buf.get();
+                int b3 = buf.get();
+                int b4 = buf.get();
+                int code = ((b & 0x07) << 18)
+                    | ((b2 & 0x3F) << 12)
+                    | ((b3 & 0x3F) << 6)
+                    | (b4 & 0x3F);
+                code -= 0x10000;
+                chars[count++] = (char) (0xD800 + (code >>> 10));
+                chars[count++] = (char) (0xDC00 + (code & 0x3FF));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Reads a varint-encoded integer value.
+     *
+     * @param buf the buffer to read
+     * @return the read value
+     */
+    public static int readVarint(ByteBuffer buf) {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            int b = buf.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed varint value");
+            }
+        }
+    }
+
+    /**
+     * Writes the given string in UTF-8. Unpaired surrogates are written as
+     * three-byte sequences.
+     *
+     * @param buf the buffer to write
+     * @param str the string to write
+     */
+    public static void writeUtf8(ByteBuffer buf, CharSequence str) {
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                buf.put((byte) ch);
+            } else if (ch < 0x800) {
+                buf.put((byte) (0xC0 | (ch >>> 6)));
+                buf.put((byte) (0x80 | (ch & 0x3F)));
+            } else if (Character.isHighSurrogate(ch)
+                && i + 1 < len
+                && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int code = Character.toCodePoint(ch, str.charAt(++i));
+                buf.put((byte) (0xF0 | (code >>> 18)));
+                buf.put((byte) (0x80 | ((code >>> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((code >>> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (code & 0x3F)));
+            } else {
+                buf.put((byte) (0xE0 | (ch >>> 12)));
+                buf.put((byte) (0x80 | ((ch >>> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (ch & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Writes the given value as a varint: seven bits per byte, the highest bit
+     * is set in all bytes except the last one.
+     *
+     * @param buf the buffer to write
+     * @param value the value to write
+     */
+    public static void writeVarint(ByteBuffer buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    private BufferUtil() {
+    }
+
+}
@@ -0,0 +1,420 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.ubimix.commons.uri.path.AbstractPathManager;
+
+/**
+ * A read-only path manager using a file written by the
+ * {@link PathManagerWriter}. The file is mapped in memory and nothing is
+ * loaded when the manager is opened: prefixes are searched with a binary
+ * search directly in the mapped file, then the nearest prefix is found using
+ * links between entries and their registered ancestors. Only returned entries
+ * are read and their values are decoded by the {@link PathValueCodec}.
+ * <p>
+ * Instances of this class are immutable and thread-safe. The file is
+ * unmapped when this object is garbage-collected.
+ * </p>
+ *
+ * @author kotelnikov
+ * @see PathManagerWriter
+ */
+public class MappedPathManager<T> extends AbstractPathManager<T> {
+
+    /**
+     * Entries of this manager can not be changed.
+     */
+    private static class ReadOnlySlot<T> extends Slot<T> {
+
+        public ReadOnlySlot(String prefix, T value) {
+            super(prefix, value);
+        }
+
+        @Override
+        public T setValue(T value) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Iterates over a range of entries; entries are read on demand.
+     */
+    private class RangeIterator implements Iterator<Map.Entry<String, T>> {
+
+        private final int fEnd;
+
+        private int fPos;
+
+        public RangeIterator(int begin, int end) {
+            fPos = begin;
+            fEnd = end;
+        }
+
+        public boolean hasNext() {
+            return fPos < fEnd;
+        }
+
+        public Map.Entry<String, T> next() {
+            if (fPos >= fEnd) {
+                throw new NoSuchElementException();
+            }
+            return getEntry(fPos++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private final ByteBuffer fBuffer;
+
+    private final PathValueCodec<T> fCodec;
+
+    private final int fCount;
+
+    private final char fDelimiter;
+
+    /**
+     * Opens the specified file.
+     *
+     * @param file the file written by the {@link PathManagerWriter}
+     * @param codec the codec used to read values
+     * @throws IOException if the file could not be read or if it is not a
+     *         valid file
+     */
+    public MappedPathManager(File file, PathValueCodec<T> codec)
+        throws IOException {
+        fCodec = codec;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < PathManagerWriter.HEADER_SIZE) {
+                throw new IOException("Bad path manager file: it is too short");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Bad path manager file: it is too big");
+            }
+            fBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+        if (fBuffer.getInt(0) != PathManagerWriter.MAGIC) {
+            throw new IOException("Bad path manager file: wrong magic number");
+        }
+        int version = fBuffer.getInt(4);
+        if (version != PathManagerWriter.VERSION) {
+            throw new IOException("Unsupported path manager file version: "
+                + version);
+        }
+        fDelimiter = fBuffer.getChar(8);
+        fCount = fBuffer.getInt(12);
+        long tableEnd = PathManagerWriter.HEADER_SIZE + (long) fCount
+            * PathManagerWriter.ENTRY_SIZE;
+        if (fCount < 0 || tableEnd > fBuffer.capacity()) {
+            throw new IOException("Bad path manager file: wrong entry count");
+        }
+    }
+
+    /**
+     * This method is not supported.
+     *
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#add(java.lang.String,
+     *      java.lang.Object)
+     */
+    @Override
+    public String add(String prefix, T value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Compares the prefix of the specified entry with the first
+     * <code>len</code> chars of the canonical form of a path region.
+     */
+    private int compare(
+        int entry,
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int len) {
+        int offset = getDataOffset(entry);
+        int prefixLength = fBuffer.getInt(offset);
+        offset += 4;
+        int n = Math.min(prefixLength, len);
+        for (int i = 0; i < n; i++) {
+            char a = fBuffer.getChar(offset + 2 * i);
+            char b = getCanonicalChar(
+                path,
+                contentBegin,
+                length,
+                i,
+                fDelimiter);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return prefixLength - len;
+    }
+
+    /**
+     * Compares the prefix of the specified entry with the given string.
+     */
+    private int compare(int entry, String str) {
+        int offset = getDataOffset(entry);
+        int prefixLength = fBuffer.getInt(offset);
+        offset += 4;
+        int n = Math.min(prefixLength, str.length());
+        for (int i = 0; i < n; i++) {
+            char a = fBuffer.getChar(offset + 2 * i);
+            char b = str.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return prefixLength - str.length();
+    }
+
+    /**
+     * Returns the position of the entry with the canonical form of the path
+     * region.
+     *
+     * @return the position of the entry or
+     *         <code>-(insertion point + 1)</code>
+     */
+    private int find(CharSequence path, int contentBegin, int length) {
+        int a = 0;
+        int b = fCount - 1;
+        while (a <= b) {
+            int x = (a + b) >>> 1;
+            int result = compare(x, path, contentBegin, length, length);
+            if (result < 0) {
+                a = x + 1;
+            } else if (result > 0) {
+                b = x - 1;
+            } else {
+                return x;
+            }
+        }
+        return -(a + 1);
+    }
+
+    private Map.Entry<String, T> findNearest(
+        CharSequence path,
+        int contentBegin,
+        int length) {
+        int pos = find(path, contentBegin, length);
+        if (pos >= 0) {
+            return getEntry(pos);
+        }
+        // The nearest prefix is the greatest entry less than the path or one
+        // of its ancestors
+        pos = -(pos + 1) - 1;
+        while (pos >= 0) {
+            int prefixLength = fBuffer.getInt(getDataOffset(pos));
+            if (prefixLength <= length
+                && compare(
+                    pos,
+                    path,
+                    contentBegin,
+                    length,
+                    prefixLength) == 0) {
+                return getEntry(pos);
+            }
+            pos = fBuffer.getInt(getTableOffset(pos) + 4);
+        }
+        return null;
+    }
+
+    /**
+     * Reads all entries of this manager.
+     *
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getAllEntries()
+     */
+    @Override
+    public Map.Entry<String, T>[] getAllEntries() {
+        Map.Entry<String, T>[] result = newEntryArray(fCount);
+        for (int i = 0; i < fCount; i++) {
+            result[i] = getEntry(i);
+        }
+        return result;
+    }
+
+    private int getDataOffset(int entry) {
+        return fBuffer.getInt(getTableOffset(entry));
+    }
+
+    /**
+     * Reads the specified entry.
+     */
+    private Map.Entry<String, T> getEntry(int entry) {
+        int offset = getDataOffset(entry);
+        int prefixLength = fBuffer.getInt(offset);
+        offset += 4;
+        char[] chars = new char[prefixLength];
+        for (int i = 0; i < prefixLength; i++) {
+            chars[i] = fBuffer.getChar(offset + 2 * i);
+        }
+        offset += 2 * prefixLength;
+        int valueLength = fBuffer.getInt(offset);
+        offset += 4;
+        T value = null;
+        if (valueLength >= 0) {
+            ByteBuffer buf = fBuffer.duplicate();
+            buf.limit(offset + valueLength);
+            buf.position(offset);
+            value = fCodec.decode(buf.slice());
+        }
+        return new ReadOnlySlot<T>(new String(chars), value);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        int pos = find(
+            path,
+            getContentBegin(path, begin, end, fDelimiter),
+            getCanonicalLength(path, begin, end, fDelimiter));
+        return pos >= 0 ? getEntry(pos) : null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(String path) {
+        path = getCanonicalPath(path);
+        int pos = find(path, 1, path.length());
+        return pos >= 0 ? getEntry(pos) : null;
+    }
+
+    /**
+     * Returns the position of the given string in the table of entries or
+     * the position where it should be inserted.
+     */
+    private int getInsertionPoint(String str) {
+        int a = 0;
+        int b = fCount - 1;
+        while (a <= b) {
+            int x = (a + b) >>> 1;
+            int result = compare(x, str);
+            if (result < 0) {
+                a = x + 1;
+            } else if (result > 0) {
+                b = x - 1;
+            } else {
+                return x;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return findNearest(
+            path,
+            getContentBegin(path, begin, end, fDelimiter),
+            getCanonicalLength(path, begin, end, fDelimiter));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(String path) {
+        path = getCanonicalPath(path);
+        return findNearest(path, 1, path.length());
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSegmentDelimiter()
+     */
+    @Override
+    protected Character getSegmentDelimiter() {
+        return fDelimiter;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeEntries(java.lang.String)
+     */
+    @Override
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return new RangeIterator(
+            getInsertionPoint(prefix),
+            getInsertionPoint(getSubtreeLimit(prefix)));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeSize(java.lang.String)
+     */
+    @Override
+    public int getSubtreeSize(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return getInsertionPoint(getSubtreeLimit(prefix))
+            - getInsertionPoint(prefix);
+    }
+
+    private int getTableOffset(int entry) {
+        return PathManagerWriter.HEADER_SIZE
+            + entry
+            * PathManagerWriter.ENTRY_SIZE;
+    }
+
+    /**
+     * This method is not supported.
+     *
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#remove(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> remove(String path) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the number of entries in this manager.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return fCount;
+    }
+
+}
@@ -0,0 +1,52 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.util.List;
+
+import org.ubimix.commons.uri.AbstractPath;
+
+/**
+ * A mutable path used to create {@link org.ubimix.commons.uri.Path} objects
+ * from decoded components without copying them.
+ *
+ * @author kotelnikov
+ */
+class PathComponents extends AbstractPath {
+
+    boolean fAbsolute;
+
+    List<String> fSegments;
+
+    boolean fTrailingSeparator;
+
+    @Override
+    public List<String> getPathSegments() {
+        return fSegments;
+    }
+
+    @Override
+    public boolean hasPathTrailingSeparator() {
+        return fTrailingSeparator;
+    }
+
+    @Override
+    public boolean isAbsolutePath() {
+        return fAbsolute;
+    }
+
+}
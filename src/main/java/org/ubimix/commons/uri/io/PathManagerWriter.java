@@ -0,0 +1,154 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.ubimix.commons.uri.path.AbstractPathManager;
+
+/**
+ * This class writes entries of a path manager in a file which can be opened
+ * with the {@link MappedPathManager}. Values are stored using a
+ * {@link PathValueCodec}.
+ * <p>
+ * File layout:
+ * </p>
+ *
+ * <pre>
+ * header:  magic (int32), version (int32), delimiter (uint16),
+ *          reserved (uint16), entry count (int32)
+ * table:   for each entry sorted by prefixes: the offset of the entry data
+ *          (int32) and the index of the nearest registered ancestor of the
+ *          entry or -1 (int32)
+ * data:    for each entry: prefix length (int32), prefix chars (uint16 each),
+ *          value length or -1 for null values (int32), value bytes
+ * </pre>
+ * <p>
+ * Prefixes are stored as UTF-16 chars, so they are compared with requested
+ * paths directly in the mapped file. The whole file should be smaller than
+ * 2 GB. Entries returned by {@link AbstractPathManager#getAllEntries()}
+ * should be sorted by {@link String#compareTo(String)} of their prefixes:
+ * the {@link MappedPathManager} searches them with a binary search.
+ * </p>
+ *
+ * @author kotelnikov
+ * @see MappedPathManager
+ */
+public class PathManagerWriter {
+
+    static final int ENTRY_SIZE = 4 + 4;
+
+    static final int HEADER_SIZE = 4 + 4 + 2 + 2 + 4;
+
+    static final int MAGIC = 0x5550544d;
+
+    static final int VERSION = 1;
+
+    /**
+     * Writes all entries of the given path manager in the specified file.
+     *
+     * @param file the file to write
+     * @param manager the manager to write
+     * @param codec the codec used to write values
+     * @throws IOException if the file could not be written
+     * @throws IllegalArgumentException if entries of the manager are not
+     *         sorted by their prefixes
+     */
+    public static <T> void write(
+        File file,
+        AbstractPathManager<T> manager,
+        PathValueCodec<T> codec) throws IOException {
+        char delimiter = manager.getDelimiter();
+        Map.Entry<String, T>[] entries = manager.getAllEntries();
+        int count = entries.length;
+        for (int i = 1; i < count; i++) {
+            String prev = entries[i - 1].getKey();
+            String prefix = entries[i].getKey();
+            if (prev.compareTo(prefix) >= 0) {
+                throw new IllegalArgumentException(
+                    "Entries of the path manager are not sorted: '"
+                        + prev
+                        + "' goes before '"
+                        + prefix
+                        + "'");
+            }
+        }
+        byte[][] values = new byte[count][];
+        int[] offsets = new int[count];
+        long offset = HEADER_SIZE + (long) count * ENTRY_SIZE;
+        for (int i = 0; i < count; i++) {
+            T value = entries[i].getValue();
+            values[i] = value != null ? codec.encode(value) : null;
+            offsets[i] = (int) offset;
+            offset += 4 + 2L * entries[i].getKey().length() + 4;
+            offset += values[i] != null ? values[i].length : 0;
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("The path manager is too big");
+            }
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(file),
+            64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeChar(delimiter);
+            out.writeChar(0);
+            out.writeInt(count);
+            // The stack of ancestors of the current entry
+            int[] stack = new int[16];
+            int top = -1;
+            for (int i = 0; i < count; i++) {
+                String prefix = entries[i].getKey();
+                while (top >= 0
+                    && !prefix.startsWith(entries[stack[top]].getKey())) {
+                    top--;
+                }
+                out.writeInt(offsets[i]);
+                out.writeInt(top >= 0 ? stack[top] : -1);
+                if (++top == stack.length) {
+                    int[] newStack = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, newStack, 0, stack.length);
+                    stack = newStack;
+                }
+                stack[top] = i;
+            }
+            for (int i = 0; i < count; i++) {
+                String prefix = entries[i].getKey();
+                out.writeInt(prefix.length());
+                out.writeChars(prefix);
+                if (values[i] != null) {
+                    out.writeInt(values[i].length);
+                    out.write(values[i]);
+                } else {
+                    out.writeInt(-1);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private PathManagerWriter() {
+    }
+
+}
@@ -0,0 +1,65 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values of path managers to bytes and back. It is used to store
+ * values in files written by the {@link PathManagerWriter} and read by the
+ * {@link MappedPathManager}. Codecs are never called for <code>null</code>
+ * values.
+ *
+ * @author kotelnikov
+ * @param <T> the type of values
+ */
+public interface PathValueCodec<T> {
+
+    /**
+     * Stores strings in UTF-8.
+     */
+    PathValueCodec<String> STRING = new PathValueCodec<String>() {
+
+        public String decode(ByteBuffer buf) {
+            return BufferUtil.readUtf8(buf, buf.remaining());
+        }
+
+        public byte[] encode(String value) {
+            byte[] result = new byte[BufferUtil.getUtf8Length(value)];
+            BufferUtil.writeUtf8(ByteBuffer.wrap(result), value);
+            return result;
+        }
+
+    };
+
+    /**
+     * Reads a value.
+     *
+     * @param buf the buffer containing exactly the bytes of the value
+     * @return the decoded value
+     */
+    T decode(ByteBuffer buf);
+
+    /**
+     * Converts the given value to bytes.
+     *
+     * @param value the value to encode
+     * @return the bytes of the value
+     */
+    byte[] encode(T value);
+
+}
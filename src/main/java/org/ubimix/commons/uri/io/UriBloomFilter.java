@@ -0,0 +1,490 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.ubimix.commons.uri.AbstractUri;
+import org.ubimix.commons.uri.UriFingerprint;
+import org.ubimix.commons.uri.UriNormalizer;
+
+/**
+ * A scalable Bloom filter for URIs. It answers whether a URI was probably
+ * added to the filter (with a configurable probability of false positives) or
+ * was definitely not added. URIs are identified by 128-bit fingerprints of
+ * their normalized forms (see
+ * {@link UriNormalizer#getFingerprint128(AbstractUri)}).
+ * <p>
+ * The filter is a sequence of stages. Each stage is a classic Bloom filter
+ * designed for a fixed number of URIs; when the last stage is full a new
+ * stage with twice the capacity and half the false positive rate is added.
+ * So the overall false positive rate stays below the configured one
+ * regardless of the number of added URIs.
+ * </p>
+ * <p>
+ * All operations are lock-free: bits are set with compare-and-set operations
+ * and new stages are published atomically. A filter can be saved in a file
+ * and loaded back (see {@link #save(File)} and {@link #load(File)}). Files
+ * are loaded through memory mapping. They are saved with sequential channel
+ * writes from a small heap buffer instead: writing through read-write
+ * mappings would need many small mappings whose changes reach the disk only
+ * when the mappings are released, so the file could not be forced reliably
+ * before it is closed.
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public class UriBloomFilter {
+
+    /**
+     * One classic Bloom filter.
+     */
+    private static class Stage {
+
+        private final AtomicLongArray fBits;
+
+        private final long fBitCount;
+
+        private final long fCapacity;
+
+        private final AtomicLong fCount;
+
+        private final double fFpp;
+
+        private final int fHashCount;
+
+        public Stage(long capacity, double fpp) {
+            this(capacity, fpp, getWordCount(capacity, fpp), 0);
+        }
+
+        private Stage(long capacity, double fpp, int wordCount, long count) {
+            fCapacity = capacity;
+            fFpp = fpp;
+            fBits = new AtomicLongArray(wordCount);
+            fBitCount = (long) wordCount * 64;
+            fHashCount = Math.max(1, (int) Math.round((double) fBitCount
+                / capacity
+                * Math.log(2)));
+            fCount = new AtomicLong(count);
+        }
+
+        public boolean isFull() {
+            return fCount.get() >= fCapacity;
+        }
+
+        public boolean mightContain(long h1, long h2) {
+            long hash = h1;
+            for (int i = 0; i < fHashCount; i++) {
+                long bit = (hash & Long.MAX_VALUE) % fBitCount;
+                if ((fBits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                hash += h2;
+            }
+            return true;
+        }
+
+        public boolean put(long h1, long h2) {
+            boolean changed = false;
+            long hash = h1;
+            for (int i = 0; i < fHashCount; i++) {
+                long bit = (hash & Long.MAX_VALUE) % fBitCount;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                while (true) {
+                    long value = fBits.get(word);
+                    if ((value & mask) != 0) {
+                        break;
+                    }
+                    if (fBits.compareAndSet(word, value, value | mask)) {
+                        changed = true;
+                        break;
+                    }
+                }
+                hash += h2;
+            }
+            if (changed) {
+                fCount.incrementAndGet();
+            }
+            return changed;
+        }
+
+    }
+
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    /**
+     * The false positive rate of each new stage is multiplied by this value.
+     */
+    private static final double FPP_RATIO = 0.5;
+
+    /**
+     * The capacity of each new stage is multiplied by this value.
+     */
+    private static final int GROWTH = 2;
+
+    /**
+     * Magic, version, false positive rate, expected insertions and the
+     * number of stages.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    private static final int MAGIC = 0x55524942;
+
+    /**
+     * Capacity, false positive rate, count and the number of words of one
+     * stage.
+     */
+    private static final int STAGE_HEADER_SIZE = 8 + 8 + 8 + 4;
+
+    private static final int VERSION = 2;
+
+    /**
+     * The size of the buffer used to write filters.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private static int getWordCount(long capacity, double fpp) {
+        double bits = -capacity * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        long words = (long) Math.ceil(bits / 64);
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The filter is too big");
+        }
+        return (int) Math.max(1, words);
+    }
+
+    /**
+     * Loads a filter saved in the specified file. The loaded filter uses the
+     * default {@link UriNormalizer}.
+     *
+     * @param file the file to read
+     * @return the loaded filter
+     * @throws IOException if the file could not be read
+     */
+    public static UriBloomFilter load(File file) throws IOException {
+        return load(file, new UriNormalizer());
+    }
+
+    /**
+     * Loads a filter saved in the specified file.
+     *
+     * @param file the file to read
+     * @param normalizer the normalizer used to create fingerprints of URIs;
+     *        it should be the same as the one used by the saved filter
+     * @return the loaded filter
+     * @throws IOException if the file could not be read
+     */
+    public static UriBloomFilter load(File file, UriNormalizer normalizer)
+        throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                Math.min(channel.size(), HEADER_SIZE));
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Bad Bloom filter file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported Bloom filter version: "
+                    + version);
+            }
+            double fpp = header.getDouble();
+            long expectedInsertions = header.getLong();
+            int stageCount = header.getInt();
+            if (stageCount <= 0) {
+                throw new IOException("Bad Bloom filter file: no stages");
+            }
+            Stage[] stages = new Stage[stageCount];
+            long pos = HEADER_SIZE;
+            for (int i = 0; i < stageCount; i++) {
+                ByteBuffer buf = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    pos,
+                    STAGE_HEADER_SIZE);
+                long capacity = buf.getLong();
+                double stageFpp = buf.getDouble();
+                long count = buf.getLong();
+                int wordCount = buf.getInt();
+                pos += buf.capacity();
+                Stage stage = new Stage(capacity, stageFpp, wordCount, count);
+                int word = 0;
+                while (word < wordCount) {
+                    int len = (int) Math.min(wordCount - word, CHUNK_SIZE / 8);
+                    buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len * 8L);
+                    for (int j = 0; j < len; j++) {
+                        stage.fBits.set(word++, buf.getLong());
+                    }
+                    pos += len * 8L;
+                }
+                stages[i] = stage;
+            }
+            return new UriBloomFilter(
+                expectedInsertions,
+                fpp,
+                normalizer,
+                stages);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private final long fExpectedInsertions;
+
+    private final double fFpp;
+
+    private final UriNormalizer fNormalizer;
+
+    private final AtomicReference<Stage[]> fStages;
+
+    /**
+     * Creates a new filter using the default {@link UriNormalizer}.
+     *
+     * @param expectedInsertions the expected number of URIs; the filter grows
+     *        when more URIs are added
+     * @param fpp the desired false positive probability (between 0 and 1)
+     */
+    public UriBloomFilter(long expectedInsertions, double fpp) {
+        this(expectedInsertions, fpp, new UriNormalizer());
+    }
+
+    /**
+     * @param expectedInsertions the expected number of URIs; the filter grows
+     *        when more URIs are added
+     * @param fpp the desired false positive probability (between 0 and 1)
+     * @param normalizer the normalizer used to create fingerprints of URIs;
+     *        if it is <code>null</code> then URIs are used as they are
+     */
+    public UriBloomFilter(
+        long expectedInsertions,
+        double fpp,
+        UriNormalizer normalizer) {
+        this(expectedInsertions, fpp, normalizer, new Stage[] { new Stage(
+            Math.max(1, expectedInsertions),
+            fpp * (1 - FPP_RATIO)) });
+    }
+
+    private UriBloomFilter(
+        long expectedInsertions,
+        double fpp,
+        UriNormalizer normalizer,
+        Stage[] stages) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException(
+                "The false positive probability should be between 0 and 1");
+        }
+        fExpectedInsertions = expectedInsertions;
+        fFpp = fpp;
+        fNormalizer = normalizer;
+        fStages = new AtomicReference<Stage[]>(stages);
+    }
+
+    /**
+     * Returns the approximate number of URIs added to this filter.
+     *
+     * @return the approximate number of URIs in this filter
+     */
+    public long getApproximateCount() {
+        long result = 0;
+        for (Stage stage : fStages.get()) {
+            result += stage.fCount.get();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of insertions expected when this filter was created.
+     *
+     * @return the expected number of insertions
+     */
+    public long getExpectedInsertions() {
+        return fExpectedInsertions;
+    }
+
+    /**
+     * Returns the false positive probability defined for this filter.
+     *
+     * @return the false positive probability of this filter
+     */
+    public double getFpp() {
+        return fFpp;
+    }
+
+    private long[] getFingerprint(AbstractUri uri) {
+        return fNormalizer != null
+            ? fNormalizer.getFingerprint128(uri)
+            : UriFingerprint.getFingerprint128(uri);
+    }
+
+    /**
+     * Returns the number of bytes used by bits of this filter.
+     *
+     * @return the size of this filter in bytes
+     */
+    public long getMemoryUsage() {
+        long result = 0;
+        for (Stage stage : fStages.get()) {
+            result += stage.fBitCount / 8;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of stages in this filter. A new stage is added each
+     * time the previous one is full.
+     *
+     * @return the number of stages in this filter
+     */
+    public int getStageCount() {
+        return fStages.get().length;
+    }
+
+    /**
+     * Returns <code>true</code> if the given URI might have been added to
+     * this filter and <code>false</code> if it definitely was not added.
+     *
+     * @param uri the URI to check
+     * @return <code>true</code> if the URI might be in this filter
+     */
+    public boolean mightContain(AbstractUri uri) {
+        long[] fingerprint = getFingerprint(uri);
+        return mightContain(fingerprint[0], fingerprint[1]);
+    }
+
+    /**
+     * Returns <code>true</code> if the given fingerprint might have been added
+     * to this filter.
+     *
+     * @param h1 the first 64 bits of the fingerprint
+     * @param h2 the last 64 bits of the fingerprint
+     * @return <code>true</code> if the fingerprint might be in this filter
+     */
+    public boolean mightContain(long h1, long h2) {
+        Stage[] stages = fStages.get();
+        for (int i = stages.length - 1; i >= 0; i--) {
+            if (stages[i].mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the given URI to this filter.
+     *
+     * @param uri the URI to add
+     * @return <code>true</code> if the URI was definitely not in the filter
+     *         before this call
+     */
+    public boolean put(AbstractUri uri) {
+        long[] fingerprint = getFingerprint(uri);
+        return put(fingerprint[0], fingerprint[1]);
+    }
+
+    /**
+     * Adds the given fingerprint to this filter.
+     *
+     * @param h1 the first 64 bits of the fingerprint
+     * @param h2 the last 64 bits of the fingerprint
+     * @return <code>true</code> if the fingerprint was definitely not in the
+     *         filter before this call
+     */
+    public boolean put(long h1, long h2) {
+        Stage[] stages = fStages.get();
+        // Previous stages are checked to avoid adding the same URI twice
+        for (int i = 0; i < stages.length - 1; i++) {
+            if (stages[i].mightContain(h1, h2)) {
+                return false;
+            }
+        }
+        Stage last = stages[stages.length - 1];
+        if (last.isFull()) {
+            Stage[] newStages = new Stage[stages.length + 1];
+            System.arraycopy(stages, 0, newStages, 0, stages.length);
+            newStages[stages.length] = new Stage(last.fCapacity * GROWTH, last.fFpp
+                * FPP_RATIO);
+            // If another thread already added a stage then it is used
+            fStages.compareAndSet(stages, newStages);
+            return put(h1, h2);
+        }
+        return last.put(h1, h2);
+    }
+
+    /**
+     * Writes this filter in the specified file. Concurrent insertions during
+     * this call could be partially saved.
+     *
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        Stage[] stages = fStages.get();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            buf.putDouble(fFpp);
+            buf.putLong(fExpectedInsertions);
+            buf.putInt(stages.length);
+            for (Stage stage : stages) {
+                int wordCount = stage.fBits.length();
+                if (buf.remaining() < STAGE_HEADER_SIZE) {
+                    write(channel, buf);
+                }
+                buf.putLong(stage.fCapacity);
+                buf.putDouble(stage.fFpp);
+                buf.putLong(stage.fCount.get());
+                buf.putInt(wordCount);
+                for (int word = 0; word < wordCount; word++) {
+                    if (buf.remaining() < 8) {
+                        write(channel, buf);
+                    }
+                    buf.putLong(stage.fBits.get(word));
+                }
+            }
+            write(channel, buf);
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the content of the given buffer in the channel and clears the
+     * buffer.
+     */
+    private void write(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+}
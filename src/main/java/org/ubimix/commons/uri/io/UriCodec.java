@@ -0,0 +1,484 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ubimix.commons.uri.AbstractPath;
+import org.ubimix.commons.uri.AbstractUri;
+import org.ubimix.commons.uri.AbstractUri.QueryItem;
+import org.ubimix.commons.uri.Path;
+import org.ubimix.commons.uri.Uri;
+import org.ubimix.commons.uri.UriComponents;
+
+/**
+ * This codec writes URIs and paths in a compact binary form and reads them
+ * back without the text parser.
+ * <p>
+ * Each URI starts with a byte of flags defining which components are present.
+ * The following components are written in this order: scheme segments, user
+ * info, host, port, path segments, query items and fragment. Numbers are
+ * written as varints (seven bits per byte) and strings as a varint length
+ * followed by UTF-8 bytes. Components are stored as they are kept by URI
+ * objects, so nothing is encoded or decoded with the '%' escaping.
+ * </p>
+ * <p>
+ * Scheme segments and hosts can be replaced by references to a
+ * {@link Dictionary} shared by the writer and the reader. Each of these
+ * strings starts with a varint; if its lowest bit is set then the remaining
+ * bits contain the index of the string in the dictionary, otherwise they
+ * contain the length of the string.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and thread-safe.
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public class UriCodec {
+
+    /**
+     * An immutable list of frequent scheme segments and host names. The same
+     * dictionary should be used to write and to read URIs.
+     */
+    public static class Dictionary {
+
+        private final Map<String, Integer> fIndex = new HashMap<String, Integer>();
+
+        private final String[] fValues;
+
+        public Dictionary(Collection<String> values) {
+            fValues = values.toArray(new String[values.size()]);
+            for (int i = 0; i < fValues.length; i++) {
+                if (!fIndex.containsKey(fValues[i])) {
+                    fIndex.put(fValues[i], i);
+                }
+            }
+        }
+
+        public Dictionary(String... values) {
+            this(Arrays.asList(values));
+        }
+
+        /**
+         * Returns the position of the given value in this dictionary or
+         * <code>-1</code> if there is no such a value.
+         *
+         * @param value the value to check
+         * @return the position of the value
+         */
+        public int getIndex(String value) {
+            Integer index = fIndex.get(value);
+            return index != null ? index.intValue() : -1;
+        }
+
+        /**
+         * Returns the value with the specified index.
+         *
+         * @param index the position of the value
+         * @return the value with the specified index
+         */
+        public String getValue(int index) {
+            if (index < 0 || index >= fValues.length) {
+                throw new IllegalArgumentException("Unknown dictionary entry "
+                    + index
+                    + ". The data was written with another dictionary.");
+            }
+            return fValues[index];
+        }
+
+        /**
+         * Returns all values of this dictionary.
+         *
+         * @return an unmodifiable list of values of this dictionary
+         */
+        public List<String> getValues() {
+            return Collections.unmodifiableList(Arrays.asList(fValues));
+        }
+
+        public int size() {
+            return fValues.length;
+        }
+
+    }
+
+    /**
+     * The default dictionary containing the most common URI schemes.
+     */
+    public static final Dictionary DEFAULT_DICTIONARY = new Dictionary(
+        "http",
+        "https",
+        "ftp",
+        "file",
+        "mailto",
+        "urn",
+        "ws",
+        "wss",
+        "data",
+        "tel");
+
+    private static final int FLAG_ABSOLUTE = 1 << 4;
+
+    private static final int FLAG_FRAGMENT = 1 << 7;
+
+    private static final int FLAG_HOST = 1 << 2;
+
+    private static final int FLAG_PORT = 1 << 3;
+
+    private static final int FLAG_QUERY = 1 << 6;
+
+    private static final int FLAG_SCHEME = 1 << 0;
+
+    private static final int FLAG_TRAILING_SEPARATOR = 1 << 5;
+
+    private static final int FLAG_USER_INFO = 1 << 1;
+
+    private static int getFlags(AbstractPath path) {
+        int flags = 0;
+        if (path.isAbsolutePath()) {
+            flags |= FLAG_ABSOLUTE;
+        }
+        if (path.hasPathTrailingSeparator()) {
+            flags |= FLAG_TRAILING_SEPARATOR;
+        }
+        return flags;
+    }
+
+    private static int getFlags(AbstractUri uri) {
+        int flags = getFlags(uri.getPath());
+        List<String> scheme = uri.getSchemeSegments();
+        if (scheme != null && !scheme.isEmpty()) {
+            flags |= FLAG_SCHEME;
+        }
+        if (uri.getUserInfo() != null) {
+            flags |= FLAG_USER_INFO;
+        }
+        if (uri.getHost() != null) {
+            flags |= FLAG_HOST;
+        }
+        if (uri.getPort() != 0) {
+            flags |= FLAG_PORT;
+        }
+        List<QueryItem> items = uri.getQueryItems();
+        if (items != null && !items.isEmpty()) {
+            flags |= FLAG_QUERY;
+        }
+        if (uri.getFragment() != null) {
+            flags |= FLAG_FRAGMENT;
+        }
+        return flags;
+    }
+
+    private static int getLength(String str) {
+        int len = BufferUtil.getUtf8Length(str);
+        return BufferUtil.getVarintLength(len) + len;
+    }
+
+    private static int getNullableLength(String str) {
+        if (str == null) {
+            return 1;
+        }
+        int len = BufferUtil.getUtf8Length(str);
+        return BufferUtil.getVarintLength(len + 1) + len;
+    }
+
+    private static int getSegmentsLength(List<String> segments) {
+        int result = BufferUtil.getVarintLength(segments.size());
+        for (String segment : segments) {
+            result += getLength(segment);
+        }
+        return result;
+    }
+
+    private static String readNullableString(ByteBuffer buf) {
+        int len = BufferUtil.readVarint(buf);
+        return len > 0 ? BufferUtil.readUtf8(buf, len - 1) : null;
+    }
+
+    private static List<String> readSegments(ByteBuffer buf) {
+        int count = BufferUtil.readVarint(buf);
+        List<String> segments = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(readString(buf));
+        }
+        return segments;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = BufferUtil.readVarint(buf);
+        return BufferUtil.readUtf8(buf, len);
+    }
+
+    private static void writeNullableString(ByteBuffer buf, String str) {
+        if (str == null) {
+            buf.put((byte) 0);
+        } else {
+            BufferUtil.writeVarint(buf, BufferUtil.getUtf8Length(str) + 1);
+            BufferUtil.writeUtf8(buf, str);
+        }
+    }
+
+    private static void writeSegments(ByteBuffer buf, List<String> segments) {
+        BufferUtil.writeVarint(buf, segments.size());
+        for (String segment : segments) {
+            writeString(buf, segment);
+        }
+    }
+
+    private static void writeString(ByteBuffer buf, String str) {
+        BufferUtil.writeVarint(buf, BufferUtil.getUtf8Length(str));
+        BufferUtil.writeUtf8(buf, str);
+    }
+
+    private final Dictionary fDictionary;
+
+    /**
+     * Creates a new codec using the {@link #DEFAULT_DICTIONARY}.
+     */
+    public UriCodec() {
+        this(DEFAULT_DICTIONARY);
+    }
+
+    /**
+     * @param dictionary the dictionary of frequent schemes and hosts; it could
+     *        be <code>null</code>
+     */
+    public UriCodec(Dictionary dictionary) {
+        fDictionary = dictionary != null ? dictionary : new Dictionary();
+    }
+
+    /**
+     * Reads a URI from the given array.
+     *
+     * @param array the array to read
+     * @return the decoded URI
+     */
+    public Uri decode(byte[] array) {
+        return decode(ByteBuffer.wrap(array));
+    }
+
+    /**
+     * Reads a URI from the current position of the given buffer. After this
+     * call the buffer is positioned just after the URI.
+     *
+     * @param buf the buffer to read
+     * @return the decoded URI
+     */
+    public Uri decode(ByteBuffer buf) {
+        int flags = buf.get() & 0xFF;
+        UriComponents uri = new UriComponents();
+        if ((flags & FLAG_SCHEME) != 0) {
+            int count = BufferUtil.readVarint(buf);
+            List<String> segments = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                segments.add(readDictionaryString(buf));
+            }
+            uri.fSchemeSegments = segments;
+        }
+        if ((flags & FLAG_USER_INFO) != 0) {
+            uri.fUserInfo = readString(buf);
+        }
+        if ((flags & FLAG_HOST) != 0) {
+            uri.fHost = readDictionaryString(buf);
+        }
+        if ((flags & FLAG_PORT) != 0) {
+            uri.fPort = BufferUtil.readVarint(buf);
+        }
+        uri.fPath = readPath(buf, flags);
+        if ((flags & FLAG_QUERY) != 0) {
+            int count = BufferUtil.readVarint(buf);
+            List<QueryItem> items = new ArrayList<QueryItem>(count);
+            for (int i = 0; i < count; i++) {
+                String name = readString(buf);
+                String value = readNullableString(buf);
+                items.add(new QueryItem(name, value, false));
+            }
+            uri.fQueryItems = items;
+        }
+        if ((flags & FLAG_FRAGMENT) != 0) {
+            uri.fFragment = readString(buf);
+        }
+        return new Uri(uri);
+    }
+
+    /**
+     * Reads a path from the current position of the given buffer.
+     *
+     * @param buf the buffer to read
+     * @return the decoded path
+     */
+    public Path decodePath(ByteBuffer buf) {
+        int flags = buf.get() & 0xFF;
+        return readPath(buf, flags);
+    }
+
+    /**
+     * Writes the given URI in a new byte array.
+     *
+     * @param uri the URI to write
+     * @return an array containing the encoded URI
+     */
+    public byte[] encode(AbstractUri uri) {
+        byte[] array = new byte[getEncodedLength(uri)];
+        encode(uri, ByteBuffer.wrap(array));
+        return array;
+    }
+
+    /**
+     * Writes the given URI at the current position of the buffer.
+     *
+     * @param uri the URI to write
+     * @param buf the buffer where the URI should be written
+     * @throws java.nio.BufferOverflowException if there is not enough space
+     *         in the buffer
+     */
+    public void encode(AbstractUri uri, ByteBuffer buf) {
+        int flags = getFlags(uri);
+        buf.put((byte) flags);
+        if ((flags & FLAG_SCHEME) != 0) {
+            List<String> segments = uri.getSchemeSegments();
+            BufferUtil.writeVarint(buf, segments.size());
+            for (String segment : segments) {
+                writeDictionaryString(buf, segment);
+            }
+        }
+        if ((flags & FLAG_USER_INFO) != 0) {
+            writeString(buf, uri.getUserInfo());
+        }
+        if ((flags & FLAG_HOST) != 0) {
+            writeDictionaryString(buf, uri.getHost());
+        }
+        if ((flags & FLAG_PORT) != 0) {
+            BufferUtil.writeVarint(buf, uri.getPort());
+        }
+        writeSegments(buf, uri.getPath().getPathSegments());
+        if ((flags & FLAG_QUERY) != 0) {
+            List<QueryItem> items = uri.getQueryItems();
+            BufferUtil.writeVarint(buf, items.size());
+            for (QueryItem item : items) {
+                writeString(buf, item.getName(false, false));
+                writeNullableString(buf, item.getValue(false, false));
+            }
+        }
+        if ((flags & FLAG_FRAGMENT) != 0) {
+            writeString(buf, uri.getFragment());
+        }
+    }
+
+    /**
+     * Writes the given path at the current position of the buffer.
+     *
+     * @param path the path to write
+     * @param buf the buffer where the path should be written
+     */
+    public void encodePath(AbstractPath path, ByteBuffer buf) {
+        buf.put((byte) getFlags(path));
+        writeSegments(buf, path.getPathSegments());
+    }
+
+    /**
+     * Returns the dictionary used by this codec.
+     *
+     * @return the dictionary of frequent schemes and hosts
+     */
+    public Dictionary getDictionary() {
+        return fDictionary;
+    }
+
+    private int getDictionaryLength(String str) {
+        int index = fDictionary.getIndex(str);
+        if (index >= 0) {
+            return BufferUtil.getVarintLength((index << 1) | 1);
+        }
+        int len = BufferUtil.getUtf8Length(str);
+        return BufferUtil.getVarintLength(len << 1) + len;
+    }
+
+    /**
+     * Returns the number of bytes required to write the given URI.
+     *
+     * @param uri the URI to check
+     * @return the size of the binary representation of the URI
+     */
+    public int getEncodedLength(AbstractUri uri) {
+        int flags = getFlags(uri);
+        int result = 1;
+        if ((flags & FLAG_SCHEME) != 0) {
+            List<String> segments = uri.getSchemeSegments();
+            result += BufferUtil.getVarintLength(segments.size());
+            for (String segment : segments) {
+                result += getDictionaryLength(segment);
+            }
+        }
+        if ((flags & FLAG_USER_INFO) != 0) {
+            result += getLength(uri.getUserInfo());
+        }
+        if ((flags & FLAG_HOST) != 0) {
+            result += getDictionaryLength(uri.getHost());
+        }
+        if ((flags & FLAG_PORT) != 0) {
+            result += BufferUtil.getVarintLength(uri.getPort());
+        }
+        result += getSegmentsLength(uri.getPath().getPathSegments());
+        if ((flags & FLAG_QUERY) != 0) {
+            List<QueryItem> items = uri.getQueryItems();
+            result += BufferUtil.getVarintLength(items.size());
+            for (QueryItem item : items) {
+                result += getLength(item.getName(false, false));
+                result += getNullableLength(item.getValue(false, false));
+            }
+        }
+        if ((flags & FLAG_FRAGMENT) != 0) {
+            result += getLength(uri.getFragment());
+        }
+        return result;
+    }
+
+    private String readDictionaryString(ByteBuffer buf) {
+        int code = BufferUtil.readVarint(buf);
+        if ((code & 1) != 0) {
+            return fDictionary.getValue(code >>> 1);
+        }
+        return BufferUtil.readUtf8(buf, code >>> 1);
+    }
+
+    private Path readPath(ByteBuffer buf, int flags) {
+        PathComponents path = new PathComponents();
+        path.fAbsolute = (flags & FLAG_ABSOLUTE) != 0;
+        path.fTrailingSeparator = (flags & FLAG_TRAILING_SEPARATOR) != 0;
+        path.fSegments = readSegments(buf);
+        return new Path(path);
+    }
+
+    private void writeDictionaryString(ByteBuffer buf, String str) {
+        int index = fDictionary.getIndex(str);
+        if (index >= 0) {
+            BufferUtil.writeVarint(buf, (index << 1) | 1);
+        } else {
+            BufferUtil.writeVarint(buf, BufferUtil.getUtf8Length(str) << 1);
+            BufferUtil.writeUtf8(buf, str);
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.ubimix.commons.uri.AbstractUri;
+import org.ubimix.commons.uri.Uri;
+
+/**
+ * An immutable sorted set of URIs stored in a file written by an
+ * {@link UriIndexWriter}. The file is mapped in memory and nothing is loaded
+ * or deserialized when the index is opened: the index of blocks is searched
+ * with a binary search, then the found block is searched using its restart
+ * points.
+ * <p>
+ * All URIs on the same host or in the same directory are stored together, so
+ * they can be iterated without scanning the whole index (see
+ * {@link #getHostUris(String, boolean)} and {@link #getPathUris(AbstractUri)}
+ * ). URIs are compared exactly as they are stored, so if the index was built
+ * from normalized URIs then URIs used in requests should be normalized in the
+ * same way.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and thread-safe. The file is
+ * unmapped when this object is garbage-collected.
+ * </p>
+ *
+ * @author kotelnikov
+ * @see UriIndexWriter
+ */
+public class UriIndex implements Iterable<Uri> {
+
+    /**
+     * Iterates over URIs with keys starting with the specified prefix.
+     */
+    private class UriIterator implements Iterator<Uri> {
+
+        private BlockReader.Cursor fBlockCursor;
+
+        private boolean fHasNext;
+
+        private final BlockReader.Cursor fIndexCursor;
+
+        private final byte[] fPrefix;
+
+        public UriIterator(byte[] prefix) {
+            fPrefix = prefix;
+            fIndexCursor = fIndex.newCursor();
+            if (fIndexCursor.seek(prefix)) {
+                fBlockCursor = getBlock(fIndexCursor).newCursor();
+                fHasNext = fBlockCursor.seek(prefix) || nextBlock();
+                fHasNext = fHasNext && isInRange();
+            }
+        }
+
+        public boolean hasNext() {
+            return fHasNext;
+        }
+
+        private boolean isInRange() {
+            if (fBlockCursor.getKeyLength() < fPrefix.length) {
+                return false;
+            }
+            byte[] key = fBlockCursor.getKeyArray();
+            for (int i = 0; i < fPrefix.length; i++) {
+                if (key[i] != fPrefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public Uri next() {
+            if (!fHasNext) {
+                throw new NoSuchElementException();
+            }
+            Uri result = UriKeyEncoder.decode(
+                fBlockCursor.getKeyArray(),
+                0,
+                fBlockCursor.getKeyLength());
+            fHasNext = (fBlockCursor.next() || nextBlock()) && isInRange();
+            return result;
+        }
+
+        private boolean nextBlock() {
+            while (fIndexCursor.next()) {
+                fBlockCursor = getBlock(fIndexCursor).newCursor();
+                if (fBlockCursor.next()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private final long fCount;
+
+    private final BlockReader fIndex;
+
+    private final ByteBuffer[] fRegions;
+
+    /**
+     * Opens the specified index file.
+     *
+     * @param file the index file
+     * @throws IOException if the file could not be read or if it is not a
+     *         valid index file
+     */
+    public UriIndex(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < UriIndexWriter.HEADER_SIZE + UriIndexWriter.FOOTER_SIZE) {
+                throw new IOException("Bad index file: it is too short");
+            }
+            long regionSize = UriIndexWriter.REGION_SIZE;
+            int count = (int) ((size + regionSize - 1) / regionSize);
+            fRegions = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = i * regionSize;
+                long len = Math.min(regionSize, size - start);
+                fRegions[i] = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    start,
+                    len);
+            }
+        } finally {
+            raf.close();
+        }
+        ByteBuffer header = getBuffer(0, UriIndexWriter.HEADER_SIZE);
+        ByteBuffer footer = getBuffer(
+            file.length() - UriIndexWriter.FOOTER_SIZE,
+            UriIndexWriter.FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        int indexLength = footer.getInt();
+        fCount = footer.getLong();
+        int version = footer.getInt();
+        if (header.getInt() != UriIndexWriter.MAGIC
+            || footer.getInt() != UriIndexWriter.MAGIC) {
+            throw new IOException("Bad index file: wrong magic number");
+        }
+        if (header.getInt() != UriIndexWriter.VERSION
+            || version != UriIndexWriter.VERSION) {
+            throw new IOException("Unsupported index file version: " + version);
+        }
+        try {
+            fIndex = new BlockReader(getBuffer(indexOffset, indexLength));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad index file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given URI is in this index.
+     *
+     * @param uri the URI to check
+     * @return <code>true</code> if the URI is in this index
+     */
+    public boolean contains(AbstractUri uri) {
+        return containsKey(UriKeyEncoder.getKey(uri));
+    }
+
+    /**
+     * Returns <code>true</code> if this index contains a URI with the given
+     * key.
+     *
+     * @param key the key of the URI
+     * @return <code>true</code> if this index contains the key
+     */
+    public boolean containsKey(byte[] key) {
+        BlockReader.Cursor indexCursor = fIndex.newCursor();
+        if (!indexCursor.seek(key)) {
+            return false;
+        }
+        BlockReader.Cursor cursor = getBlock(indexCursor).newCursor();
+        return cursor.seek(key) && cursor.compareKey(key) == 0;
+    }
+
+    private BlockReader getBlock(BlockReader.Cursor indexCursor) {
+        ByteBuffer value = indexCursor.getValue();
+        long offset = value.getLong();
+        int length = value.getInt();
+        return new BlockReader(getBuffer(offset, length));
+    }
+
+    /**
+     * Returns a buffer containing the specified part of the file. The
+     * requested part should not cross boundaries of regions.
+     */
+    private ByteBuffer getBuffer(long offset, int length) {
+        int region = (int) (offset / UriIndexWriter.REGION_SIZE);
+        int pos = (int) (offset % UriIndexWriter.REGION_SIZE);
+        if (region >= fRegions.length
+            || pos + length > fRegions[region].capacity()) {
+            throw new IllegalArgumentException("Bad index file: block "
+                + offset
+                + " is out of the file");
+        }
+        ByteBuffer buf = fRegions[region].duplicate();
+        buf.limit(pos + length);
+        buf.position(pos);
+        return buf.slice();
+    }
+
+    /**
+     * Returns the number of URIs in this index.
+     *
+     * @return the number of URIs in this index
+     */
+    public long getCount() {
+        return fCount;
+    }
+
+    /**
+     * Returns all URIs on the specified host.
+     *
+     * @param host the host
+     * @param includeSubdomains if this flag is <code>true</code> then URIs on
+     *        sub-domains of the host are returned as well
+     * @return an iterator over URIs on the specified host
+     * @see UriKeyEncoder#getHostPrefix(String, boolean)
+     */
+    public Iterator<Uri> getHostUris(String host, boolean includeSubdomains) {
+        return getUris(UriKeyEncoder.getHostPrefix(host, includeSubdomains));
+    }
+
+    /**
+     * Returns all URIs on the same host and port having all path segments of
+     * the given URI.
+     *
+     * @param uri the URI defining the directory
+     * @return an iterator over URIs in the directory
+     * @see UriKeyEncoder#getPathPrefix(AbstractUri)
+     */
+    public Iterator<Uri> getPathUris(AbstractUri uri) {
+        return getUris(UriKeyEncoder.getPathPrefix(uri));
+    }
+
+    /**
+     * Returns all URIs with keys starting with the given prefix.
+     *
+     * @param prefix the prefix of keys
+     * @return an iterator over URIs with keys starting with the prefix
+     */
+    public Iterator<Uri> getUris(byte[] prefix) {
+        return new UriIterator(prefix);
+    }
+
+    /**
+     * Returns an iterator over all URIs of this index in the order of their
+     * keys.
+     *
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Uri> iterator() {
+        return getUris(new byte[0]);
+    }
+
+}
@@ -0,0 +1,264 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import org.ubimix.commons.uri.AbstractUri;
+
+/**
+ * This class writes sorted URIs in an index file which can be used with the
+ * {@link UriIndex} class. URIs are stored as their keys (see
+ * {@link UriKeyEncoder}) in front-coded blocks (see {@link BlockWriter}) and
+ * have to be added in the order of their keys.
+ * <p>
+ * File layout:
+ * </p>
+ *
+ * <pre>
+ * header:  magic (int32), version (int32)
+ * blocks:  data blocks with keys of URIs
+ * index:   a block mapping the last key of each data block to the offset
+ *          (int64) and the length (int32) of the data block
+ * footer:  index offset (int64), index length (int32), URI count (int64),
+ *          version (int32), magic (int32)
+ * </pre>
+ * <p>
+ * Blocks never cross boundaries of {@link #REGION_SIZE} regions of the file,
+ * so each region can be mapped in memory separately.
+ * </p>
+ *
+ * @author kotelnikov
+ * @see UriIndex
+ */
+public class UriIndexWriter {
+
+    /**
+     * The default size of data blocks in bytes.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024;
+
+    static final int FOOTER_SIZE = 8 + 4 + 8 + 4 + 4;
+
+    static final int HEADER_SIZE = 4 + 4;
+
+    static final int MAGIC = 0x55524958;
+
+    /**
+     * The size of independently mapped regions of index files.
+     */
+    public static final long REGION_SIZE = 1L << 30;
+
+    static final int VERSION = 1;
+
+    private static final Comparator<byte[]> KEY_COMPARATOR = new Comparator<byte[]>() {
+        public int compare(byte[] o1, byte[] o2) {
+            return UriKeyEncoder.compare(o1, o2);
+        }
+    };
+
+    /**
+     * Writes the given URIs in the specified index file. URIs could be given
+     * in any order; duplicates are ignored.
+     *
+     * @param file the file to write
+     * @param uris the URIs to write
+     * @throws IOException if the file could not be written
+     */
+    public static void write(File file, Collection<? extends AbstractUri> uris)
+        throws IOException {
+        byte[][] keys = new byte[uris.size()][];
+        int i = 0;
+        for (AbstractUri uri : uris) {
+            keys[i++] = UriKeyEncoder.getKey(uri);
+        }
+        Arrays.sort(keys, KEY_COMPARATOR);
+        UriIndexWriter writer = new UriIndexWriter(file);
+        try {
+            for (byte[] key : keys) {
+                writer.addKey(key);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private final BlockWriter fBlock;
+
+    private final int fBlockSize;
+
+    private long fCount;
+
+    private final BlockWriter fIndex = new BlockWriter();
+
+    private byte[] fLastKey;
+
+    private final OutputStream fOut;
+
+    private long fPosition;
+
+    /**
+     * Creates a new writer with the default block size.
+     *
+     * @param file the file to write
+     * @throws IOException if the file could not be created
+     */
+    public UriIndexWriter(File file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE, BlockWriter.DEFAULT_RESTART_INTERVAL);
+    }
+
+    /**
+     * @param file the file to write
+     * @param blockSize the size of data blocks in bytes
+     * @param restartInterval the number of keys between restart points in
+     *        data blocks
+     * @throws IOException if the file could not be created
+     */
+    public UriIndexWriter(File file, int blockSize, int restartInterval)
+        throws IOException {
+        fBlockSize = blockSize;
+        fBlock = new BlockWriter(restartInterval);
+        fOut = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        write(header.array());
+    }
+
+    /**
+     * Adds a new URI to the index. URIs have to be added in the order of their
+     * keys. A URI equal to the previous one is ignored.
+     *
+     * @param uri the URI to add
+     * @throws IOException if the data could not be written
+     * @throws IllegalArgumentException if the key of the given URI is less
+     *         than the key of the previous one
+     */
+    public void add(AbstractUri uri) throws IOException {
+        addKey(UriKeyEncoder.getKey(uri));
+    }
+
+    /**
+     * Adds a new URI key to the index.
+     *
+     * @param key the key of the URI (see {@link UriKeyEncoder#getKey(AbstractUri)})
+     * @throws IOException if the data could not be written
+     * @throws IllegalArgumentException if the given key is less than the
+     *         previous one
+     */
+    public void addKey(byte[] key) throws IOException {
+        if (fLastKey != null) {
+            int cmp = UriKeyEncoder.compare(fLastKey, key);
+            if (cmp == 0) {
+                return;
+            }
+            if (cmp > 0) {
+                throw new IllegalArgumentException(
+                    "URIs should be added in the order of their keys");
+            }
+        }
+        fBlock.add(key);
+        fLastKey = key;
+        fCount++;
+        if (fBlock.getSize() >= fBlockSize) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Writes the index of blocks and closes the file.
+     *
+     * @throws IOException if the data could not be written
+     */
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            byte[] index = fIndex.finish();
+            long indexOffset = writeBlock(index);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putLong(indexOffset);
+            footer.putInt(index.length);
+            footer.putLong(fCount);
+            footer.putInt(VERSION);
+            footer.putInt(MAGIC);
+            writeBlock(footer.array());
+        } finally {
+            fOut.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (fBlock.getEntryCount() == 0) {
+            return;
+        }
+        byte[] block = fBlock.finish();
+        long offset = writeBlock(block);
+        ByteBuffer value = ByteBuffer.allocate(8 + 4);
+        value.putLong(offset);
+        value.putInt(block.length);
+        fIndex.add(fLastKey, value.array());
+    }
+
+    /**
+     * Returns the number of URIs added to the index.
+     *
+     * @return the number of URIs in the index
+     */
+    public long getCount() {
+        return fCount;
+    }
+
+    private void write(byte[] data) throws IOException {
+        fOut.write(data);
+        fPosition += data.length;
+    }
+
+    /**
+     * Writes the given block. If the block crosses the boundary of a region
+     * then it is moved to the beginning of the next region.
+     *
+     * @return the position of the block in the file
+     */
+    private long writeBlock(byte[] block) throws IOException {
+        if (block.length > REGION_SIZE) {
+            throw new IOException("The block is too big: " + block.length);
+        }
+        long region = fPosition / REGION_SIZE;
+        if (region != (fPosition + block.length - 1) / REGION_SIZE) {
+            long padding = (region + 1) * REGION_SIZE - fPosition;
+            byte[] zeros = new byte[8 * 1024];
+            while (padding > 0) {
+                int len = (int) Math.min(padding, zeros.length);
+                fOut.write(zeros, 0, len);
+                padding -= len;
+            }
+            fPosition = (region + 1) * REGION_SIZE;
+        }
+        long offset = fPosition;
+        write(block);
+        return offset;
+    }
+
+}
@@ -0,0 +1,356 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ubimix.commons.uri.AbstractPath;
+import org.ubimix.commons.uri.AbstractUri;
+import org.ubimix.commons.uri.AbstractUri.QueryItem;
+import org.ubimix.commons.uri.Path;
+import org.ubimix.commons.uri.Uri;
+import org.ubimix.commons.uri.UriComponents;
+import org.ubimix.commons.uri.UriKeyBuilder;
+
+/**
+ * This class transforms URIs and paths into binary keys. Keys compared
+ * byte-by-byte (as unsigned values, see {@link #compare(byte[], byte[])})
+ * have the same order as the corresponding URIs:
+ * <ol>
+ * <li>host labels in the reversed order ("www.foo.bar" is compared as
+ * "bar", "foo", "www"); IP addresses are not reversed; URIs without hosts go
+ * first;</li>
+ * <li>port;</li>
+ * <li>path, in the order defined by {@link AbstractPath#compareTo(AbstractPath)};
+ * </li>
+ * <li>query items (names and values) in their order in the query;</li>
+ * <li>fragment;</li>
+ * <li>scheme segments;</li>
+ * <li>user info.</li>
+ * </ol>
+ * All strings are compared as by {@link String#compareTo(String)}. URIs are
+ * encoded as they are, so they should be normalized before (see
+ * {@link org.ubimix.commons.uri.UriNormalizer}) if equivalent URIs should
+ * have the same keys.
+ * <p>
+ * All URIs on the same host, or all URIs under the same directory, form
+ * contiguous ranges of keys. Such ranges are defined by the keys returned by
+ * the {@link #getHostPrefix(String, boolean)} and
+ * {@link #getPathPrefix(AbstractUri)} methods: all keys in a range start with
+ * its prefix. The {@link #getPrefixEnd(byte[])} method returns the exclusive
+ * upper bound of a range.
+ * </p>
+ * <p>
+ * Keys contain all components of URIs, so URIs can be restored from their
+ * keys (see {@link #decode(byte[], int, int)}).
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public class UriKeyEncoder {
+
+    /**
+     * Writes keys as bytes. Each UTF-16 char of a string is written separately
+     * (as in CESU-8) to keep the order of {@link String#compareTo(String)};
+     * zero chars are escaped so the terminator (0x00 0x01) is less than any
+     * char.
+     */
+    private static class ByteKeyBuilder extends UriKeyBuilder {
+
+        private final ByteArrayOutputStream fOut = new ByteArrayOutputStream();
+
+        public byte[] toByteArray() {
+            return fOut.toByteArray();
+        }
+
+        @Override
+        protected void writeInt(int value) {
+            fOut.write(value >>> 24);
+            fOut.write(value >>> 16);
+            fOut.write(value >>> 8);
+            fOut.write(value);
+        }
+
+        @Override
+        protected void writeMarker(int marker) {
+            fOut.write(marker);
+        }
+
+        @Override
+        protected void writeString(String str, int begin, int end) {
+            for (int i = begin; i < end; i++) {
+                char ch = str.charAt(i);
+                if (ch == 0) {
+                    fOut.write(0x00);
+                    fOut.write(0xFF);
+                } else if (ch < 0x80) {
+                    fOut.write(ch);
+                } else if (ch < 0x800) {
+                    fOut.write(0xC0 | (ch >>> 6));
+                    fOut.write(0x80 | (ch & 0x3F));
+                } else {
+                    fOut.write(0xE0 | (ch >>> 12));
+                    fOut.write(0x80 | ((ch >>> 6) & 0x3F));
+                    fOut.write(0x80 | (ch & 0x3F));
+                }
+            }
+            fOut.write(0x00);
+            fOut.write(0x01);
+        }
+
+    }
+
+    /**
+     * Compares the given keys byte-by-byte. Bytes are compared as unsigned
+     * values.
+     *
+     * @param first the first key to compare
+     * @param second the second key to compare
+     * @return a negative value, zero, or a positive value if the first key is
+     *         less than, equal to, or greater than the second one
+     */
+    public static int compare(byte[] first, byte[] second) {
+        return compare(first, 0, first.length, second, 0, second.length);
+    }
+
+    /**
+     * Compares the specified ranges of the given arrays byte-by-byte. Bytes
+     * are compared as unsigned values.
+     */
+    public static int compare(
+        byte[] first,
+        int firstOffset,
+        int firstLength,
+        byte[] second,
+        int secondOffset,
+        int secondLength) {
+        int len = Math.min(firstLength, secondLength);
+        for (int i = 0; i < len; i++) {
+            int a = first[firstOffset + i] & 0xFF;
+            int b = second[secondOffset + i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    /**
+     * Restores the URI from its key.
+     *
+     * @param key the key of the URI
+     * @return the decoded URI
+     */
+    public static Uri decode(byte[] key) {
+        return decode(key, 0, key.length);
+    }
+
+    /**
+     * Restores the URI from the key stored in the specified part of the array.
+     *
+     * @param array the array containing the key
+     * @param offset the position of the key in the array
+     * @param length the length of the key
+     * @return the decoded URI
+     * @throws IllegalArgumentException if the key is malformed
+     */
+    public static Uri decode(byte[] array, int offset, int length) {
+        ByteBuffer buf = ByteBuffer.wrap(array, offset, length);
+        try {
+            UriComponents uri = new UriComponents();
+            if (buf.get() != UriKeyBuilder.NULL) {
+                List<String> labels = readList(buf);
+                StringBuilder host = new StringBuilder();
+                for (int i = labels.size() - 1; i >= 0; i--) {
+                    host.append(labels.get(i));
+                    if (i > 0) {
+                        host.append('.');
+                    }
+                }
+                uri.fHost = host.toString();
+            }
+            uri.fPort = buf.getInt() ^ Integer.MIN_VALUE;
+            PathComponents path = new PathComponents();
+            path.fAbsolute = buf.get() != 0;
+            path.fSegments = new ArrayList<String>();
+            int marker;
+            while ((marker = buf.get()) == UriKeyBuilder.ITEM) {
+                path.fSegments.add(readString(buf));
+            }
+            path.fTrailingSeparator = marker == UriKeyBuilder.END_TRAILING;
+            uri.fPath = new Path(path);
+            List<QueryItem> items = new ArrayList<QueryItem>();
+            while (buf.get() == UriKeyBuilder.ITEM) {
+                String name = readString(buf);
+                String value = readNullableString(buf);
+                items.add(new QueryItem(name, value, false));
+            }
+            uri.fQueryItems = items;
+            uri.fFragment = readNullableString(buf);
+            uri.fSchemeSegments = readList(buf);
+            uri.fUserInfo = readNullableString(buf);
+            return new Uri(uri);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed URI key", e);
+        }
+    }
+
+    /**
+     * Returns the key of the specified host. If the
+     * <code>includeSubdomains</code> flag is <code>true</code> then the
+     * returned key is a prefix of keys of all URIs on this host and on all its
+     * sub-domains. Otherwise it is a prefix of keys of URIs on this host only.
+     *
+     * @param host the host name
+     * @param includeSubdomains if this flag is <code>true</code> then the
+     *        resulting range contains URIs on sub-domains of the host
+     * @return the prefix of keys of URIs on the specified host
+     */
+    public static byte[] getHostPrefix(String host, boolean includeSubdomains) {
+        ByteKeyBuilder builder = new ByteKeyBuilder();
+        builder.writeHost(host, !includeSubdomains);
+        return builder.toByteArray();
+    }
+
+    /**
+     * Returns the key of the given URI.
+     *
+     * @param uri the URI to encode
+     * @return the key of the URI
+     */
+    public static byte[] getKey(AbstractUri uri) {
+        ByteKeyBuilder builder = new ByteKeyBuilder();
+        builder.writeKey(uri);
+        return builder.toByteArray();
+    }
+
+    /**
+     * Returns the key of the given path. Keys of paths have the same order as
+     * paths themselves (see {@link AbstractPath#compareTo(AbstractPath)}).
+     *
+     * @param path the path to encode
+     * @return the key of the path
+     */
+    public static byte[] getPathKey(AbstractPath path) {
+        ByteKeyBuilder builder = new ByteKeyBuilder();
+        builder.writePath(path, true);
+        return builder.toByteArray();
+    }
+
+    /**
+     * Returns a prefix of keys of all URIs with the same host and port which
+     * have all path segments of the given URI. So the returned key defines
+     * the range of URIs in the "directory" defined by the given URI.
+     *
+     * @param uri the URI defining the host, the port and the directory
+     * @return a prefix of keys of all URIs in the same directory
+     */
+    public static byte[] getPathPrefix(AbstractUri uri) {
+        ByteKeyBuilder builder = new ByteKeyBuilder();
+        builder.writeHost(uri.getHost(), true);
+        builder.writePort(uri.getPort());
+        builder.writePath(uri.getPath(), false);
+        return builder.toByteArray();
+    }
+
+    /**
+     * Returns the smallest key which is greater than all keys starting with
+     * the given prefix or <code>null</code> if there is no such a key (all
+     * bytes of the prefix are equal to 0xFF).
+     *
+     * @param prefix the prefix of keys
+     * @return the exclusive upper bound of keys starting with the prefix
+     */
+    public static byte[] getPrefixEnd(byte[] prefix) {
+        int len = prefix.length;
+        while (len > 0 && (prefix[len - 1] & 0xFF) == 0xFF) {
+            len--;
+        }
+        if (len == 0) {
+            return null;
+        }
+        byte[] result = new byte[len];
+        System.arraycopy(prefix, 0, result, 0, len);
+        result[len - 1]++;
+        return result;
+    }
+
+    private static List<String> readList(ByteBuffer buf) {
+        List<String> result = null;
+        while (buf.get() == UriKeyBuilder.ITEM) {
+            if (result == null) {
+                result = new ArrayList<String>();
+            }
+            result.add(readString(buf));
+        }
+        return result != null ? result : Collections.<String> emptyList();
+    }
+
+    private static String readNullableString(ByteBuffer buf) {
+        return buf.get() != UriKeyBuilder.NULL ? readString(buf) : null;
+    }
+
+    /**
+     * Reads a string written by the {@link ByteKeyBuilder}.
+     */
+    private static String readString(ByteBuffer buf) {
+        StringBuilder result = new StringBuilder();
+        while (true) {
+            int b = buf.get() & 0xFF;
+            if (b == 0) {
+                if (buf.get() == 0x01) {
+                    return result.toString();
+                }
+                result.append('\0');
+            } else if (b < 0x80) {
+                result.append((char) b);
+            } else if (b < 0xE0) {
+                result.append((char) (((b & 0x1F) << 6) | (buf.get() & 0x3F)));
+            } else {
+                int b2 = buf.get();
+                int b3 = buf.get();
+                result.append((char) (((b & 0x0F) << 12)
+                    | ((b2 & 0x3F) << 6) | (b3 & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given key starts with the specified
+     * prefix.
+     *
+     * @param key the key to check
+     * @param prefix the prefix
+     * @return <code>true</code> if the key starts with the prefix
+     */
+    public static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
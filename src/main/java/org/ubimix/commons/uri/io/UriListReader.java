@@ -0,0 +1,140 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.ubimix.commons.uri.Uri;
+
+/**
+ * This class reads lists of URIs written by an {@link UriListWriter}. URIs
+ * are decoded on demand, directly from their keys (see
+ * {@link UriKeyEncoder#decode(byte[], int, int)}). Instances of this
+ * class are immutable and can be shared between threads.
+ *
+ * @author kotelnikov
+ * @see UriListWriter
+ */
+public class UriListReader implements Iterable<Uri> {
+
+    /**
+     * Streaming iterator over URIs of the list.
+     */
+    private class UriIterator implements Iterator<Uri> {
+
+        private final BlockReader.Cursor fCursor;
+
+        private boolean fHasNext;
+
+        public UriIterator(int from) {
+            fCursor = fReader.newCursor();
+            fHasNext = fCursor.seek(from);
+        }
+
+        public boolean hasNext() {
+            return fHasNext;
+        }
+
+        public Uri next() {
+            if (!fHasNext) {
+                throw new NoSuchElementException();
+            }
+            Uri result = decode(fCursor);
+            fHasNext = fCursor.next();
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static Uri decode(BlockReader.Cursor cursor) {
+        return UriKeyEncoder.decode(
+            cursor.getKeyArray(),
+            0,
+            cursor.getKeyLength());
+    }
+
+    private final BlockReader fReader;
+
+    /**
+     * @param data the encoded list of URIs
+     */
+    public UriListReader(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Creates a reader for the list of URIs between the current position and
+     * the limit of the given buffer.
+     *
+     * @param data the buffer containing the encoded list of URIs
+     */
+    public UriListReader(ByteBuffer data) {
+        fReader = new BlockReader(data);
+    }
+
+    /**
+     * Returns the URI with the specified index.
+     *
+     * @param index the index of the URI in the list
+     * @return the URI with the specified index
+     * @throws IndexOutOfBoundsException if there is no such an URI
+     */
+    public Uri get(int index) {
+        BlockReader.Cursor cursor = fReader.newCursor();
+        if (!cursor.seek(index)) {
+            throw new IndexOutOfBoundsException("Index: "
+                + index
+                + ", Size: "
+                + size());
+        }
+        return decode(cursor);
+    }
+
+    /**
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Uri> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Returns an iterator over URIs of this list starting from the specified
+     * position.
+     *
+     * @param from the index of the first returned URI
+     * @return an iterator over URIs of this list
+     */
+    public Iterator<Uri> iterator(int from) {
+        return new UriIterator(from);
+    }
+
+    /**
+     * Returns the number of URIs in this list.
+     *
+     * @return the number of URIs in this list
+     */
+    public int size() {
+        return fReader.getEntryCount();
+    }
+
+}
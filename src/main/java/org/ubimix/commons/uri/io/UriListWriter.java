@@ -0,0 +1,96 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import org.ubimix.commons.uri.AbstractUri;
+
+/**
+ * This class writes lists of URIs in a compact front-coded form. Each URI is
+ * stored as the number of bytes its key (see {@link UriKeyEncoder}) shares
+ * with the key of the previous URI followed by the remaining bytes of the key,
+ * so lists of URIs grouped by hosts and directories (sitemaps, crawled pages,
+ * links) are stored in a fraction of their text size. Lists sorted by keys
+ * give the best compression. Each N-th URI is stored completely to allow
+ * random access to the list.
+ *
+ * <pre>
+ * UriListWriter writer = new UriListWriter();
+ * for (Uri uri : uris) {
+ *     writer.add(uri);
+ * }
+ * byte[] data = writer.finish();
+ * ...
+ * UriListReader reader = new UriListReader(data);
+ * for (Uri uri : reader) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author kotelnikov
+ * @see UriListReader
+ * @see BlockWriter
+ */
+public class UriListWriter {
+
+    private final BlockWriter fWriter;
+
+    /**
+     * Creates a new writer with the default restart interval.
+     */
+    public UriListWriter() {
+        this(BlockWriter.DEFAULT_RESTART_INTERVAL);
+    }
+
+    /**
+     * @param restartInterval the number of URIs between two URIs stored
+     *        completely; small values speed up random access, big values give
+     *        better compression
+     */
+    public UriListWriter(int restartInterval) {
+        fWriter = new BlockWriter(restartInterval);
+    }
+
+    /**
+     * Adds a new URI to the list.
+     *
+     * @param uri the URI to add
+     */
+    public void add(AbstractUri uri) {
+        byte[] key = UriKeyEncoder.getKey(uri);
+        fWriter.add(key, 0, key.length, null, 0, 0);
+    }
+
+    /**
+     * Returns the encoded list of URIs. After this call the writer is reset
+     * and can be used to write a new list.
+     *
+     * @return the encoded list of URIs
+     */
+    public byte[] finish() {
+        return fWriter.finish();
+    }
+
+    /**
+     * Returns the number of URIs added to the list.
+     *
+     * @return the number of URIs in the list
+     */
+    public int size() {
+        return fWriter.getEntryCount();
+    }
+
+}
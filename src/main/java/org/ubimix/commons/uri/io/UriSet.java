@@ -0,0 +1,317 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.nio.ByteBuffer;
+
+import org.ubimix.commons.uri.AbstractUri;
+import org.ubimix.commons.uri.UriFingerprint;
+import org.ubimix.commons.uri.UriNormalizer;
+
+/**
+ * A set of URIs stored outside of the Java heap. Each URI is represented by
+ * the 128-bit fingerprint of its normalized form (see
+ * {@link UriNormalizer#getFingerprint128(AbstractUri)}), so the set uses 16
+ * bytes per slot regardless of the length of URIs and creates no objects per
+ * URI.
+ * <p>
+ * Fingerprints are kept in open-addressing tables (linear probing) allocated
+ * with {@link ByteBuffer#allocateDirect(int)}. The set is split into
+ * independent segments, each guarded by its own lock; when a segment is full
+ * only this segment is locked and re-hashed into a bigger table.
+ * </p>
+ * <p>
+ * As the set stores fingerprints, two different URIs could be considered as
+ * equal with a probability of about 2<sup>-128</sup> for each pair.
+ * </p>
+ *
+ * @author kotelnikov
+ */
+public class UriSet {
+
+    /**
+     * An independent part of the set.
+     */
+    private static class Segment {
+
+        private static final int SLOT_SIZE = 16;
+
+        private int fMask;
+
+        private int fSize;
+
+        private ByteBuffer fTable;
+
+        private int fThreshold;
+
+        public Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        public synchronized boolean add(long h1, long h2) {
+            int slot = find(fTable, fMask, h1, h2);
+            if (!isEmpty(fTable, slot)) {
+                return false;
+            }
+            if (fSize + 1 > fThreshold) {
+                // Grow (or fail) before inserting: a full segment must stay
+                // unchanged and keep an empty slot to terminate probing
+                resize();
+                slot = find(fTable, fMask, h1, h2);
+            }
+            setSlot(fTable, slot, h1, h2);
+            fSize++;
+            return true;
+        }
+
+        private void allocate(int capacity) {
+            fTable = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+            fMask = capacity - 1;
+            fThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        public synchronized void clear() {
+            allocate(MIN_SEGMENT_CAPACITY);
+            fSize = 0;
+        }
+
+        public synchronized boolean contains(long h1, long h2) {
+            return !isEmpty(fTable, find(fTable, fMask, h1, h2));
+        }
+
+        /**
+         * Returns the slot containing the given fingerprint or the first
+         * empty slot where it should be stored.
+         */
+        private int find(ByteBuffer table, int mask, long h1, long h2) {
+            int slot = (int) h2 & mask;
+            while (true) {
+                int pos = slot * SLOT_SIZE;
+                long v1 = table.getLong(pos);
+                long v2 = table.getLong(pos + 8);
+                if ((v1 == h1 && v2 == h2) || (v1 == 0 && v2 == 0)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        public synchronized long getMemoryUsage() {
+            return fTable.capacity();
+        }
+
+        private boolean isEmpty(ByteBuffer table, int slot) {
+            int pos = slot * SLOT_SIZE;
+            return table.getLong(pos) == 0 && table.getLong(pos + 8) == 0;
+        }
+
+        private void resize() {
+            int capacity = fMask + 1;
+            if (capacity >= MAX_SEGMENT_CAPACITY) {
+                if (fSize + 1 >= capacity) {
+                    throw new IllegalStateException("The set is full");
+                }
+                // Keep the table as is; it becomes denser
+                fThreshold = capacity - 1;
+                return;
+            }
+            ByteBuffer oldTable = fTable;
+            int oldCapacity = capacity;
+            allocate(capacity * 2);
+            for (int i = 0; i < oldCapacity; i++) {
+                int pos = i * SLOT_SIZE;
+                long h1 = oldTable.getLong(pos);
+                long h2 = oldTable.getLong(pos + 8);
+                if (h1 != 0 || h2 != 0) {
+                    setSlot(fTable, find(fTable, fMask, h1, h2), h1, h2);
+                }
+            }
+        }
+
+        private void setSlot(ByteBuffer table, int slot, long h1, long h2) {
+            int pos = slot * SLOT_SIZE;
+            table.putLong(pos, h1);
+            table.putLong(pos + 8, h2);
+        }
+
+        public synchronized int size() {
+            return fSize;
+        }
+
+    }
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    /**
+     * The maximal number of slots in one segment: the size of a direct buffer
+     * is limited by {@link Integer#MAX_VALUE}.
+     */
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 26;
+
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /**
+     * The default number of independent segments.
+     */
+    public static final int DEFAULT_SEGMENT_COUNT = 64;
+
+    private final UriNormalizer fNormalizer;
+
+    private final Segment[] fSegments;
+
+    private final int fSegmentShift;
+
+    /**
+     * Creates a new empty set using the default {@link UriNormalizer}.
+     */
+    public UriSet() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the expected number of URIs in the set
+     */
+    public UriSet(long expectedSize) {
+        this(expectedSize, new UriNormalizer());
+    }
+
+    /**
+     * @param expectedSize the expected number of URIs in the set
+     * @param normalizer the normalizer used to create fingerprints of URIs;
+     *        if it is <code>null</code> then URIs are used as they are
+     */
+    public UriSet(long expectedSize, UriNormalizer normalizer) {
+        fNormalizer = normalizer;
+        int count = DEFAULT_SEGMENT_COUNT;
+        fSegments = new Segment[count];
+        fSegmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        long perSegment = (long) (expectedSize / count / LOAD_FACTOR) + 1;
+        int capacity = MIN_SEGMENT_CAPACITY;
+        while (capacity < perSegment && capacity < MAX_SEGMENT_CAPACITY) {
+            capacity <<= 1;
+        }
+        for (int i = 0; i < count; i++) {
+            fSegments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Adds the given URI to this set if it is not there yet.
+     *
+     * @param uri the URI to add
+     * @return <code>true</code> if the URI was added and <code>false</code> if
+     *         it was already in the set
+     */
+    public boolean addIfAbsent(AbstractUri uri) {
+        long[] fingerprint = getFingerprint(uri);
+        return addIfAbsent(fingerprint[0], fingerprint[1]);
+    }
+
+    /**
+     * Adds the given 128-bit fingerprint to this set if it is not there yet.
+     *
+     * @param h1 the first 64 bits of the fingerprint
+     * @param h2 the last 64 bits of the fingerprint
+     * @return <code>true</code> if the fingerprint was added and
+     *         <code>false</code> if it was already in the set
+     */
+    public boolean addIfAbsent(long h1, long h2) {
+        if (h1 == 0 && h2 == 0) {
+            // Zeros mark empty slots
+            h2 = 1;
+        }
+        return getSegment(h1).add(h1, h2);
+    }
+
+    /**
+     * Removes all URIs from this set and releases the memory.
+     */
+    public void clear() {
+        for (Segment segment : fSegments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if this set contains the given URI.
+     *
+     * @param uri the URI to check
+     * @return <code>true</code> if this set contains the given URI
+     */
+    public boolean contains(AbstractUri uri) {
+        long[] fingerprint = getFingerprint(uri);
+        return contains(fingerprint[0], fingerprint[1]);
+    }
+
+    /**
+     * Returns <code>true</code> if this set contains the given fingerprint.
+     *
+     * @param h1 the first 64 bits of the fingerprint
+     * @param h2 the last 64 bits of the fingerprint
+     * @return <code>true</code> if this set contains the fingerprint
+     */
+    public boolean contains(long h1, long h2) {
+        if (h1 == 0 && h2 == 0) {
+            h2 = 1;
+        }
+        return getSegment(h1).contains(h1, h2);
+    }
+
+    /**
+     * Returns the fingerprint of the given URI used as its identifier in this
+     * set.
+     *
+     * @param uri the URI
+     * @return an array with two longs containing the fingerprint of the URI
+     */
+    public long[] getFingerprint(AbstractUri uri) {
+        return fNormalizer != null
+            ? fNormalizer.getFingerprint128(uri)
+            : UriFingerprint.getFingerprint128(uri);
+    }
+
+    /**
+     * Returns the number of bytes allocated outside of the heap by this set.
+     *
+     * @return the size of memory used by this set
+     */
+    public long getMemoryUsage() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            result += segment.getMemoryUsage();
+        }
+        return result;
+    }
+
+    private Segment getSegment(long h1) {
+        return fSegments[(int) (h1 >>> fSegmentShift)];
+    }
+
+    /**
+     * Returns the number of URIs in this set.
+     *
+     * @return the number of URIs in this set
+     */
+    public long size() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            result += segment.size();
+        }
+        return result;
+    }
+
+}
@@ -16,68 +16,563 @@
  * ************************************************************************** */
 package org.ubimix.commons.uri.path;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
+ * A registry of extensions associated with path prefixes. Extensions
+ * registered for a prefix are available for all paths starting with this
+ * prefix (see {@link #getExtensions(String)}).
+ * <p>
+ * The registry is optimized for lookups: all registered extensions are kept
+ * in an immutable {@link Snapshot} referenced by a volatile field, so readers
+ * never take locks. Each modification creates a new snapshot; only the lists
+ * of modified prefixes are copied, the other lists are shared between
+ * snapshots. Several modifications can be applied together (and published as
+ * one new snapshot) using a {@link Batch}.
+ * </p>
+ * <p>
+ * Merged extensions of all ancestors of a prefix (see
+ * {@link #getMergedExtensions(String)}) are kept in snapshots next to
+ * extensions of each prefix. They are merged again only for modified
+ * prefixes and their subtrees; merged collections of other prefixes are
+ * shared with the previous snapshot.
+ * </p>
+ * <p>
+ * Writers also maintain a reverse index of prefixes for each extension, so
+ * removing an extension from all prefixes (see
+ * {@link #removeExtension(Comparable)}) and
+ * {@link #getPrefixes(Comparable)} visit only prefixes where this extension
+ * is registered.
+ * </p>
+ * 
  * @author kotelnikov
  */
 public abstract class AbstractExtensionRegistry<E extends Comparable<E>, L extends Collection<E>> {
 
-    private PathManager<L> fManager = new PathManager<L>() {
-        @Override
-        protected Character getSegmentDelimiter() {
-            return AbstractExtensionRegistry.this.getSegmentDelimiter();
+    /**
+     * A set of modifications applied to the registry at once. Modifications
+     * are not visible until the {@link #commit()} method is called.
+     */
+    public class Batch {
+
+        private List<Operation<E>> fOperations = new ArrayList<Operation<E>>();
+
+        /**
+         * Registers a new extension for the given path prefix.
+         * 
+         * @param key the path prefix
+         * @param extension the extension to add
+         * @return this batch
+         */
+        public Batch addExtension(String key, E extension) {
+            fOperations.add(new Operation<E>(true, key, extension));
+            return this;
+        }
+
+        /**
+         * Applies all modifications of this batch to the registry and
+         * publishes a new snapshot. After this call the batch is empty and can
+         * be used again.
+         * 
+         * @return <code>true</code> if at least one extension was removed
+         */
+        public boolean commit() {
+            List<Operation<E>> operations = fOperations;
+            fOperations = new ArrayList<Operation<E>>();
+            return apply(operations);
+        }
+
+        /**
+         * Removes the given extension from all prefixes.
+         * 
+         * @param extension the extension to remove
+         * @return this batch
+         */
+        public Batch removeExtension(E extension) {
+            fOperations.add(new Operation<E>(false, null, extension));
+            return this;
+        }
+
+        /**
+         * Removes the given extension registered for the specified prefix.
+         * 
+         * @param key the path prefix
+         * @param extension the extension to remove
+         * @return this batch
+         */
+        public Batch removeExtension(String key, E extension) {
+            fOperations.add(new Operation<E>(false, key, extension));
+            return this;
+        }
+
+    }
+
+    /**
+     * A modification of the registry.
+     */
+    private static class Operation<E> {
+
+        private final boolean fAdd;
+
+        private final E fExtension;
+
+        /**
+         * The path prefix or <code>null</code> for all prefixes
+         */
+        private final String fKey;
+
+        public Operation(boolean add, String key, E extension) {
+            fAdd = add;
+            fKey = key;
+            fExtension = extension;
+        }
+
+    }
+
+    /**
+     * An immutable state of the registry. Snapshots can be used to make
+     * several lookups in the same state of the registry.
+     */
+    public static class Snapshot<E> {
+
+        private final ImmutablePathManager<Collection<E>> fManager;
+
+        /**
+         * Merged extensions of each prefix and all its ancestors; it contains
+         * the same prefixes as the {@link #fManager}.
+         */
+        private final ImmutablePathManager<Collection<E>> fMerged;
+
+        private Snapshot(
+            ImmutablePathManager<Collection<E>> manager,
+            ImmutablePathManager<Collection<E>> merged) {
+            fManager = manager;
+            fMerged = merged;
+        }
+
+        /**
+         * Returns extensions registered for the nearest prefix of the
+         * specified region of the path. This method does not create new
+         * strings.
+         * 
+         * @param path the path
+         * @param begin the begin of the path region
+         * @param end the end of the path region
+         * @return an unmodifiable collection of extensions or
+         *         <code>null</code> if there is no registered prefix for this
+         *         path
+         */
+        public Collection<E> getExtensions(
+            CharSequence path,
+            int begin,
+            int end) {
+            return fManager.getNearestValue(path, begin, end);
+        }
+
+        /**
+         * Returns extensions registered for the nearest prefix of the given
+         * path.
+         * 
+         * @param path the path
+         * @return an unmodifiable collection of extensions or
+         *         <code>null</code> if there is no registered prefix for this
+         *         path
+         */
+        public Collection<E> getExtensions(String path) {
+            return fManager.getNearestValue(path);
+        }
+
+        /**
+         * Returns extensions registered for the nearest prefix of the
+         * specified region of the path and for all ancestors of this prefix.
+         * This method does not create new strings.
+         * 
+         * @param path the path
+         * @param begin the begin of the path region
+         * @param end the end of the path region
+         * @return an unmodifiable collection of extensions or
+         *         <code>null</code> if there is no registered prefix for this
+         *         path
+         */
+        public Collection<E> getMergedExtensions(
+            CharSequence path,
+            int begin,
+            int end) {
+            return fMerged.getNearestValue(path, begin, end);
+        }
+
+        /**
+         * Returns extensions registered for the nearest prefix of the given
+         * path and for all ancestors of this prefix.
+         * 
+         * @param path the path
+         * @return an unmodifiable collection of extensions or
+         *         <code>null</code> if there is no registered prefix for this
+         *         path
+         */
+        public Collection<E> getMergedExtensions(String path) {
+            return fMerged.getNearestValue(path);
+        }
+
+        /**
+         * Returns the nearest registered prefix of the given path.
+         * 
+         * @param path the path
+         * @return the nearest registered prefix
+         */
+        public String getNearestPath(String path) {
+            return fManager.getNearestPath(path);
+        }
+
+        /**
+         * Returns all prefixes with registered extensions.
+         * 
+         * @return an array of all registered prefixes
+         */
+        public String[] getPrefixes() {
+            return fManager.getAllPrefixes();
+        }
+
+    }
+
+    /**
+     * The reverse index: canonical prefixes where each extension is
+     * registered. It is guarded by the lock of this registry.
+     */
+    private final Map<E, Set<String>> fPrefixes = new HashMap<E, Set<String>>();
+
+    /**
+     * The current state of the registry. The first snapshot is created
+     * lazily, so the segment delimiter defined by subclasses is not read
+     * before their constructors are finished.
+     */
+    private volatile Snapshot<E> fSnapshot;
+
+    /**
+     * Registers a new extension for the given path prefix.
+     * 
+     * @param key the path prefix
+     * @param extension the extension to add
+     */
+    public void addExtension(String key, E extension) {
+        newBatch().addExtension(key, extension).commit();
+    }
+
+    /**
+     * Applies the given operations and publishes a new snapshot.
+     */
+    private synchronized boolean apply(List<Operation<E>> operations) {
+        Snapshot<E> current = getSnapshot();
+        ImmutablePathManager<Collection<E>> manager = current.fManager;
+        // Modified lists; they are copies of lists from the current snapshot
+        Map<String, L> changed = new HashMap<String, L>();
+        // Modified sets of prefixes; they are copies of sets from the index
+        Map<E, Set<String>> changedPrefixes = new HashMap<E, Set<String>>();
+        boolean result = false;
+        for (Operation<E> operation : operations) {
+            E extension = operation.fExtension;
+            if (operation.fAdd) {
+                String key = manager.getCanonicalPath(operation.fKey);
+                L list = getChangedList(manager, changed, key);
+                insert(list, extension);
+                getChangedPrefixes(changedPrefixes, extension).add(key);
+            } else if (operation.fKey != null) {
+                result |= remove(
+                    manager,
+                    changed,
+                    changedPrefixes,
+                    manager.getCanonicalPath(operation.fKey),
+                    extension);
+            } else {
+                Set<String> keys = getChangedPrefixes(
+                    changedPrefixes,
+                    extension);
+                for (String key : keys.toArray(new String[keys.size()])) {
+                    result |= remove(
+                        manager,
+                        changed,
+                        changedPrefixes,
+                        key,
+                        extension);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            Map<String, Collection<E>> additions = new HashMap<String, Collection<E>>();
+            List<String> removals = new ArrayList<String>();
+            for (Map.Entry<String, L> entry : changed.entrySet()) {
+                L list = entry.getValue();
+                if (list.isEmpty()) {
+                    removals.add(entry.getKey());
+                } else {
+                    additions.put(
+                        entry.getKey(),
+                        Collections.unmodifiableCollection(list));
+                }
+            }
+            ImmutablePathManager<Collection<E>> newManager = manager.derive(
+                additions,
+                removals);
+            fSnapshot = new Snapshot<E>(newManager, deriveMerged(
+                current.fMerged,
+                newManager,
+                changed.keySet()));
+        }
+        for (Map.Entry<E, Set<String>> entry : changedPrefixes.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                fPrefixes.remove(entry.getKey());
+            } else {
+                fPrefixes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns merged extensions for the new state of prefixes. Only the given
+     * changed prefixes and their subtrees are merged again; merged
+     * collections of other prefixes are shared with the previous state.
+     */
+    private ImmutablePathManager<Collection<E>> deriveMerged(
+        ImmutablePathManager<Collection<E>> merged,
+        ImmutablePathManager<Collection<E>> manager,
+        Set<String> changed) {
+        Map<String, Collection<E>> additions = new HashMap<String, Collection<E>>();
+        List<String> removals = new ArrayList<String>();
+        for (String key : changed) {
+            if (manager.getExactValue(key) == null) {
+                removals.add(key);
+            }
+            Iterator<Map.Entry<String, Collection<E>>> iterator = manager
+                .getSubtreeEntries(key);
+            while (iterator.hasNext()) {
+                String prefix = iterator.next().getKey();
+                if (!additions.containsKey(prefix)) {
+                    additions.put(prefix, merge(manager, prefix));
+                }
+            }
+        }
+        return merged.derive(additions, removals);
+    }
+
+    /**
+     * Returns a modifiable copy of the set of prefixes where the given
+     * extension is registered.
+     */
+    private Set<String> getChangedPrefixes(
+        Map<E, Set<String>> changedPrefixes,
+        E extension) {
+        Set<String> prefixes = changedPrefixes.get(extension);
+        if (prefixes == null) {
+            prefixes = new TreeSet<String>();
+            Set<String> values = fPrefixes.get(extension);
+            if (values != null) {
+                prefixes.addAll(values);
+            }
+            changedPrefixes.put(extension, prefixes);
         }
-    };
+        return prefixes;
+    }
 
     /**
-     * @param extension
+     * Returns a modifiable copy of the list registered for the given key.
      */
-    public synchronized void addExtension(String key, E extension) {
-        L list = fManager.getExactValue(key);
+    private L getChangedList(
+        ImmutablePathManager<Collection<E>> manager,
+        Map<String, L> changed,
+        String key) {
+        L list = changed.get(key);
         if (list == null) {
             list = newCollection();
-            fManager.add(key, list);
+            Collection<E> values = manager.getExactValue(key);
+            if (values != null) {
+                list.addAll(values);
+            }
+            changed.put(key, list);
         }
-        insert(list, extension);
+        return list;
+    }
+
+    /**
+     * Returns extensions registered for the nearest prefix of the specified
+     * region of the path. This method does not block and does not create new
+     * strings.
+     * 
+     * @param path the path
+     * @param begin the begin of the path region
+     * @param end the end of the path region
+     * @return an unmodifiable collection of extensions or <code>null</code>
+     *         if there is no registered prefix for this path
+     */
+    public Collection<E> getExtensions(CharSequence path, int begin, int end) {
+        return getSnapshot().getExtensions(path, begin, end);
+    }
+
+    /**
+     * Returns extensions registered for the nearest prefix of the given path.
+     * This method does not block.
+     * 
+     * @param type the path
+     * @return an unmodifiable collection of extensions or <code>null</code>
+     *         if there is no registered prefix for this path
+     */
+    public Collection<E> getExtensions(String type) {
+        return getSnapshot().getExtensions(type);
+    }
+
+    /**
+     * Returns extensions registered for the nearest prefix of the specified
+     * region of the path and for all ancestors of this prefix. This method
+     * does not block and does not create new strings.
+     * 
+     * @param path the path
+     * @param begin the begin of the path region
+     * @param end the end of the path region
+     * @return an unmodifiable collection of extensions or <code>null</code>
+     *         if there is no registered prefix for this path
+     * @see #getMergedExtensions(String)
+     */
+    public Collection<E> getMergedExtensions(
+        CharSequence path,
+        int begin,
+        int end) {
+        return getSnapshot().getMergedExtensions(path, begin, end);
     }
 
-    public synchronized Collection<E> getExtensions(String type) {
-        return fManager.getNearestValue(type);
+    /**
+     * Returns extensions registered for the nearest prefix of the given path
+     * and for all ancestors of this prefix. For example for the path
+     * "/a/b/c" this method returns extensions of "/a/b/c", "/a/b", "/a" and
+     * "/" merged in one collection, in the same way as they were registered
+     * for one prefix. Merged collections are prepared when prefixes are
+     * modified, so this method does not block and does not merge anything.
+     * 
+     * @param path the path
+     * @return an unmodifiable collection of extensions or <code>null</code>
+     *         if there is no registered prefix for this path
+     */
+    public Collection<E> getMergedExtensions(String path) {
+        return getSnapshot().getMergedExtensions(path);
     }
 
     public String getNearestPath(String path) {
-        return fManager.getNearestPath(path);
+        return getSnapshot().getNearestPath(path);
+    }
+
+    /**
+     * Returns all prefixes where the given extension is registered. This
+     * method uses the reverse index, so it visits only these prefixes.
+     * 
+     * @param extension the extension
+     * @return a sorted array of canonical prefixes of the extension
+     */
+    public synchronized String[] getPrefixes(E extension) {
+        Set<String> prefixes = fPrefixes.get(extension);
+        return prefixes != null
+            ? prefixes.toArray(new String[prefixes.size()])
+            : new String[0];
     }
 
     protected Character getSegmentDelimiter() {
         return '/';
     }
 
+    /**
+     * Returns the current state of this registry. The returned snapshot is
+     * not changed by further modifications of the registry.
+     * 
+     * @return the current state of the registry
+     */
+    public Snapshot<E> getSnapshot() {
+        Snapshot<E> snapshot = fSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = fSnapshot;
+                if (snapshot == null) {
+                    ImmutablePathManager<Collection<E>> manager = newManager();
+                    snapshot = new Snapshot<E>(manager, manager);
+                    fSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
     protected abstract void insert(L list, E extension);
 
+    /**
+     * Merges extensions of the given canonical prefix and all its ancestors.
+     */
+    private Collection<E> merge(
+        ImmutablePathManager<Collection<E>> manager,
+        String prefix) {
+        L list = newCollection();
+        Iterator<Map.Entry<String, Collection<E>>> iterator = manager
+            .getAncestorEntries(prefix);
+        while (iterator.hasNext()) {
+            for (E extension : iterator.next().getValue()) {
+                insert(list, extension);
+            }
+        }
+        return Collections.unmodifiableCollection(list);
+    }
+
+    /**
+     * Creates a new batch of modifications for this registry.
+     * 
+     * @return a new batch of modifications
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
     protected abstract L newCollection();
 
-    public synchronized boolean removeExtension(E extension) {
-        boolean result = false;
-        String[] prefixes = fManager.getAllPrefixes();
-        for (String prefix : prefixes) {
-            result |= removeExtension(prefix, extension);
-        }
-        return result;
+    private ImmutablePathManager<Collection<E>> newManager() {
+        return new ImmutablePathManager.Builder<Collection<E>>(
+            getSegmentDelimiter()).build();
     }
 
-    public synchronized boolean removeExtension(String type, E extension) {
-        L list = fManager.getExactValue(type);
-        boolean removed = list.remove(extension);
-        if (removed) {
-            if (!list.isEmpty()) {
-                fManager.add(type, list);
-            } else {
-                fManager.remove(type);
+    /**
+     * Removes the extension from the list registered for the given canonical
+     * key. The list is copied only if it contains the extension.
+     */
+    private boolean remove(
+        ImmutablePathManager<Collection<E>> manager,
+        Map<String, L> changed,
+        Map<E, Set<String>> changedPrefixes,
+        String key,
+        E extension) {
+        if (!changed.containsKey(key)) {
+            Collection<E> values = manager.getExactValue(key);
+            if (values == null || !values.contains(extension)) {
+                return false;
             }
         }
-        return removed;
+        L list = getChangedList(manager, changed, key);
+        if (!list.remove(extension)) {
+            return false;
+        }
+        if (!list.contains(extension)) {
+            getChangedPrefixes(changedPrefixes, extension).remove(key);
+        }
+        return true;
+    }
+
+    public boolean removeExtension(E extension) {
+        return newBatch().removeExtension(extension).commit();
+    }
+
+    public boolean removeExtension(String type, E extension) {
+        return newBatch().removeExtension(type, extension).commit();
     }
 
 }
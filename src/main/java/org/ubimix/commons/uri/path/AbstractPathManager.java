@@ -0,0 +1,590 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * The common superclass of path managers. Path managers are used to register
+ * path prefixes with their values and to find the nearest registered prefix
+ * for given paths. Subclasses define how prefixes are stored and searched.
+ * 
+ * @author kotelnikov
+ * @see PathManager
+ * @see RadixPathManager
+ */
+public abstract class AbstractPathManager<T> {
+
+    /**
+     * Iterates over registered ancestors of a path from the nearest one to the
+     * root. Each step is a nearest lookup of the parent of the previously
+     * returned prefix, so no strings are created.
+     */
+    private class AncestorIterator implements Iterator<Map.Entry<String, T>> {
+
+        private Map.Entry<String, T> fNext;
+
+        private final String fPath;
+
+        public AncestorIterator(String path) {
+            fPath = path;
+            fNext = getNearestEntry(path, 0, path.length());
+        }
+
+        public boolean hasNext() {
+            return fNext != null;
+        }
+
+        public Map.Entry<String, T> next() {
+            if (fNext == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, T> result = fNext;
+            String prefix = result.getKey();
+            int len = prefix.length();
+            if (len > 1) {
+                char delimiter = getSegmentDelimiter();
+                int end = prefix.lastIndexOf(delimiter, len - 2) + 1;
+                fNext = getNearestEntry(fPath, 0, end);
+            } else {
+                fNext = null;
+            }
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Each slot contains a path prefix and a corresponding real path.
+     */
+    protected static class Slot<T> implements Map.Entry<String, T> {
+        /**
+         * The logical path prefix
+         */
+        public String fPrefix;
+
+        /**
+         * The real path corresponding to the prefix
+         */
+        public T fValue;
+
+        /**
+         * @param prefix
+         * @param value
+         */
+        public Slot(String prefix, T value) {
+            fPrefix = prefix;
+            fValue = value;
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Slot<?>)) {
+                return false;
+            }
+            Slot<?> o = (Slot<?>) obj;
+            return fPrefix.equals(o.fPrefix)
+                && (fValue == null || o.fValue == null
+                    ? fValue == o.fValue
+                    : fValue.equals(o.fValue));
+        }
+
+        /**
+         * @return the path prefix
+         * @see java.util.Map$Entry#getKey()
+         */
+        public String getKey() {
+            return fPrefix;
+        }
+
+        /**
+         * @return the real path corresponding to the prefix
+         * @see java.util.Map$Entry#getValue()
+         */
+        public T getValue() {
+            return fValue;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return fPrefix.hashCode();
+        }
+
+        /**
+         * @param value a new real path to set
+         * @return the old value of the real path
+         * @see java.util.Map$Entry#setValue(java.lang.Object)
+         */
+        public T setValue(T value) {
+            T oldValue = fValue;
+            fValue = value;
+            return oldValue;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return fPrefix + "=" + fValue;
+        }
+    }
+
+    /**
+     * Compares the given prefix with the first <code>len</code> chars of the
+     * canonical form of a path region.
+     * 
+     * @param prefix the prefix to compare
+     * @param path the path
+     * @param contentBegin the begin of the content of the region
+     * @param length the length of the canonical form of the region
+     * @param len the number of chars of the canonical form to compare
+     * @param delimiter the segment delimiter
+     * @return a negative value, zero, or a positive value if the prefix is
+     *         less than, equal to, or greater than the compared chars
+     * @see #getCanonicalChar(CharSequence, int, int, int, char)
+     */
+    protected static int compareCanonical(
+        String prefix,
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int len,
+        char delimiter) {
+        int n = Math.min(prefix.length(), len);
+        for (int i = 0; i < n; i++) {
+            char a = prefix.charAt(i);
+            char b = getCanonicalChar(path, contentBegin, length, i, delimiter);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return prefix.length() - len;
+    }
+
+    /**
+     * Returns a char of the canonical form of the specified path region. The
+     * canonical form of a region consists of the delimiter, the content of the
+     * region without leading and trailing delimiters and the delimiter again.
+     * 
+     * @param path the path
+     * @param contentBegin the begin of the content of the region (see
+     *        {@link #getContentBegin(CharSequence, int, int, char)})
+     * @param length the length of the canonical form (see
+     *        {@link #getCanonicalLength(CharSequence, int, int, char)})
+     * @param pos the position of the char in the canonical form
+     * @param delimiter the segment delimiter
+     * @return the char of the canonical form at the specified position
+     */
+    protected static char getCanonicalChar(
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int pos,
+        char delimiter) {
+        return pos == 0 || pos == length - 1 ? delimiter : path
+            .charAt(contentBegin + pos - 1);
+    }
+
+    /**
+     * Returns the length of the canonical form of the specified path region.
+     * This method gives the same result as
+     * <code>getCanonicalPath(path.subSequence(begin, end).toString()).length()</code>
+     * without creating new strings.
+     * 
+     * @param path the path
+     * @param begin the begin of the region
+     * @param end the end of the region
+     * @param delimiter the segment delimiter
+     * @return the length of the canonical form of the region
+     */
+    protected static int getCanonicalLength(
+        CharSequence path,
+        int begin,
+        int end,
+        char delimiter) {
+        int contentBegin = getContentBegin(path, begin, end, delimiter);
+        int contentEnd = end;
+        if (contentBegin < contentEnd
+            && path.charAt(contentEnd - 1) == delimiter) {
+            contentEnd--;
+        }
+        if (contentBegin == contentEnd && end - begin <= 1) {
+            // The empty path
+            return 1;
+        }
+        return contentEnd - contentBegin + 2;
+    }
+
+    /**
+     * Returns the position of the first char of the specified region after
+     * the leading delimiter (if any).
+     * 
+     * @param path the path
+     * @param begin the begin of the region
+     * @param end the end of the region
+     * @param delimiter the segment delimiter
+     * @return the begin of the content of the region
+     */
+    protected static int getContentBegin(
+        CharSequence path,
+        int begin,
+        int end,
+        char delimiter) {
+        return begin < end && path.charAt(begin) == delimiter
+            ? begin + 1
+            : begin;
+    }
+
+    /**
+     * Returns the smallest string greater than all strings starting with the
+     * given prefix. As prefixes are sorted, entries of the subtree of a prefix
+     * are all entries between the prefix (inclusive) and this limit
+     * (exclusive).
+     * 
+     * @param prefix the canonical form of a prefix
+     * @return the upper limit of the subtree of the prefix
+     */
+    protected static String getSubtreeLimit(String prefix) {
+        int len = prefix.length();
+        char last = prefix.charAt(len - 1);
+        return prefix.substring(0, len - 1) + (char) (last + 1);
+    }
+
+    /**
+     * Creates a new array of entries of the given size.
+     * 
+     * @param size the size of the array
+     * @return a new array of entries
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> Map.Entry<String, T>[] newEntryArray(int size) {
+        return (Map.Entry<String, T>[]) new Map.Entry<?, ?>[size];
+    }
+
+    /**
+     * Creates a new array of slots of the given size.
+     * 
+     * @param size the size of the array
+     * @return a new array of slots
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> Slot<T>[] newSlotArray(int size) {
+        return (Slot<T>[]) new Slot<?>[size];
+    }
+
+    /**
+     * Adds a new path with the corresponding logical prefix. If the prefix is
+     * already registered then its value is not changed.
+     * 
+     * @param prefix the path prefix to register
+     * @param value the real path corresponding to the specified prefix
+     * @return the canonical form of the added path
+     */
+    public abstract String add(String prefix, T value);
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof AbstractPathManager<?>)) {
+            return false;
+        }
+        AbstractPathManager<?> o = (AbstractPathManager<?>) obj;
+        return Arrays.equals(getAllEntries(), o.getAllEntries());
+    }
+
+    /**
+     * Returns <code>true</code> if the given path is regestered.
+     * 
+     * @param path the path to check
+     * @return <code>true</code> if the given path is regestered
+     */
+    public boolean exists(String path) {
+        return getExactEntry(path) != null;
+    }
+
+    /**
+     * Returns an array of all path entries registered in this manager. Each key
+     * in the returend entries is a path prefix and the corresponding values are
+     * the real pathes. Entries are sorted by their prefixes.
+     * 
+     * @return an array of all paths entries registered in this manager
+     */
+    public abstract Map.Entry<String, T>[] getAllEntries();
+
+    /**
+     * Returns an array of all paths registered in this manager.
+     * 
+     * @return an array of all paths registered in this manager
+     */
+    public String[] getAllPrefixes() {
+        Map.Entry<String, T>[] entries = getAllEntries();
+        String[] array = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            array[i] = entries[i].getKey();
+        }
+        return array;
+    }
+
+    /**
+     * Returns entries of all registered prefixes of the given path, from the
+     * nearest one (the entry returned by {@link #getNearestEntry(String)}) to
+     * the root. Entries are searched lazily while iterating; the manager should
+     * not be changed while the returned iterator is used.
+     * 
+     * @param path the path
+     * @return an iterator over entries of all registered ancestors of the path
+     */
+    public Iterator<Map.Entry<String, T>> getAncestorEntries(String path) {
+        return new AncestorIterator(getCanonicalPath(path));
+    }
+
+    /**
+     * Returns the canonical form of the given path. This method can be
+     * overloaded in subclasses.
+     * 
+     * @param path for this path a "canonical" form will be returned
+     * @return the canonical form of the given path
+     */
+    public String getCanonicalPath(String path) {
+        Character delimiter = getSegmentDelimiter();
+        if (path == null) {
+            return getEmptyPath();
+        }
+        if (!path.startsWith(String.valueOf(delimiter))) {
+            path = delimiter + path;
+        }
+        if (!path.endsWith(String.valueOf(delimiter))) {
+            path += delimiter;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the delimiter of path segments used by this manager.
+     * 
+     * @return the segment delimiter
+     */
+    public char getDelimiter() {
+        return getSegmentDelimiter();
+    }
+
+    /**
+     * Returns the empty path. This method can be overloaded in subclasses.
+     * 
+     * @return the empty path
+     */
+    protected String getEmptyPath() {
+        return "" + getSegmentDelimiter();
+    }
+
+    /**
+     * Returns an entry registered exactly for the specified region of the
+     * given path. Subclasses can override this method to search entries
+     * without creating new strings.
+     * 
+     * @param path the path
+     * @param begin the begin of the path region
+     * @param end the end of the path region
+     * @return the entry registered for the path or <code>null</code>
+     */
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return getExactEntry(path.subSequence(begin, end).toString());
+    }
+
+    /**
+     * Returns an entry corresponding to the specified path. The key in the
+     * returned entry is a path prefix and the corresponding value is a
+     * corresponding value.
+     * 
+     * @param path an entry corresponding to this path will be returned
+     * @return a registered path entry nearest to the given path
+     */
+    public abstract Map.Entry<String, T> getExactEntry(String path);
+
+    /**
+     * Returns a value corresponding to the specified path.
+     * 
+     * @param path a path of the value to return
+     * @return a value corresponding to the specified path.
+     */
+    public T getExactValue(String path) {
+        Entry<String, T> entry = getExactEntry(path);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Returns a registered path entry nearest to the specified region of the
+     * given path. Regions are interpreted as they were transformed by the
+     * default {@link #getCanonicalPath(String)} method. Subclasses can override
+     * this method to search entries without creating new strings.
+     * 
+     * @param path the path
+     * @param begin the begin of the path region
+     * @param end the end of the path region
+     * @return a registered path entry nearest to the given path
+     */
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return getNearestEntry(path.subSequence(begin, end).toString());
+    }
+
+    /**
+     * Returns a registered path entry nearest to the given path. The key in the
+     * returend entry is a path prefix and the corresponding value is the real
+     * registered path.
+     * 
+     * @param path for this string a nearest registered entry will be returned
+     * @return a registered path entry nearest to the given path
+     */
+    public abstract Map.Entry<String, T> getNearestEntry(String path);
+
+    /**
+     * Returns a registered path prefix nearest to the given path.
+     * 
+     * @param path for this string a nearest registered prefix will be returned
+     * @return a registered path prefix nearest to the given path.
+     */
+    public String getNearestPath(String path) {
+        Map.Entry<String, T> result = getNearestEntry(path);
+        return result != null ? result.getKey() : getEmptyPath();
+    }
+
+    /**
+     * Returns the value of the registered path entry nearest to the specified
+     * region of the given path.
+     * 
+     * @param path the path
+     * @param begin the begin of the path region
+     * @param end the end of the path region
+     * @return the value of the nearest entry or <code>null</code>
+     */
+    public T getNearestValue(CharSequence path, int begin, int end) {
+        Entry<String, T> entry = getNearestEntry(path, begin, end);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    public T getNearestValue(String prefix) {
+        Entry<String, T> entry = getNearestEntry(prefix);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Returns a path segment delimiter. This method can be overloaded in
+     * subclasses.
+     * 
+     * @return a segment delimiter
+     */
+    protected Character getSegmentDelimiter() {
+        return '/';
+    }
+
+    /**
+     * Returns entries of the given prefix and of all registered prefixes
+     * starting with it, sorted by their prefixes. The manager should not be
+     * changed while the returned iterator is used. This implementation filters
+     * all entries; subclasses override it to visit only entries of the
+     * subtree.
+     * 
+     * @param prefix the prefix of the subtree
+     * @return an iterator over entries of the subtree of the prefix
+     */
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        List<Map.Entry<String, T>> result = new ArrayList<Map.Entry<String, T>>();
+        for (Map.Entry<String, T> entry : getAllEntries()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.add(entry);
+            }
+        }
+        return result.iterator();
+    }
+
+    /**
+     * Returns the number of entries returned by
+     * {@link #getSubtreeEntries(String)} for the same prefix.
+     * 
+     * @param prefix the prefix of the subtree
+     * @return the number of entries in the subtree of the prefix
+     */
+    public int getSubtreeSize(String prefix) {
+        int result = 0;
+        Iterator<Map.Entry<String, T>> iterator = getSubtreeEntries(prefix);
+        while (iterator.hasNext()) {
+            iterator.next();
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getAllEntries());
+    }
+
+    /**
+     * Removes the given path from the internal registry and returns the
+     * removed entry. If the path does not exist in the registry then this
+     * method returns <code>null</code>.
+     * 
+     * @param path for this path prefix the corresponding real path will be
+     *        removed
+     * @return the removed entry
+     */
+    public abstract Map.Entry<String, T> remove(String path);
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(getAllEntries());
+    }
+
+}
@@ -0,0 +1,401 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A path manager caching results of nearest lookups of another manager. The
+ * cache maps paths exactly as they are given to their nearest entries, so
+ * repeated lookups of the same paths do not canonicalize and search them
+ * again.
+ * <p>
+ * Cached results are stamped with the generation of the manager. Each
+ * modification made through this object increments the generation, so all
+ * cached results become invalid at once without clearing the cache; invalid
+ * results are replaced when their paths are requested again. If the wrapped
+ * manager is changed directly then the {@link #invalidate()} method should be
+ * called.
+ * </p>
+ * <p>
+ * The cache is bounded; it is split into independent segments, each guarded
+ * by its own lock and keeping entries in the LRU order. Lookups can be
+ * performed by several threads at once. Modifications should be synchronized
+ * with lookups in the same way as for the wrapped manager.
+ * </p>
+ * 
+ * <pre>
+ * CachingPathManager&lt;String&gt; manager = new CachingPathManager&lt;String&gt;(
+ *     new PathManager&lt;String&gt;(),
+ *     1000);
+ * ...
+ * String value = manager.getNearestValue(path);
+ * double ratio = manager.getHitRatio();
+ * </pre>
+ * 
+ * @author kotelnikov
+ */
+public class CachingPathManager<T> extends AbstractPathManager<T> {
+
+    /**
+     * The result of a lookup made in a specific generation of the manager.
+     */
+    private static class Lookup<T> {
+
+        private final Map.Entry<String, T> fEntry;
+
+        private final int fGeneration;
+
+        public Lookup(int generation, Map.Entry<String, T> entry) {
+            fGeneration = generation;
+            fEntry = entry;
+        }
+
+    }
+
+    /**
+     * An independent part of the cache. All fields of this class should be
+     * accessed under the lock of the segment.
+     */
+    private static class Segment<T> {
+
+        long fEvictionCount;
+
+        long fHitCount;
+
+        private final Map<String, Lookup<T>> fMap;
+
+        long fMissCount;
+
+        public Segment(final int maxSize) {
+            fMap = new LinkedHashMap<String, Lookup<T>>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                    Map.Entry<String, Lookup<T>> eldest) {
+                    boolean result = size() > maxSize;
+                    if (result) {
+                        fEvictionCount++;
+                    }
+                    return result;
+                }
+            };
+        }
+
+    }
+
+    /**
+     * The default maximal number of cached lookups.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024;
+
+    /**
+     * The number of independent segments; it should be a power of two.
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    private static int spread(int h) {
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 15);
+    }
+
+    private volatile int fGeneration;
+
+    private final AbstractPathManager<T> fManager;
+
+    private final Segment<T>[] fSegments;
+
+    /**
+     * Creates a new cache of the default size.
+     * 
+     * @param manager the manager to wrap
+     */
+    public CachingPathManager(AbstractPathManager<T> manager) {
+        this(manager, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param manager the manager to wrap
+     * @param maxSize the maximal number of cached lookups
+     */
+    @SuppressWarnings("unchecked")
+    public CachingPathManager(AbstractPathManager<T> manager, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(
+                "The maximal size should be a positive number");
+        }
+        fManager = manager;
+        int count = SEGMENT_COUNT;
+        while (count > 1 && maxSize / count < 16) {
+            count >>= 1;
+        }
+        fSegments = (Segment<T>[]) new Segment<?>[count];
+        int segmentSize = Math.max(1, maxSize / count);
+        for (int i = 0; i < count; i++) {
+            fSegments[i] = new Segment<T>(segmentSize);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#add(java.lang.String,
+     *      java.lang.Object)
+     */
+    @Override
+    public String add(String prefix, T value) {
+        try {
+            return fManager.add(prefix, value);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getAllEntries()
+     */
+    @Override
+    public Map.Entry<String, T>[] getAllEntries() {
+        return fManager.getAllEntries();
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getAncestorEntries(java.lang.String)
+     */
+    @Override
+    public Iterator<Map.Entry<String, T>> getAncestorEntries(String path) {
+        return fManager.getAncestorEntries(path);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getCanonicalPath(java.lang.String)
+     */
+    @Override
+    public String getCanonicalPath(String path) {
+        return fManager.getCanonicalPath(path);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getEmptyPath()
+     */
+    @Override
+    protected String getEmptyPath() {
+        return fManager.getEmptyPath();
+    }
+
+    /**
+     * Returns the number of cached lookups removed to free place for new
+     * ones.
+     * 
+     * @return the number of evicted lookups
+     */
+    public long getEvictionCount() {
+        long result = 0;
+        for (Segment<T> segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fEvictionCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return fManager.getExactEntry(path, begin, end);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(String path) {
+        return fManager.getExactEntry(path);
+    }
+
+    /**
+     * Returns the current generation of this manager. It is changed by each
+     * modification.
+     * 
+     * @return the current generation
+     */
+    public int getGeneration() {
+        return fGeneration;
+    }
+
+    /**
+     * Returns the number of lookups returning cached results.
+     * 
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        long result = 0;
+        for (Segment<T> segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fHitCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ratio of lookups returning cached results.
+     * 
+     * @return the ratio of cache hits to all lookups or <code>0</code> if
+     *         there were no lookups
+     */
+    public double getHitRatio() {
+        long hits = 0;
+        long misses = 0;
+        for (Segment<T> segment : fSegments) {
+            synchronized (segment) {
+                hits += segment.fHitCount;
+                misses += segment.fMissCount;
+            }
+        }
+        long total = hits + misses;
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * Returns the wrapped manager.
+     * 
+     * @return the wrapped manager
+     */
+    public AbstractPathManager<T> getManager() {
+        return fManager;
+    }
+
+    /**
+     * Returns the number of lookups which were not found in the cache or
+     * which found results of previous generations.
+     * 
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        long result = 0;
+        for (Segment<T> segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fMissCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lookups of path regions are not cached: they do not create new strings
+     * and are delegated to the wrapped manager.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return fManager.getNearestEntry(path, begin, end);
+    }
+
+    /**
+     * Returns the cached nearest entry of the given path. If there is no
+     * result for the current generation then the wrapped manager is used and
+     * its result is cached.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(String path) {
+        if (path == null) {
+            return fManager.getNearestEntry(path);
+        }
+        // The generation is read before the lookup, so a result found while
+        // the manager is changed is never used after this change
+        int generation = fGeneration;
+        int hash = spread(path.hashCode());
+        Segment<T> segment = getSegment(hash);
+        synchronized (segment) {
+            Lookup<T> lookup = segment.fMap.get(path);
+            if (lookup != null && lookup.fGeneration == generation) {
+                segment.fHitCount++;
+                return lookup.fEntry;
+            }
+            segment.fMissCount++;
+        }
+        Map.Entry<String, T> result = fManager.getNearestEntry(path);
+        synchronized (segment) {
+            segment.fMap.put(path, new Lookup<T>(generation, result));
+        }
+        return result;
+    }
+
+    private Segment<T> getSegment(int hash) {
+        return fSegments[(hash >>> 16) & (fSegments.length - 1)];
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSegmentDelimiter()
+     */
+    @Override
+    protected Character getSegmentDelimiter() {
+        return fManager.getSegmentDelimiter();
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeEntries(java.lang.String)
+     */
+    @Override
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        return fManager.getSubtreeEntries(prefix);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeSize(java.lang.String)
+     */
+    @Override
+    public int getSubtreeSize(String prefix) {
+        return fManager.getSubtreeSize(prefix);
+    }
+
+    /**
+     * Makes all cached lookups invalid. This method should be called when the
+     * wrapped manager is changed directly.
+     */
+    public synchronized void invalidate() {
+        fGeneration++;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#remove(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> remove(String path) {
+        try {
+            return fManager.remove(path);
+        } finally {
+            invalidate();
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A thread-safe path manager for registries changed by many threads at once.
+ * Prefixes are kept in a {@link ConcurrentSkipListMap}, so lookups never
+ * block and modifications of different prefixes do not block each other.
+ * <p>
+ * Each operation on one prefix ({@link #add(String, Object)},
+ * {@link #remove(String)}, {@link #getExactEntry(String)}) is atomic. The
+ * nearest entry of a path is found with floor lookups in the sorted map: the
+ * greatest prefix not greater than the path is either its nearest ancestor or
+ * shows which ancestors could be registered, so only a few lookups are made
+ * whatever the depth of the path. Each lookup sees the latest state of the
+ * map.
+ * Iterators returned by {@link #getSubtreeEntries(String)} are weakly
+ * consistent: they never fail, and they may or may not reflect modifications
+ * made while iterating.
+ * </p>
+ * <p>
+ * This class is not available in GWT.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ConcurrentPathManager<T> extends AbstractPathManager<T> {
+
+    private final ConcurrentNavigableMap<String, Slot<T>> fMap = new ConcurrentSkipListMap<String, Slot<T>>();
+
+    /**
+     * Adds a new prefix if it is not registered yet. Just like for the
+     * {@link PathManager}, the value of an already registered prefix is not
+     * changed.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#add(java.lang.String,
+     *      java.lang.Object)
+     */
+    @Override
+    public String add(String prefix, T value) {
+        prefix = getCanonicalPath(prefix);
+        fMap.putIfAbsent(prefix, new Slot<T>(prefix, value));
+        return prefix;
+    }
+
+    /**
+     * Returns the nearest registered ancestor of the given canonical path.
+     */
+    private Slot<T> findNearest(String path) {
+        char delimiter = getSegmentDelimiter();
+        String key = path;
+        while (true) {
+            Map.Entry<String, Slot<T>> entry = fMap.floorEntry(key);
+            if (entry == null) {
+                return null;
+            }
+            String prefix = entry.getKey();
+            if (path.startsWith(prefix)) {
+                return entry.getValue();
+            }
+            // Registered ancestors are not greater than the found prefix, so
+            // they are not longer than the common part of the prefix and the
+            // path
+            int len = Math.min(prefix.length(), key.length());
+            int common = 0;
+            while (common < len
+                && prefix.charAt(common) == key.charAt(common)) {
+                common++;
+            }
+            int end = path.lastIndexOf(delimiter, common - 1) + 1;
+            if (end <= 0) {
+                return null;
+            }
+            key = path.substring(0, end);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getAllEntries()
+     */
+    @Override
+    public Map.Entry<String, T>[] getAllEntries() {
+        Map.Entry<String, T>[] result = newEntryArray(0);
+        return fMap.values().toArray(result);
+    }
+
+    /**
+     * Returns the canonical form of the specified region of the path. It is
+     * built directly from the region without intermediate strings.
+     */
+    private String getCanonicalPath(CharSequence path, int begin, int end) {
+        char delimiter = getSegmentDelimiter();
+        int contentBegin = getContentBegin(path, begin, end, delimiter);
+        int length = getCanonicalLength(path, begin, end, delimiter);
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buf.append(getCanonicalChar(
+                path,
+                contentBegin,
+                length,
+                i,
+                delimiter));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return fMap.get(getCanonicalPath(path, begin, end));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(String path) {
+        return fMap.get(getCanonicalPath(path));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return findNearest(getCanonicalPath(path, begin, end));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(String path) {
+        return findNearest(getCanonicalPath(path));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeEntries(java.lang.String)
+     */
+    @Override
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return Collections.<Map.Entry<String, T>> unmodifiableCollection(
+            getSubtree(prefix).values()).iterator();
+    }
+
+    /**
+     * Returns the number of entries in the subtree of the given prefix. This
+     * method visits all entries of the subtree.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeSize(java.lang.String)
+     */
+    @Override
+    public int getSubtreeSize(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return getSubtree(prefix).size();
+    }
+
+    private ConcurrentNavigableMap<String, Slot<T>> getSubtree(String prefix) {
+        return fMap.subMap(prefix, true, getSubtreeLimit(prefix), false);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#remove(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> remove(String path) {
+        return fMap.remove(getCanonicalPath(path));
+    }
+
+    /**
+     * Returns the number of prefixes registered in this manager.
+     * 
+     * @return the number of registered prefixes
+     */
+    public int size() {
+        return fMap.size();
+    }
+
+}
@@ -0,0 +1,462 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable path manager optimized for lookups. Entries are kept in a
+ * sorted array; for each entry the position of its nearest registered
+ * ancestor is stored as well. So the nearest prefix of a path is found with
+ * one binary search followed by a walk over the ancestors of the found entry.
+ * <p>
+ * Instances of this class are created by a {@link Builder} which accepts
+ * entries in any order and sorts them only once. A modified copy of a manager
+ * is created with the {@link #derive(Map, Collection)} method which merges
+ * changes with the existing sorted entries without sorting them again.
+ * Instances of this class are immutable and can be shared between threads
+ * without synchronization.
+ * </p>
+ * 
+ * <pre>
+ * ImmutablePathManager.Builder&lt;String&gt; builder = new ImmutablePathManager.Builder&lt;String&gt;();
+ * builder.add(&quot;/a/b/&quot;, &quot;x&quot;);
+ * builder.add(&quot;/a/&quot;, &quot;y&quot;);
+ * ImmutablePathManager&lt;String&gt; manager = builder.build();
+ * </pre>
+ * 
+ * @author kotelnikov
+ */
+public class ImmutablePathManager<T> extends AbstractPathManager<T> {
+
+    /**
+     * Collects entries for a new {@link ImmutablePathManager}. Just like with
+     * {@link PathManager#add(String, Object)}, if the same prefix is added
+     * several times then only the first value is kept.
+     */
+    public static class Builder<T> {
+
+        private final char fDelimiter;
+
+        private final List<Slot<T>> fEntries = new ArrayList<Slot<T>>();
+
+        private final ImmutablePathManager<T> fManager;
+
+        /**
+         * Creates a new builder using the '/' delimiter.
+         */
+        public Builder() {
+            this('/');
+        }
+
+        /**
+         * @param delimiter the segment delimiter
+         */
+        public Builder(char delimiter) {
+            fDelimiter = delimiter;
+            fManager = new ImmutablePathManager<T>(delimiter);
+        }
+
+        /**
+         * Adds a new entry.
+         * 
+         * @param prefix the path prefix
+         * @param value the value of the prefix
+         * @return this builder
+         */
+        public Builder<T> add(String prefix, T value) {
+            prefix = fManager.getCanonicalPath(prefix);
+            fEntries.add(new ImmutableSlot<T>(prefix, value));
+            return this;
+        }
+
+        /**
+         * Adds all entries from the given map.
+         * 
+         * @param entries the entries to add
+         * @return this builder
+         */
+        public Builder<T> addAll(Map<String, ? extends T> entries) {
+            for (Map.Entry<String, ? extends T> entry : entries.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Creates a new manager with all added entries.
+         * 
+         * @return a new manager
+         */
+        public ImmutablePathManager<T> build() {
+            Slot<T>[] array = fEntries.toArray(ImmutablePathManager
+                .<T> newSlotArray(fEntries.size()));
+            // The sort is stable, so the first of equal prefixes is kept
+            Arrays.sort(array, SLOT_COMPARATOR);
+            int count = 0;
+            for (int i = 0; i < array.length; i++) {
+                if (count == 0
+                    || !array[count - 1].fPrefix.equals(array[i].fPrefix)) {
+                    array[count++] = array[i];
+                }
+            }
+            Slot<T>[] entries = newSlotArray(count);
+            System.arraycopy(array, 0, entries, 0, count);
+            return new ImmutablePathManager<T>(fDelimiter, entries);
+        }
+
+    }
+
+    /**
+     * Entries of immutable managers can not be changed.
+     */
+    private static class ImmutableSlot<T> extends Slot<T> {
+
+        public ImmutableSlot(String prefix, T value) {
+            super(prefix, value);
+        }
+
+        @Override
+        public T setValue(T value) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static final Comparator<Slot<?>> SLOT_COMPARATOR = new Comparator<Slot<?>>() {
+        public int compare(Slot<?> o1, Slot<?> o2) {
+            return o1.fPrefix.compareTo(o2.fPrefix);
+        }
+    };
+
+    private static boolean startsWith(
+        String prefix,
+        CharSequence path,
+        int contentBegin,
+        int length,
+        char delimiter) {
+        int len = prefix.length();
+        return len <= length
+            && compareCanonical(
+                prefix,
+                path,
+                contentBegin,
+                length,
+                len,
+                delimiter) == 0;
+    }
+
+    private final char fDelimiter;
+
+    private final Slot<T>[] fEntries;
+
+    /**
+     * Positions of the nearest registered ancestors of entries or
+     * <code>-1</code> for entries without ancestors.
+     */
+    private final int[] fParents;
+
+    private ImmutablePathManager(char delimiter) {
+        this(delimiter, ImmutablePathManager.<T> newSlotArray(0));
+    }
+
+    private ImmutablePathManager(char delimiter, Slot<T>[] entries) {
+        fDelimiter = delimiter;
+        fEntries = entries;
+        fParents = new int[entries.length];
+        // The stack of ancestors of the current entry
+        int[] stack = new int[16];
+        int top = -1;
+        for (int i = 0; i < entries.length; i++) {
+            String prefix = entries[i].fPrefix;
+            while (top >= 0 && !prefix.startsWith(entries[stack[top]].fPrefix)) {
+                top--;
+            }
+            fParents[i] = top >= 0 ? stack[top] : -1;
+            if (++top == stack.length) {
+                int[] newStack = new int[stack.length * 2];
+                System.arraycopy(stack, 0, newStack, 0, stack.length);
+                stack = newStack;
+            }
+            stack[top] = i;
+        }
+    }
+
+    /**
+     * This method is not supported; use the {@link Builder} or the
+     * {@link #derive(Map, Collection)} method instead.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#add(java.lang.String,
+     *      java.lang.Object)
+     */
+    @Override
+    public String add(String prefix, T value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a new manager containing entries of this manager with the
+     * specified changes. Removals are applied first; added entries replace
+     * existing entries with the same prefixes. This method does not sort
+     * existing entries again, so it is much cheaper than building a new
+     * manager when there are only a few changes.
+     * 
+     * @param additions new entries; it can be <code>null</code>
+     * @param removals prefixes to remove; it can be <code>null</code>
+     * @return a new manager with all changes
+     */
+    public ImmutablePathManager<T> derive(
+        Map<String, ? extends T> additions,
+        Collection<String> removals) {
+        // Sorted changes; null values mark removed prefixes
+        TreeMap<String, Slot<T>> changes = new TreeMap<String, Slot<T>>();
+        if (removals != null) {
+            for (String prefix : removals) {
+                changes.put(getCanonicalPath(prefix), null);
+            }
+        }
+        if (additions != null) {
+            for (Map.Entry<String, ? extends T> entry : additions.entrySet()) {
+                String prefix = getCanonicalPath(entry.getKey());
+                changes.put(prefix, new ImmutableSlot<T>(prefix, entry
+                    .getValue()));
+            }
+        }
+        List<Slot<T>> result = new ArrayList<Slot<T>>(fEntries.length
+            + changes.size());
+        int i = 0;
+        for (Map.Entry<String, Slot<T>> change : changes.entrySet()) {
+            String prefix = change.getKey();
+            while (i < fEntries.length
+                && fEntries[i].fPrefix.compareTo(prefix) < 0) {
+                result.add(fEntries[i++]);
+            }
+            if (i < fEntries.length && fEntries[i].fPrefix.equals(prefix)) {
+                i++;
+            }
+            if (change.getValue() != null) {
+                result.add(change.getValue());
+            }
+        }
+        while (i < fEntries.length) {
+            result.add(fEntries[i++]);
+        }
+        return new ImmutablePathManager<T>(fDelimiter, result
+            .toArray(ImmutablePathManager.<T> newSlotArray(result.size())));
+    }
+
+    /**
+     * Returns the position of the entry with the first <code>len</code> chars
+     * of the canonical form of the path.
+     * 
+     * @return the position of the entry or
+     *         <code>-(insertion point + 1)</code>
+     */
+    private int find(
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int len,
+        char delimiter) {
+        int a = 0;
+        int b = fEntries.length - 1;
+        while (a <= b) {
+            int x = (a + b) >>> 1;
+            int result = compareCanonical(
+                fEntries[x].fPrefix,
+                path,
+                contentBegin,
+                length,
+                len,
+                delimiter);
+            if (result < 0) {
+                a = x + 1;
+            } else if (result > 0) {
+                b = x - 1;
+            } else {
+                return x;
+            }
+        }
+        return -(a + 1);
+    }
+
+    private Slot<T> findNearest(CharSequence path, int contentBegin, int length) {
+        int pos = find(path, contentBegin, length, length, fDelimiter);
+        if (pos >= 0) {
+            return fEntries[pos];
+        }
+        // The nearest prefix is the greatest entry less than the path or one
+        // of its ancestors
+        pos = -(pos + 1) - 1;
+        while (pos >= 0) {
+            Slot<T> entry = fEntries[pos];
+            if (startsWith(
+                entry.fPrefix,
+                path,
+                contentBegin,
+                length,
+                fDelimiter)) {
+                return entry;
+            }
+            pos = fParents[pos];
+        }
+        return null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getAllEntries()
+     */
+    @Override
+    public Map.Entry<String, T>[] getAllEntries() {
+        return fEntries.clone();
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        int length = getCanonicalLength(path, begin, end, fDelimiter);
+        int pos = find(
+            path,
+            getContentBegin(path, begin, end, fDelimiter),
+            length,
+            length,
+            fDelimiter);
+        return pos >= 0 ? fEntries[pos] : null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(String path) {
+        path = getCanonicalPath(path);
+        int pos = find(path, 1, path.length(), path.length(), fDelimiter);
+        return pos >= 0 ? fEntries[pos] : null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        return findNearest(
+            path,
+            getContentBegin(path, begin, end, fDelimiter),
+            getCanonicalLength(path, begin, end, fDelimiter));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(String path) {
+        path = getCanonicalPath(path);
+        return findNearest(path, 1, path.length());
+    }
+
+    /**
+     * Returns the position of the given string in the array of entries or the
+     * position where it should be inserted.
+     */
+    private int getInsertionPoint(String path) {
+        int pos = Arrays.binarySearch(
+            fEntries,
+            new Slot<T>(path, null),
+            SLOT_COMPARATOR);
+        return pos >= 0 ? pos : -(pos + 1);
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSegmentDelimiter()
+     */
+    @Override
+    protected Character getSegmentDelimiter() {
+        return fDelimiter;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeEntries(java.lang.String)
+     */
+    @Override
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        int begin = getInsertionPoint(prefix);
+        int end = getInsertionPoint(getSubtreeLimit(prefix));
+        return Collections.<Map.Entry<String, T>> unmodifiableList(
+            Arrays.asList(fEntries).subList(begin, end)).iterator();
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeSize(java.lang.String)
+     */
+    @Override
+    public int getSubtreeSize(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return getInsertionPoint(getSubtreeLimit(prefix))
+            - getInsertionPoint(prefix);
+    }
+
+    /**
+     * This method is not supported; use the {@link #derive(Map, Collection)}
+     * method instead.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#remove(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> remove(String path) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the number of entries in this manager.
+     * 
+     * @return the number of entries
+     */
+    public int size() {
+        return fEntries.length;
+    }
+
+    /**
+     * Returns a new builder containing all entries of this manager.
+     * 
+     * @return a new builder initialized with entries of this manager
+     */
+    public Builder<T> toBuilder() {
+        Builder<T> builder = new Builder<T>(fDelimiter);
+        Collections.addAll(builder.fEntries, fEntries);
+        return builder;
+    }
+
+}
@@ -17,9 +17,10 @@
 package org.ubimix.commons.uri.path;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * This class is used to register and calculates nearest common prefixes for
@@ -27,91 +28,7 @@ import java.util.Map.Entry;
  * 
  * @author kotelnikov
  */
-public class PathManager<T> {
-    /**
-     * Each slot contains a path prefix and a corresponding real path.
-     */
-    private static class Slot<T> implements Map.Entry<String, T> {
-        /**
-         * The logical path prefix
-         */
-        public String fPrefix;
-
-        /**
-         * The real path corresponding to the prefix
-         */
-        public T fValue;
-
-        /**
-         * @param prefix
-         * @param value
-         */
-        public Slot(String prefix, T value) {
-            fPrefix = prefix;
-            fValue = value;
-        }
-
-        /**
-         * @see java.lang.Object#equals(java.lang.Object)
-         */
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-            if (!(obj instanceof Slot<?>)) {
-                return false;
-            }
-            Slot<?> o = (Slot<?>) obj;
-            return fPrefix.equals(o.fPrefix)
-                && (fValue == null || o.fValue == null
-                    ? fValue == o.fValue
-                    : fValue.equals(o.fValue));
-        }
-
-        /**
-         * @return the path prefix
-         * @see java.util.Map$Entry#getKey()
-         */
-        public String getKey() {
-            return fPrefix;
-        }
-
-        /**
-         * @return the real path corresponding to the prefix
-         * @see java.util.Map$Entry#getValue()
-         */
-        public T getValue() {
-            return fValue;
-        }
-
-        /**
-         * @see java.lang.Object#hashCode()
-         */
-        @Override
-        public int hashCode() {
-            return fPrefix.hashCode();
-        }
-
-        /**
-         * @param value a new real path to set
-         * @return the old value of the real path
-         * @see java.util.Map$Entry#setValue(java.lang.Object)
-         */
-        public T setValue(T value) {
-            T oldValue = fValue;
-            fValue = value;
-            return oldValue;
-        }
-
-        /**
-         * @see java.lang.Object#toString()
-         */
-        @Override
-        public String toString() {
-            return fPrefix + "=" + fValue;
-        }
-    }
+public class PathManager<T> extends AbstractPathManager<T> {
 
     protected List<Slot<T>> fList = new ArrayList<Slot<T>>();
 
@@ -133,21 +50,6 @@ public class PathManager<T> {
         return prefix;
     }
 
-    /**
-     * @see java.lang.Object#equals(java.lang.Object)
-     */
-    @Override
-    public boolean equals(Object obj) {
-        if (obj == this) {
-            return true;
-        }
-        if (!(obj instanceof PathManager<?>)) {
-            return false;
-        }
-        PathManager<?> o = (PathManager<?>) obj;
-        return fList.equals(o.fList);
-    }
-
     /**
      * Returns <code>true</code> if the given path is regestered.
      * 
@@ -160,6 +62,41 @@ public class PathManager<T> {
         return pos >= 0;
     }
 
+    /**
+     * Searches the first <code>len</code> chars of the canonical form of a
+     * path region without creating new strings.
+     * 
+     * @return the position of the slot or <code>-(insertion point + 1)</code>
+     */
+    private int find(
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int len,
+        char delimiter) {
+        int a = 0;
+        int b = fList.size() - 1;
+        while (a <= b) {
+            int x = (a + b) >>> 1;
+            Slot<T> midVal = fList.get(x);
+            int comparisionResult = compareCanonical(
+                midVal.fPrefix,
+                path,
+                contentBegin,
+                length,
+                len,
+                delimiter);
+            if (comparisionResult < 0) {
+                a = x + 1;
+            } else if (comparisionResult > 0) {
+                b = x - 1;
+            } else {
+                return x;
+            }
+        }
+        return -(a + 1);
+    }
+
     /**
      * @param path the path to search
      * @return the nearest position of the given path in the list of slots
@@ -189,53 +126,25 @@ public class PathManager<T> {
      * 
      * @return an array of all paths entries registered in this manager
      */
-    @SuppressWarnings("unchecked")
     public Map.Entry<String, T>[] getAllEntries() {
-        return fList.toArray(new Map.Entry[fList.size()]);
+        return fList.toArray(AbstractPathManager.<T> newEntryArray(fList
+            .size()));
     }
 
     /**
-     * Returns an array of all paths registered in this manager.
-     * 
-     * @return an array of all paths registered in this manager
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.CharSequence,
+     *      int, int)
      */
-    public String[] getAllPrefixes() {
-        String[] array = new String[fList.size()];
-        int i = 0;
-        for (Slot<T> s : fList) {
-            array[i++] = s.fPrefix;
-        }
-        return array;
-    }
-
-    /**
-     * Returns the canonical form of the given path. This method can be
-     * overloaded in subclasses.
-     * 
-     * @param path for this path a "canonical" form will be returned
-     * @return the canonical form of the given path
-     */
-    public String getCanonicalPath(String path) {
-        Character delimiter = getSegmentDelimiter();
-        if (path == null) {
-            return getEmptyPath();
-        }
-        if (!path.startsWith(String.valueOf(delimiter))) {
-            path = delimiter + path;
-        }
-        if (!path.endsWith(String.valueOf(delimiter))) {
-            path += delimiter;
-        }
-        return path;
-    }
-
-    /**
-     * Returns the empty path. This method can be overloaded in subclasses.
-     * 
-     * @return the empty path
-     */
-    protected String getEmptyPath() {
-        return "" + getSegmentDelimiter();
+    @Override
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        char delimiter = getSegmentDelimiter();
+        int contentBegin = getContentBegin(path, begin, end, delimiter);
+        int length = getCanonicalLength(path, begin, end, delimiter);
+        int pos = find(path, contentBegin, length, length, delimiter);
+        return pos >= 0 ? fList.get(pos) : null;
     }
 
     /**
@@ -256,14 +165,46 @@ public class PathManager<T> {
     }
 
     /**
-     * Returns a value corresponding to the specified path.
+     * Returns the position of the given path in the list of slots or the
+     * position where it should be inserted.
+     */
+    private int getInsertionPoint(String path) {
+        int pos = find(path);
+        return pos >= 0 ? pos : -(pos + 1);
+    }
+
+    /**
+     * Returns a registered path entry nearest to the specified region of the
+     * given path. Ancestors of the path are searched from the longest to the
+     * shortest one; they are compared with registered prefixes in place,
+     * without creating new strings.
      * 
-     * @param path a path of the value to return
-     * @return a value corresponding to the specified path.
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.CharSequence,
+     *      int, int)
      */
-    public T getExactValue(String path) {
-        Entry<String, T> entry = getExactEntry(path);
-        return entry != null ? entry.getValue() : null;
+    @Override
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        char delimiter = getSegmentDelimiter();
+        int contentBegin = getContentBegin(path, begin, end, delimiter);
+        int length = getCanonicalLength(path, begin, end, delimiter);
+        for (int len = length; len > 0; len--) {
+            char ch = getCanonicalChar(
+                path,
+                contentBegin,
+                length,
+                len - 1,
+                delimiter);
+            if (ch == delimiter) {
+                int pos = find(path, contentBegin, length, len, delimiter);
+                if (pos >= 0) {
+                    return fList.get(pos);
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -300,37 +241,29 @@ public class PathManager<T> {
     }
 
     /**
-     * Returns a registered path prefix nearest to the given path.
+     * Returns entries of the subtree of the given prefix. Entries of the
+     * subtree are stored together in the sorted list of slots, so the range is
+     * found with two binary searches and entries are not copied.
      * 
-     * @param path for this string a nearest registered prefix will be returned
-     * @return a registered path prefix nearest to the given path.
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeEntries(java.lang.String)
      */
-    public String getNearestPath(String path) {
-        Map.Entry<String, T> result = getNearestEntry(path);
-        return result != null ? result.getKey() : getEmptyPath();
-    }
-
-    public T getNearestValue(String prefix) {
-        Entry<String, T> entry = getNearestEntry(prefix);
-        return entry != null ? entry.getValue() : null;
-    }
-
-    /**
-     * Returns a path segment delimiter. This method can be overloaded in
-     * subclasses.
-     * 
-     * @return a segment delimiter
-     */
-    protected Character getSegmentDelimiter() {
-        return '/';
+    @Override
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        int begin = getInsertionPoint(prefix);
+        int end = getInsertionPoint(getSubtreeLimit(prefix));
+        return Collections.<Map.Entry<String, T>> unmodifiableList(
+            fList.subList(begin, end)).iterator();
     }
 
     /**
-     * @see java.lang.Object#hashCode()
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeSize(java.lang.String)
      */
     @Override
-    public int hashCode() {
-        return fList.hashCode();
+    public int getSubtreeSize(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return getInsertionPoint(getSubtreeLimit(prefix))
+            - getInsertionPoint(prefix);
     }
 
     /**
@@ -367,12 +300,4 @@ public class PathManager<T> {
         }
         return id >= 0 ? str.substring(0, id + 1) : "";
     }
-
-    /**
-     * @see java.lang.Object#toString()
-     */
-    @Override
-    public String toString() {
-        return fList.toString();
-    }
 }
\ No newline at end of file
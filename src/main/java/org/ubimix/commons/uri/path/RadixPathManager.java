@@ -0,0 +1,572 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A path manager storing prefixes in a compressed radix tree of path
+ * segments. Each edge of the tree is labeled with one or more path segments
+ * (including their delimiters); nodes with only one child and without values
+ * are merged with their children.
+ * <p>
+ * The nearest prefix of a path is found in one pass over the path, without
+ * creating new objects (see
+ * {@link #getNearestEntry(CharSequence, int, int)}). Adding and
+ * removing prefixes changes only the nodes on the way from the root to the
+ * prefix. Children of each node are sorted, so all entries are returned in the
+ * same order as by the {@link PathManager}.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class RadixPathManager<T> extends AbstractPathManager<T> {
+
+    /**
+     * A node of the tree.
+     */
+    private static class Node<T> {
+
+        private int fChildCount;
+
+        private Node<T>[] fChildren;
+
+        /**
+         * The number of entries in the subtree of this node.
+         */
+        private int fCount;
+
+        /**
+         * The entry of this node; it is <code>null</code> if this node does
+         * not correspond to a registered prefix.
+         */
+        private Slot<T> fEntry;
+
+        /**
+         * Path segments between the parent node and this one; each segment is
+         * followed by the delimiter.
+         */
+        private String fLabel;
+
+        private Node<T> fParent;
+
+        public Node(Node<T> parent, String label) {
+            fParent = parent;
+            fLabel = label;
+        }
+
+        /**
+         * Returns the position of the child with the same first segment as the
+         * canonical form of the path starting at the specified position. If
+         * there is no such a child then this method returns
+         * <code>-(insertion point + 1)</code>.
+         */
+        public int findChild(
+            CharSequence path,
+            int contentBegin,
+            int length,
+            int pos,
+            char delimiter) {
+            int a = 0;
+            int b = fChildCount - 1;
+            while (a <= b) {
+                int x = (a + b) >>> 1;
+                int result = compareFirstSegment(
+                    fChildren[x].fLabel,
+                    path,
+                    contentBegin,
+                    length,
+                    pos,
+                    delimiter);
+                if (result < 0) {
+                    a = x + 1;
+                } else if (result > 0) {
+                    b = x - 1;
+                } else {
+                    return x;
+                }
+            }
+            return -(a + 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void insertChild(int pos, Node<T> child) {
+            if (fChildren == null) {
+                fChildren = (Node<T>[]) new Node<?>[2];
+            } else if (fChildCount == fChildren.length) {
+                Node<T>[] children = (Node<T>[]) new Node<?>[fChildCount * 2];
+                System.arraycopy(fChildren, 0, children, 0, fChildCount);
+                fChildren = children;
+            }
+            System.arraycopy(
+                fChildren,
+                pos,
+                fChildren,
+                pos + 1,
+                fChildCount - pos);
+            fChildren[pos] = child;
+            child.fParent = this;
+            fChildCount++;
+        }
+
+        public void removeChild(int pos) {
+            fChildCount--;
+            System.arraycopy(
+                fChildren,
+                pos + 1,
+                fChildren,
+                pos,
+                fChildCount - pos);
+            fChildren[fChildCount] = null;
+        }
+
+    }
+
+    /**
+     * Iterates over entries of a subtree in the order of their prefixes.
+     * Nodes waiting to be visited are kept in a stack, so only the nodes on
+     * the way from the root of the subtree are stored.
+     */
+    private static class SubtreeIterator<T>
+        implements
+        Iterator<Map.Entry<String, T>> {
+
+        private Slot<T> fNext;
+
+        private final List<Node<T>> fStack = new ArrayList<Node<T>>();
+
+        public SubtreeIterator(Node<T> root) {
+            if (root != null) {
+                fStack.add(root);
+            }
+            fNext = findNext();
+        }
+
+        private Slot<T> findNext() {
+            while (!fStack.isEmpty()) {
+                Node<T> node = fStack.remove(fStack.size() - 1);
+                for (int i = node.fChildCount - 1; i >= 0; i--) {
+                    fStack.add(node.fChildren[i]);
+                }
+                if (node.fEntry != null) {
+                    return node.fEntry;
+                }
+            }
+            return null;
+        }
+
+        public boolean hasNext() {
+            return fNext != null;
+        }
+
+        public Map.Entry<String, T> next() {
+            if (fNext == null) {
+                throw new NoSuchElementException();
+            }
+            Slot<T> result = fNext;
+            fNext = findNext();
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Compares the first segment of the label with the segment of the
+     * canonical form of the path starting at the specified position.
+     */
+    private static int compareFirstSegment(
+        String label,
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int pos,
+        char delimiter) {
+        for (int i = 0;; i++) {
+            char a = label.charAt(i);
+            char b = getCanonicalChar(
+                path,
+                contentBegin,
+                length,
+                pos + i,
+                delimiter);
+            if (a != b) {
+                return a - b;
+            }
+            if (a == delimiter) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the longest sequence of full segments common for
+     * the label and for the path starting at the specified position.
+     */
+    private static int getCommonLength(
+        String label,
+        String path,
+        int pos,
+        char delimiter) {
+        int result = 0;
+        int len = Math.min(label.length(), path.length() - pos);
+        for (int i = 0; i < len; i++) {
+            char ch = label.charAt(i);
+            if (ch != path.charAt(pos + i)) {
+                break;
+            }
+            if (ch == delimiter) {
+                result = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the canonical form of the path contains the
+     * given label at the specified position.
+     */
+    private static boolean matches(
+        String label,
+        CharSequence path,
+        int contentBegin,
+        int length,
+        int pos,
+        char delimiter) {
+        int len = label.length();
+        if (pos + len > length) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            char ch = getCanonicalChar(
+                path,
+                contentBegin,
+                length,
+                pos + i,
+                delimiter);
+            if (label.charAt(i) != ch) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final Node<T> fRoot = new Node<T>(null, "");
+
+    private int fSize;
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#add(java.lang.String,
+     *      java.lang.Object)
+     */
+    @Override
+    public String add(String prefix, T value) {
+        prefix = getCanonicalPath(prefix);
+        char delimiter = getSegmentDelimiter();
+        Node<T> node = fRoot;
+        int pos = 1;
+        while (pos < prefix.length()) {
+            int idx = node.findChild(
+                prefix,
+                1,
+                prefix.length(),
+                pos,
+                delimiter);
+            if (idx < 0) {
+                Node<T> leaf = new Node<T>(node, prefix.substring(pos));
+                node.insertChild(-(idx + 1), leaf);
+                node = leaf;
+                break;
+            }
+            Node<T> child = node.fChildren[idx];
+            String label = child.fLabel;
+            int common = getCommonLength(label, prefix, pos, delimiter);
+            if (common < label.length()) {
+                // Splits the edge: the new node contains common segments
+                Node<T> middle = new Node<T>(node, label.substring(0, common));
+                middle.fCount = child.fCount;
+                node.fChildren[idx] = middle;
+                child.fLabel = label.substring(common);
+                middle.insertChild(0, child);
+                child = middle;
+            }
+            node = child;
+            pos += common;
+        }
+        if (node.fEntry == null) {
+            node.fEntry = new Slot<T>(prefix, value);
+            fSize++;
+            updateCounts(node, 1);
+        }
+        return prefix;
+    }
+
+    private int collectEntries(Node<T> node, Map.Entry<String, T>[] array, int pos) {
+        if (node.fEntry != null) {
+            array[pos++] = node.fEntry;
+        }
+        for (int i = 0; i < node.fChildCount; i++) {
+            pos = collectEntries(node.fChildren[i], array, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * Removes the given node if it has no entry and no children, and merges it
+     * with its child if it has no entry and only one child.
+     */
+    private void compact(Node<T> node) {
+        while (node != fRoot && node.fEntry == null && node.fChildCount <= 1) {
+            Node<T> parent = node.fParent;
+            int idx = 0;
+            while (parent.fChildren[idx] != node) {
+                idx++;
+            }
+            if (node.fChildCount == 0) {
+                parent.removeChild(idx);
+                node = parent;
+            } else {
+                Node<T> child = node.fChildren[0];
+                child.fLabel = node.fLabel + child.fLabel;
+                child.fParent = parent;
+                parent.fChildren[idx] = child;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the node corresponding exactly to the canonical form of the
+     * path or <code>null</code> if there is no such a node.
+     */
+    private Node<T> findNode(CharSequence path, int contentBegin, int length) {
+        char delimiter = getSegmentDelimiter();
+        Node<T> node = fRoot;
+        int pos = 1;
+        while (pos < length) {
+            int idx = node.findChild(
+                path,
+                contentBegin,
+                length,
+                pos,
+                delimiter);
+            if (idx < 0) {
+                return null;
+            }
+            node = node.fChildren[idx];
+            String label = node.fLabel;
+            if (!matches(label, path, contentBegin, length, pos, delimiter)) {
+                return null;
+            }
+            pos += label.length();
+        }
+        return node;
+    }
+
+    /**
+     * Returns the top node of the subtree containing all prefixes starting
+     * with the given canonical prefix or <code>null</code> if there are no
+     * such prefixes. The prefix can end in the middle of the label of the
+     * returned node.
+     */
+    private Node<T> findSubtree(String prefix) {
+        char delimiter = getSegmentDelimiter();
+        int length = prefix.length();
+        Node<T> node = fRoot;
+        int pos = 1;
+        while (pos < length) {
+            int idx = node.findChild(prefix, 1, length, pos, delimiter);
+            if (idx < 0) {
+                return null;
+            }
+            node = node.fChildren[idx];
+            String label = node.fLabel;
+            int len = Math.min(label.length(), length - pos);
+            if (!label.regionMatches(0, prefix, pos, len)) {
+                return null;
+            }
+            pos += label.length();
+        }
+        return node;
+    }
+
+    /**
+     * Returns the entry with the longest prefix of the canonical form of the
+     * path.
+     */
+    private Slot<T> findNearest(CharSequence path, int contentBegin, int length) {
+        char delimiter = getSegmentDelimiter();
+        Node<T> node = fRoot;
+        Slot<T> result = node.fEntry;
+        int pos = 1;
+        while (pos < length) {
+            int idx = node.findChild(
+                path,
+                contentBegin,
+                length,
+                pos,
+                delimiter);
+            if (idx < 0) {
+                break;
+            }
+            node = node.fChildren[idx];
+            String label = node.fLabel;
+            if (!matches(label, path, contentBegin, length, pos, delimiter)) {
+                break;
+            }
+            pos += label.length();
+            if (node.fEntry != null) {
+                result = node.fEntry;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getAllEntries()
+     */
+    @Override
+    public Map.Entry<String, T>[] getAllEntries() {
+        Map.Entry<String, T>[] result = newEntryArray(fSize);
+        collectEntries(fRoot, result, 0);
+        return result;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        char delimiter = getSegmentDelimiter();
+        Node<T> node = findNode(
+            path,
+            getContentBegin(path, begin, end, delimiter),
+            getCanonicalLength(path, begin, end, delimiter));
+        return node != null ? node.fEntry : null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getExactEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getExactEntry(String path) {
+        path = getCanonicalPath(path);
+        Node<T> node = findNode(path, 1, path.length());
+        return node != null ? node.fEntry : null;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.CharSequence,
+     *      int, int)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(
+        CharSequence path,
+        int begin,
+        int end) {
+        char delimiter = getSegmentDelimiter();
+        return findNearest(
+            path,
+            getContentBegin(path, begin, end, delimiter),
+            getCanonicalLength(path, begin, end, delimiter));
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getNearestEntry(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> getNearestEntry(String path) {
+        path = getCanonicalPath(path);
+        return findNearest(path, 1, path.length());
+    }
+
+    /**
+     * Returns entries of the subtree of the given prefix. Only nodes of the
+     * subtree are visited.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeEntries(java.lang.String)
+     */
+    @Override
+    public Iterator<Map.Entry<String, T>> getSubtreeEntries(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        return new SubtreeIterator<T>(findSubtree(prefix));
+    }
+
+    /**
+     * Returns the number of entries in the subtree of the given prefix. Each
+     * node keeps the number of entries in its subtree, so this method does
+     * not visit the subtree.
+     * 
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#getSubtreeSize(java.lang.String)
+     */
+    @Override
+    public int getSubtreeSize(String prefix) {
+        prefix = getCanonicalPath(prefix);
+        Node<T> node = findSubtree(prefix);
+        return node != null ? node.fCount : 0;
+    }
+
+    /**
+     * @see org.ubimix.commons.uri.path.AbstractPathManager#remove(java.lang.String)
+     */
+    @Override
+    public Map.Entry<String, T> remove(String path) {
+        path = getCanonicalPath(path);
+        Node<T> node = findNode(path, 1, path.length());
+        if (node == null || node.fEntry == null) {
+            return null;
+        }
+        Slot<T> result = node.fEntry;
+        node.fEntry = null;
+        fSize--;
+        updateCounts(node, -1);
+        compact(node);
+        return result;
+    }
+
+    /**
+     * Returns the number of prefixes registered in this manager.
+     * 
+     * @return the number of registered prefixes
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Adds the given value to entry counters of the node and of all its
+     * ancestors.
+     */
+    private void updateCounts(Node<T> node, int delta) {
+        while (node != null) {
+            node.fCount += delta;
+            node = node.fParent;
+        }
+    }
+
+}
@@ -19,7 +19,19 @@ package org.ubimix.commons.uri;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.ubimix.commons.uri.io.MappedPathManagerTest;
+import org.ubimix.commons.uri.io.UriBloomFilterTest;
+import org.ubimix.commons.uri.io.UriCodecTest;
+import org.ubimix.commons.uri.io.UriIndexTest;
+import org.ubimix.commons.uri.io.UriKeyEncoderTest;
+import org.ubimix.commons.uri.io.UriListTest;
+import org.ubimix.commons.uri.io.UriSetTest;
+import org.ubimix.commons.uri.path.CachingPathManagerTest;
+import org.ubimix.commons.uri.path.ConcurrentPathManagerTest;
+import org.ubimix.commons.uri.path.ExtensionRegistryTest;
+import org.ubimix.commons.uri.path.ImmutablePathManagerTest;
 import org.ubimix.commons.uri.path.PathManagerTest;
+import org.ubimix.commons.uri.path.RadixPathManagerTest;
 
 
 /**
@@ -39,8 +51,26 @@ public class AllTests {
         // $JUnit-BEGIN$
         suite.addTestSuite(PathTest.class);
         suite.addTestSuite(UriTest.class);
+        suite.addTestSuite(UriNormalizerTest.class);
+        suite.addTestSuite(UriFingerprintTest.class);
+        suite.addTestSuite(UriBatchTest.class);
+        suite.addTestSuite(UriCacheTest.class);
+        suite.addTestSuite(UriComparatorTest.class);
+        suite.addTestSuite(UriInternerTest.class);
         suite.addTestSuite(UriToPathTest.class);
+        suite.addTestSuite(CachingPathManagerTest.class);
+        suite.addTestSuite(ConcurrentPathManagerTest.class);
+        suite.addTestSuite(ExtensionRegistryTest.class);
+        suite.addTestSuite(ImmutablePathManagerTest.class);
         suite.addTestSuite(PathManagerTest.class);
+        suite.addTestSuite(RadixPathManagerTest.class);
+        suite.addTestSuite(MappedPathManagerTest.class);
+        suite.addTestSuite(UriBloomFilterTest.class);
+        suite.addTestSuite(UriCodecTest.class);
+        suite.addTestSuite(UriIndexTest.class);
+        suite.addTestSuite(UriKeyEncoderTest.class);
+        suite.addTestSuite(UriListTest.class);
+        suite.addTestSuite(UriSetTest.class);
         // $JUnit-END$
         return suite;
     }
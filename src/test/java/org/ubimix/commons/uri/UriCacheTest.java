@@ -0,0 +1,70 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class UriCacheTest extends TestCase {
+
+    /**
+     * @param name
+
+    /**
+     * @param name
+     */
+    public UriCacheTest(String name) {
+        super(name);
+    }
+
+    public void testCache() {
+        UriCache cache = new UriCache(100);
+        String str = "http://www.foo.bar/a/b?x=y#z";
+        Uri first = cache.get(str);
+        assertEquals(new Uri(str), first);
+        assertSame(first, cache.get(str));
+        assertSame(first, cache.getIfPresent(str));
+        assertNull(cache.getIfPresent("http://www.foo.bar/"));
+        assertNull(cache.get(null));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.getIfPresent(str));
+    }
+
+    public void testFrequentUrisAreRetained() {
+        UriCache cache = new UriCache(256);
+        for (int i = 0; i < 10000; i++) {
+            cache.get("http://www.foo.bar/hot/" + (i % 32));
+            cache.get("http://www.foo.bar/cold/" + i);
+        }
+        assertTrue(cache.size() <= 256);
+        for (int i = 0; i < 32; i++) {
+            assertNotNull(cache.getIfPresent("http://www.foo.bar/hot/" + i));
+        }
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.getRejectionCount() > 0);
+        assertTrue(cache.getHitCount() >= 10000 - 32);
+        assertEquals(20000, cache.getHitCount() + cache.getMissCount());
+    }
+
+}
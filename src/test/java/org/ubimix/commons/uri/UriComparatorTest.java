@@ -0,0 +1,135 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.uri.io.UriKeyEncoder;
+
+/**
+ * @author kotelnikov
+ */
+public class UriComparatorTest extends TestCase {
+
+    private static final String[] URIS = {
+        "http://www.foo.bar/a/b/c.html?x=1&y=2#top",
+        "http://www.foo.bar/a/b/",
+        "http://www.foo.bar/a/b",
+        "http://www.foo.bar/a/b?x",
+        "https://www.foo.bar/a/b",
+        "http://foo.bar/z",
+        "http://foo.bar:8080/a",
+        "http://images.foo.bar/logo.png",
+        "http://www.example.com/",
+        "http://192.168.0.1/index.html",
+        "http://login@www.foo.bar/a/b",
+        "ftp://ftp.example.com/pub/",
+        "/local/path/file.txt",
+        "local/path",
+        "a\u0000b",
+        "a",
+        "mailto:someone@example.com" };
+
+    private static List<Uri> newUris() {
+        List<Uri> result = new ArrayList<Uri>();
+        for (String str : URIS) {
+            result.add(new Uri(str));
+        }
+        return result;
+    }
+
+    private static int sign(int value) {
+        return value < 0 ? -1 : value > 0 ? 1 : 0;
+    }
+
+    /**
+     * @param name
+     */
+    public UriComparatorTest(String name) {
+        super(name);
+    }
+
+    public void testCanonical() {
+        List<Uri> uris = newUris();
+        UriComparator.CANONICAL.sort(uris);
+        for (int i = 1; i < uris.size(); i++) {
+            assertTrue(uris.get(i - 1).getUri().compareTo(
+                uris.get(i).getUri()) <= 0);
+        }
+    }
+
+    public void testHost() {
+        List<Uri> uris = newUris();
+        for (Uri a : uris) {
+            for (Uri b : uris) {
+                // The same order as binary keys
+                assertEquals(a + " " + b, sign(UriKeyEncoder.compare(
+                    UriKeyEncoder.getKey(a),
+                    UriKeyEncoder.getKey(b))), sign(UriComparator.HOST
+                    .compare(a, b)));
+            }
+        }
+        Uri[] array = uris.toArray(new Uri[uris.size()]);
+        UriComparator.HOST.sort(array);
+        List<String> hosts = new ArrayList<String>();
+        for (Uri uri : array) {
+            hosts.add(uri.getHost());
+        }
+        assertEquals("[null, null, null, null, null, 192.168.0.1, "
+            + "foo.bar, foo.bar, "
+            + "images.foo.bar, "
+            + "www.foo.bar, www.foo.bar, www.foo.bar, www.foo.bar, "
+            + "www.foo.bar, www.foo.bar, "
+            + "ftp.example.com, www.example.com]", hosts.toString());
+        assertEquals("http://foo.bar/z", array[6].toString());
+        assertEquals("http://foo.bar:8080/a", array[7].toString());
+        assertEquals("http://www.foo.bar/a/b", array[9].toString());
+        // Schemes and user info are compared after queries
+        assertEquals("http://login@www.foo.bar/a/b", array[10].toString());
+        assertEquals("https://www.foo.bar/a/b", array[11].toString());
+        assertEquals("http://www.foo.bar/a/b?x", array[12].toString());
+        assertEquals("http://www.foo.bar/a/b/", array[13].toString());
+    }
+
+    public void testPath() {
+        List<Uri> uris = newUris();
+        List<Uri> expected = new ArrayList<Uri>(uris);
+        Collections.sort(expected, new java.util.Comparator<Uri>() {
+            public int compare(Uri o1, Uri o2) {
+                return o1.getPath().compareTo(o2.getPath());
+            }
+        });
+        Uri[] array = uris.toArray(new Uri[uris.size()]);
+        UriComparator.PATH.sort(array);
+        assertEquals(expected, Arrays.asList(array));
+        for (Uri a : uris) {
+            for (Uri b : uris) {
+                String first = UriComparator.PATH.getSortKey(a);
+                String second = UriComparator.PATH.getSortKey(b);
+                assertEquals(
+                    sign(a.getPath().compareTo(b.getPath())),
+                    sign(first.compareTo(second)));
+            }
+        }
+    }
+
+}
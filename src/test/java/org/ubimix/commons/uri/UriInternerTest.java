@@ -0,0 +1,77 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class UriInternerTest extends TestCase {
+
+    /**
+     * @param name
+
+    /**
+     * @param name
+     */
+    public UriInternerTest(String name) {
+        super(name);
+    }
+
+    public void testBoundedPools() {
+        UriInterner interner = new UriInterner(32, 32);
+        for (int i = 0; i < 1000; i++) {
+            interner.intern(new Uri("http://www.foo.bar/" + i));
+        }
+        assertTrue(interner.getUriCount() <= 32);
+        interner.clear();
+        assertEquals(0, interner.getUriCount());
+    }
+
+    public void testIntern() {
+        UriInterner interner = new UriInterner();
+        String str = "http://www.foo.bar:8080/a/b/c.txt?x=X&y=Y#frag";
+        Uri first = new Uri.Builder(str).build(interner);
+        Uri second = new Uri.Builder(str).build(interner);
+        assertSame(first, second);
+        assertSame(first, interner.intern(new Uri(str)));
+        assertEquals(new Uri(str), first);
+        assertEquals(str, first.toString());
+        assertEquals(1, interner.getUriCount());
+
+        // Components are shared between different URIs
+        Uri third = new Uri.Builder("http://www.foo.bar/a/d.txt?x=Z")
+            .build(interner);
+        assertNotSame(first, third);
+        assertSame(first.getHost(), third.getHost());
+        assertSame(first.getSchemeSegments(), third.getSchemeSegments());
+        assertSame(first.getPath().getPathSegments().get(0), third
+            .getPath()
+            .getPathSegments()
+            .get(0));
+        assertEquals("x", third.getQueryItems().get(0).name);
+        assertEquals("Z", third.getParam("x"));
+
+        // Without interner
+        Uri uri = new Uri.Builder(str).build(null);
+        assertNotSame(first, uri);
+        assertEquals(first, uri);
+        assertNull(interner.intern(null));
+    }
+
+}
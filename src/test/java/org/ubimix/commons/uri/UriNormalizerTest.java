@@ -0,0 +1,100 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class UriNormalizerTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public UriNormalizerTest(String name) {
+        super(name);
+    }
+
+    public void testCustomRules() {
+        UriNormalizer normalizer = new UriNormalizer()
+            .setSortParams(true)
+            .setRemoveFragment(true)
+            .addIgnoredParamPrefix("utm_")
+            .addIgnoredParam("sessionid");
+        test(
+            normalizer,
+            "http://www.foo.bar/a?utm_source=x&z=1&sessionid=123&a=2&z=0#top",
+            "http://www.foo.bar/a?a=2&z=1&z=0");
+        test(
+            normalizer,
+            "http://www.foo.bar/a?utm_source=x&utm_medium=y",
+            "http://www.foo.bar/a");
+        assertEquals(
+            normalizer.getFingerprint(new Uri(
+                "http://www.foo.bar/?b=2&a=1&utm_source=x")),
+            normalizer.getFingerprint(new Uri("HTTP://WWW.FOO.BAR:80?a=1&b=2")));
+    }
+
+    public void testSyntaxNormalization() {
+        UriNormalizer normalizer = new UriNormalizer();
+        test(
+            normalizer,
+            "HTTP://www.Example.COM:80/a/./b/../c/%7Efoo",
+            "http://www.example.com/a/c/~foo");
+        test(
+            normalizer,
+            "http://www.example.com:8080/a/b/..",
+            "http://www.example.com:8080/a/");
+        test(normalizer, "https://www.example.com:443", "https://www.example.com/");
+        test(normalizer, "http://www.example.com?#", "http://www.example.com/");
+        test(
+            normalizer,
+            "http://%7euser@www.%65xample.com/%7e?q=a%2fb",
+            "http://~user@www.example.com/~?q=a/b");
+        test(
+            normalizer,
+            "http://www.example.com/a%20b/%c3%a9?x=a+b&y=1%2B1",
+            "http://www.example.com/a%20b/%C3%A9?x=a%20b&y=1%2B1");
+        test(
+            normalizer,
+            "http://www.example.com/a?x=1&y=%26#Frag",
+            "http://www.example.com/a?x=1&y=%26#Frag");
+        test(normalizer, "a/./b/../c", "a/./b/../c");
+        test(normalizer, "mailto:John.Doe@Example.COM", "mailto:John.Doe@Example.COM");
+
+        Uri first = new Uri("HTTP://www.Example.COM:80/a/./b/../c/%7Efoo");
+        Uri second = new Uri("http://www.example.com/a/c/~foo");
+        assertEquals(
+            normalizer.getFingerprint(first),
+            normalizer.getFingerprint(second));
+        assertEquals(normalizer.normalize(first), normalizer.normalize(second));
+        assertFalse(normalizer.getFingerprint(first) == normalizer
+            .getFingerprint(new Uri("http://www.example.com/a/c/foo")));
+    }
+
+    private void test(UriNormalizer normalizer, String str, String control) {
+        Uri uri = new Uri(str);
+        assertEquals(control, normalizer.getCanonicalString(uri));
+        Uri normalized = normalizer.normalize(uri);
+        assertEquals(control, normalizer.getCanonicalString(normalized));
+        assertEquals(
+            normalizer.getFingerprint(uri),
+            normalizer.getFingerprint(normalized));
+    }
+
+}
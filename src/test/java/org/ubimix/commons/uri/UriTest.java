@@ -17,6 +17,8 @@
 package org.ubimix.commons.uri;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -182,6 +184,93 @@ public class UriTest extends TestCase {
         testQuery(uri.toString(), "x=y&z", "x", "y", "z", null);
     }
 
+    public void testQueryBulkOperations() {
+        Uri.Builder builder = new Uri.Builder(
+            "http://www.foo.bar/?utm_source=a&x=1&utm_medium=b&y=2&x=3&z");
+        builder.removeParams(new HashSet<String>(Arrays.asList(
+            "utm_source",
+            "utm_medium")));
+        assertEquals("http://www.foo.bar/?x=1&y=2&x=3&z", builder.toString());
+
+        builder.replaceParam("x", "4");
+        assertEquals("http://www.foo.bar/?x=4&y=2&z", builder.toString());
+        builder.replaceParam("w", "5");
+        assertEquals("http://www.foo.bar/?x=4&y=2&z&w=5", builder.toString());
+
+        builder.sortParams();
+        assertEquals("http://www.foo.bar/?w=5&x=4&y=2&z", builder.toString());
+
+        builder.retainParams(new HashSet<String>(Arrays.asList("x", "z")));
+        assertEquals("http://www.foo.bar/?x=4&z", builder.toString());
+
+        builder = new Uri.Builder("?utm_a=1&b=2&utm_c=3&d=4&b=5");
+        builder.removeParams(new Uri.Builder.IQueryItemFilter() {
+            public boolean accept(QueryItem item) {
+                return item.getName(false, false).startsWith("utm_");
+            }
+        });
+        assertEquals("?b=2&d=4&b=5", builder.toString());
+        builder.sortParams();
+        assertEquals("?b=2&b=5&d=4", builder.toString());
+
+        builder.removeParam("b");
+        builder.removeParam("d");
+        assertEquals("", builder.toString());
+        assertTrue(builder.getQueryItems().isEmpty());
+        builder.addParam("a", "b");
+        assertEquals("?a=b", builder.toString());
+    }
+
+    public void testQueryParsing() {
+        testQuery("?a=b=c&d=e", "a=b=c&d=e", "a", "b=c", "d", "e");
+        testQuery("?a=1;b=2&c=3", "a=1&b=2&c=3", "a", "1", "b", "2", "c", "3");
+        testQuery("?&&a=1&=x& &b", "a=1&b", "a", "1", "b", null);
+        testQuery("? a =1", "a=1", "a", "1");
+        testQuery("?a%5Fb=c%3Dd", "a_b=c=d", "a_b", "c=d");
+
+        Map<String, List<String>> map = AbstractPath
+            .getQueryMap("?x=a=b&y&z=Hello+world&x=c");
+        assertEquals(Arrays.asList("a=b", "c"), map.get("x"));
+        assertEquals(Arrays.asList(""), map.get("y"));
+        assertEquals(Arrays.asList("Hello world"), map.get("z"));
+        assertEquals(3, map.size());
+        assertTrue(AbstractPath.getQueryMap("").isEmpty());
+    }
+
+    public void testQueryParams() {
+        Uri uri = new Uri(
+            "http://www.foo.bar/a/b?x=X1&y=Y&z&x=X2&w=Hello+world#frag");
+        assertEquals("X1", uri.getParam("x"));
+        assertEquals("Y", uri.getParam("y"));
+        assertEquals("Hello world", uri.getParam("w"));
+        assertNull(uri.getParam("z"));
+        assertNull(uri.getParam("unknown"));
+        assertTrue(uri.hasParam("z"));
+        assertTrue(uri.hasParam("x"));
+        assertFalse(uri.hasParam("unknown"));
+        assertFalse(uri.hasParam(null));
+        assertEquals(Arrays.asList("X1", "X2"), uri.getParams("x"));
+        assertEquals(Arrays.asList("Y"), uri.getParams("y"));
+        assertTrue(uri.getParams("unknown").isEmpty());
+
+        Uri.Builder builder = new Uri.Builder("http://www.foo.bar/");
+        for (int i = 0; i < 50; i++) {
+            builder.addParam("p" + (i % 10), "v" + i);
+        }
+        uri = builder.build();
+        builder.addParam("p0", "after");
+        for (int i = 0; i < 10; i++) {
+            List<String> values = uri.getParams("p" + i);
+            assertEquals(builder.getParams("p" + i).subList(0, 5), values);
+            assertEquals("v" + i, uri.getParam("p" + i));
+        }
+        assertEquals(6, builder.getParams("p0").size());
+        assertEquals(5, uri.getParams("p0").size());
+
+        assertFalse(Uri.EMPTY.hasParam("x"));
+        assertNull(Uri.EMPTY.getParam("x"));
+    }
+
     private void testQuery(String str, String query, String... params) {
         Uri uri = new Uri(str);
         assertEquals(query, uri.getQuery());
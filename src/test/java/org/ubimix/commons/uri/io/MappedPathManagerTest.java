@@ -0,0 +1,156 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.uri.path.PathManager;
+import org.ubimix.commons.uri.path.PathManagerAssert;
+
+/**
+ * @author kotelnikov
+ */
+public class MappedPathManagerTest extends TestCase {
+
+    /**
+     * Non-ASCII segments check that prefixes are stored as UTF-16 chars
+     */
+    private static final String SEGMENT = "\u00e9t\u00e9";
+
+    private File fFile;
+
+    /**
+     * @param name
+     */
+    public MappedPathManagerTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        fFile = File.createTempFile("path-manager", ".bin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fFile.delete();
+        super.tearDown();
+    }
+
+    public void testBadFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(fFile, "rw");
+        try {
+            raf.write(new byte[100]);
+        } finally {
+            raf.close();
+        }
+        try {
+            new MappedPathManager<String>(fFile, PathValueCodec.STRING);
+            fail();
+        } catch (IOException e) {
+        }
+    }
+
+    public void testCompatibility() throws IOException {
+        Random random = new Random(123);
+        PathManager<String> manager = new PathManager<String>();
+        for (int i = 0; i < 500; i++) {
+            String path = PathManagerAssert.newPath(random, SEGMENT);
+            manager.add(path, i % 10 == 0 ? null : path + "=" + i);
+        }
+        PathManagerWriter.write(fFile, manager, PathValueCodec.STRING);
+        MappedPathManager<String> mapped = new MappedPathManager<String>(
+            fFile,
+            PathValueCodec.STRING);
+        assertEquals(manager.getAllEntries().length, mapped.size());
+        PathManagerAssert.assertCompatible(
+            manager,
+            mapped,
+            random,
+            2000,
+            SEGMENT);
+        try {
+            mapped.add("/x", "X");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            mapped.getNearestEntry("/a/x").setValue("X");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    public void testDelimiter() throws IOException {
+        PathManager<String> manager = new PathManager<String>() {
+            @Override
+            protected Character getSegmentDelimiter() {
+                return '.';
+            }
+        };
+        manager.add("com.foo", "foo");
+        manager.add("com.foo.www", "www");
+        PathManagerWriter.write(fFile, manager, PathValueCodec.STRING);
+        MappedPathManager<String> mapped = new MappedPathManager<String>(
+            fFile,
+            PathValueCodec.STRING);
+        assertEquals("foo", mapped.getNearestValue("com.foo.images"));
+        assertEquals("www", mapped.getNearestValue("com.foo.www.a"));
+        assertEquals(".", mapped.getNearestPath("com.bar"));
+    }
+
+    public void testEmpty() throws IOException {
+        PathManagerWriter.write(
+            fFile,
+            new PathManager<String>(),
+            PathValueCodec.STRING);
+        MappedPathManager<String> mapped = new MappedPathManager<String>(
+            fFile,
+            PathValueCodec.STRING);
+        assertEquals(0, mapped.size());
+        assertNull(mapped.getNearestEntry("/a/b"));
+        assertEquals(0, mapped.getSubtreeSize("/"));
+    }
+
+    public void testUnsorted() throws IOException {
+        PathManager<String> manager = new PathManager<String>() {
+            @Override
+            public Entry<String, String>[] getAllEntries() {
+                Entry<String, String>[] entries = super.getAllEntries();
+                Collections.reverse(Arrays.asList(entries));
+                return entries;
+            }
+        };
+        manager.add("/a", "a");
+        manager.add("/b", "b");
+        try {
+            PathManagerWriter.write(fFile, manager, PathValueCodec.STRING);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
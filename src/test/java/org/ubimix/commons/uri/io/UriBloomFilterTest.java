@@ -0,0 +1,158 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.uri.Uri;
+
+/**
+ * @author kotelnikov
+ */
+public class UriBloomFilterTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public UriBloomFilterTest(String name) {
+        super(name);
+    }
+
+    private int countFalsePositives(UriBloomFilter filter, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            if (filter.mightContain(new Uri("http://www.foo.bar/other/" + i))) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    public void testBadFile() throws IOException {
+        File file = File.createTempFile("uris", ".bloom");
+        try {
+            try {
+                UriBloomFilter.load(file);
+                fail();
+            } catch (IOException e) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testConcurrentPut() throws Exception {
+        final UriBloomFilter filter = new UriBloomFilter(1000, 0.01);
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int shift = t * 5000;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        Uri uri = new Uri("http://www.foo.bar/" + (shift + i));
+                        filter.put(uri);
+                        if (!filter.mightContain(uri)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(filter.mightContain(new Uri("http://www.foo.bar/" + i)));
+        }
+        assertTrue(filter.getStageCount() > 1);
+    }
+
+    public void testFilter() {
+        UriBloomFilter filter = new UriBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put(new Uri("http://www.foo.bar/page/" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            Uri uri = new Uri("HTTP://WWW.FOO.BAR:80/page/./" + i);
+            assertTrue(filter.mightContain(uri));
+            assertFalse(filter.put(uri));
+        }
+        int falsePositives = countFalsePositives(filter, 0, 10000);
+        assertTrue("" + falsePositives, falsePositives < 200);
+        assertEquals(1, filter.getStageCount());
+        long count = filter.getApproximateCount();
+        assertTrue(count > 9900 && count <= 10000);
+    }
+
+    public void testGrowth() {
+        UriBloomFilter filter = new UriBloomFilter(1000, 0.01);
+        long memory = filter.getMemoryUsage();
+        for (int i = 0; i < 50000; i++) {
+            filter.put(new Uri("http://www.foo.bar/page/" + i));
+        }
+        assertTrue(filter.getStageCount() > 1);
+        assertTrue(filter.getMemoryUsage() > memory);
+        for (int i = 0; i < 50000; i++) {
+            assertTrue(filter.mightContain(new Uri("http://www.foo.bar/page/"
+                + i)));
+        }
+        // The false positive rate is still below the defined one
+        int falsePositives = countFalsePositives(filter, 0, 20000);
+        assertTrue("" + falsePositives, falsePositives < 400);
+    }
+
+    public void testSaveLoad() throws IOException {
+        UriBloomFilter filter = new UriBloomFilter(1000, 0.001);
+        for (int i = 0; i < 5000; i++) {
+            filter.put(new Uri("http://www.foo.bar/page/" + i));
+        }
+        File file = File.createTempFile("uris", ".bloom");
+        try {
+            filter.save(file);
+            UriBloomFilter loaded = UriBloomFilter.load(file);
+            assertEquals(filter.getStageCount(), loaded.getStageCount());
+            assertEquals(filter.getMemoryUsage(), loaded.getMemoryUsage());
+            assertEquals(
+                filter.getApproximateCount(),
+                loaded.getApproximateCount());
+            assertEquals(filter.getFpp(), loaded.getFpp());
+            assertEquals(
+                filter.getExpectedInsertions(),
+                loaded.getExpectedInsertions());
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(loaded.mightContain(new Uri(
+                    "http://www.foo.bar/page/" + i)));
+            }
+            assertEquals(
+                countFalsePositives(filter, 0, 5000),
+                countFalsePositives(loaded, 0, 5000));
+            assertTrue(loaded.put(new Uri("http://www.foo.bar/new")));
+            assertTrue(loaded.mightContain(new Uri("http://www.foo.bar/new")));
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.uri.Uri;
+
+/**
+ * @author kotelnikov
+ */
+public class UriIndexTest extends TestCase {
+
+    private File fFile;
+
+    /**
+     * @param name
+     */
+    public UriIndexTest(String name) {
+        super(name);
+    }
+
+    private int count(Iterator<Uri> iterator) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        fFile = File.createTempFile("uri-index", ".idx");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fFile.delete();
+        super.tearDown();
+    }
+
+    public void testBadFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(fFile, "rw");
+        try {
+            raf.write(new byte[100]);
+        } finally {
+            raf.close();
+        }
+        try {
+            new UriIndex(fFile);
+            fail();
+        } catch (IOException e) {
+        }
+    }
+
+    public void testIndex() throws IOException {
+        List<Uri> uris = new ArrayList<Uri>();
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 50; j++) {
+                uris.add(new Uri("http://www"
+                    + i
+                    + ".example.com/dir"
+                    + (j % 5)
+                    + "/page"
+                    + j
+                    + ".html?id="
+                    + j));
+            }
+        }
+        uris.add(new Uri("http://example.com/"));
+        uris.add(new Uri("mailto:john@example.com"));
+        uris.add(new Uri("http://example.com/")); // duplicate
+        UriIndexWriter.write(fFile, uris);
+
+        UriIndex index = new UriIndex(fFile);
+        assertEquals(uris.size() - 1, index.getCount());
+        for (Uri uri : uris) {
+            assertTrue(uri.toString(), index.contains(uri));
+        }
+        assertFalse(index.contains(new Uri("http://example.com")));
+        assertFalse(index.contains(new Uri("http://www1.example.com/x")));
+        assertFalse(index.contains(new Uri("http://zzz.com/")));
+        assertFalse(index.contains(new Uri("")));
+
+        // Iteration in the order of keys
+        byte[] prev = null;
+        int count = 0;
+        for (Uri uri : index) {
+            byte[] key = UriKeyEncoder.getKey(uri);
+            if (prev != null) {
+                assertTrue(UriKeyEncoder.compare(prev, key) < 0);
+            }
+            prev = key;
+            count++;
+        }
+        assertEquals(index.getCount(), count);
+
+        // Ranges
+        assertEquals(50 * 30 + 1, count(index.getHostUris("example.com", true)));
+        assertEquals(1, count(index.getHostUris("example.com", false)));
+        assertEquals(50, count(index.getHostUris("www7.example.com", false)));
+        assertEquals(0, count(index.getHostUris("www.example.com", false)));
+        assertEquals(10, count(index.getPathUris(new Uri(
+            "http://www3.example.com/dir4/"))));
+        Iterator<Uri> iterator = index.getPathUris(new Uri(
+            "http://www3.example.com/dir4/page9.html"));
+        assertEquals(new Uri("http://www3.example.com/dir4/page9.html?id=9"), iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    public void testOrder() throws IOException {
+        UriIndexWriter writer = new UriIndexWriter(fFile);
+        try {
+            writer.add(new Uri("http://b.com/"));
+            writer.add(new Uri("http://b.com/"));
+            assertEquals(1, writer.getCount());
+            try {
+                writer.add(new Uri("http://a.com/"));
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            writer.close();
+        }
+        UriIndex index = new UriIndex(fFile);
+        assertEquals(1, index.getCount());
+        assertTrue(index.contains(new Uri("http://b.com/")));
+    }
+
+}
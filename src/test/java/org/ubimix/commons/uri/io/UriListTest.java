@@ -0,0 +1,126 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.uri.Uri;
+
+/**
+ * @author kotelnikov
+ */
+public class UriListTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public UriListTest(String name) {
+        super(name);
+    }
+
+    private List<String> getUris() {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 20; j++) {
+                for (int k = 0; k < 5; k++) {
+                    result.add("http://www.example.com/catalog/section-"
+                        + i
+                        + "/products/item-"
+                        + j
+                        + "/page"
+                        + k
+                        + ".html?lang=en");
+                }
+            }
+        }
+        result.add("https://login@www.example.com:8443/a%20b/?x&y=#top");
+        result.add("mailto:john@example.com");
+        result.add("");
+        Collections.sort(result);
+        return result;
+    }
+
+    public void testBlockSeek() {
+        BlockWriter writer = new BlockWriter(4);
+        for (int i = 0; i < 100; i++) {
+            writer.add(new byte[] { (byte) (i * 2) }, new byte[] { (byte) i });
+        }
+        BlockReader reader = new BlockReader(writer.finish());
+        assertEquals(100, reader.getEntryCount());
+        BlockReader.Cursor cursor = reader.newCursor();
+        for (int i = 0; i < 100; i++) {
+            // Exact keys
+            assertTrue(cursor.seek(new byte[] { (byte) (i * 2) }));
+            assertEquals(i, cursor.getIndex());
+            assertEquals(i, cursor.getValue().get());
+            // Keys between existing ones
+            if (i > 0) {
+                assertTrue(cursor.seek(new byte[] { (byte) (i * 2 - 1) }));
+                assertEquals(i, cursor.getIndex());
+            }
+        }
+        assertFalse(cursor.seek(new byte[] { (byte) 0xFF }));
+        assertTrue(cursor.seek(new byte[0]));
+        assertEquals(0, cursor.getIndex());
+
+        reader = new BlockReader(new BlockWriter().finish());
+        assertEquals(0, reader.getEntryCount());
+        assertFalse(reader.newCursor().next());
+        assertFalse(reader.newCursor().seek(new byte[0]));
+    }
+
+    public void testList() throws Exception {
+        List<String> strings = getUris();
+        UriListWriter writer = new UriListWriter();
+        int textSize = 0;
+        for (String str : strings) {
+            writer.add(new Uri(str));
+            textSize += str.getBytes("UTF-8").length;
+        }
+        assertEquals(strings.size(), writer.size());
+        byte[] data = writer.finish();
+        assertEquals(0, writer.size());
+        assertTrue(data.length * 4 < textSize);
+
+        UriListReader reader = new UriListReader(data);
+        assertEquals(strings.size(), reader.size());
+        int i = 0;
+        for (Uri uri : reader) {
+            assertEquals(new Uri(strings.get(i++)), uri);
+        }
+        assertEquals(strings.size(), i);
+
+        for (i = strings.size() - 1; i >= 0; i -= 7) {
+            assertEquals(new Uri(strings.get(i)), reader.get(i));
+        }
+        Iterator<Uri> iterator = reader.iterator(500);
+        assertEquals(new Uri(strings.get(500)), iterator.next());
+        assertEquals(new Uri(strings.get(501)), iterator.next());
+        assertFalse(reader.iterator(strings.size()).hasNext());
+        try {
+            reader.get(strings.size());
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+    }
+
+}
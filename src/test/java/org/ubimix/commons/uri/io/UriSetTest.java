@@ -0,0 +1,94 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.io;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.uri.Uri;
+
+/**
+ * @author kotelnikov
+ */
+public class UriSetTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public UriSetTest(String name) {
+        super(name);
+    }
+
+    public void testConcurrentAdd() throws Exception {
+        final UriSet set = new UriSet();
+        final AtomicInteger added = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        Uri uri = new Uri("http://www.foo.bar/" + i);
+                        if (set.addIfAbsent(uri)) {
+                            added.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(5000, added.get());
+        assertEquals(5000, set.size());
+    }
+
+    public void testSet() {
+        UriSet set = new UriSet();
+        long memory = set.getMemoryUsage();
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(set.addIfAbsent(new Uri("http://www.foo.bar/page/"
+                + i)));
+        }
+        assertEquals(20000, set.size());
+        assertTrue(set.getMemoryUsage() > memory);
+        for (int i = 0; i < 20000; i++) {
+            Uri uri = new Uri("HTTP://WWW.FOO.BAR:80/page/./" + i);
+            assertTrue(set.contains(uri));
+            assertFalse(set.addIfAbsent(uri));
+        }
+        assertFalse(set.contains(new Uri("http://www.foo.bar/page/20000")));
+        assertEquals(20000, set.size());
+
+        assertTrue(set.addIfAbsent(0, 0));
+        assertTrue(set.contains(0, 0));
+        assertFalse(set.addIfAbsent(0, 0));
+
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(new Uri("http://www.foo.bar/page/1")));
+
+        // Without normalization
+        set = new UriSet(100, null);
+        assertTrue(set.addIfAbsent(new Uri("http://www.foo.bar/")));
+        assertTrue(set.addIfAbsent(new Uri("HTTP://www.foo.bar/")));
+        assertEquals(2, set.size());
+    }
+
+}
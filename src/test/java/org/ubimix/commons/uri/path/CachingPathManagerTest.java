@@ -0,0 +1,84 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class CachingPathManagerTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public CachingPathManagerTest(String name) {
+        super(name);
+    }
+
+    public void test() {
+        CachingPathManager<String> p = new CachingPathManager<String>(
+            new PathManager<String>());
+        p.add("/a/", "A");
+        p.add("/a/b/c/", "ABC");
+        assertEquals(0, p.getHitRatio(), 0);
+        assertEquals("A", p.getNearestValue("/a/b"));
+        assertEquals("A", p.getNearestValue("/a/b"));
+        assertEquals("ABC", p.getNearestValue("/a/b/c/d"));
+        assertNull(p.getNearestEntry("/x/"));
+        assertNull(p.getNearestEntry("/x/"));
+        assertEquals(2, p.getHitCount());
+        assertEquals(3, p.getMissCount());
+        assertEquals(0.4, p.getHitRatio(), 0.0001);
+
+        // Modifications make cached results invalid
+        int generation = p.getGeneration();
+        p.add("/a/b/", "AB");
+        assertTrue(generation != p.getGeneration());
+        assertEquals("AB", p.getNearestValue("/a/b"));
+        assertEquals("AB", p.getNearestValue("/a/b"));
+        p.remove("/a/b/");
+        assertEquals("A", p.getNearestValue("/a/b"));
+        assertEquals(3, p.getHitCount());
+        assertEquals(5, p.getMissCount());
+
+        // Direct modifications of the wrapped manager
+        assertNull(p.getNearestEntry("/x/"));
+        p.getManager().add("/x", "X");
+        assertNull(p.getNearestEntry("/x/"));
+        p.invalidate();
+        assertEquals("X", p.getNearestValue("/x/"));
+        assertEquals("/x/", p.getNearestPath("/x/y"));
+    }
+
+    public void testEviction() {
+        CachingPathManager<String> p = new CachingPathManager<String>(
+            new RadixPathManager<String>(),
+            16);
+        p.add("/a", "A");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("A", p.getNearestValue("/a/" + i));
+        }
+        assertEquals(100, p.getMissCount());
+        assertEquals(84, p.getEvictionCount());
+        assertEquals("A", p.getNearestValue("/a/99"));
+        assertEquals(1, p.getHitCount());
+        assertEquals("A", p.getNearestValue("/a/0"));
+        assertEquals(101, p.getMissCount());
+    }
+
+}
@@ -0,0 +1,92 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class ConcurrentPathManagerTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public ConcurrentPathManagerTest(String name) {
+        super(name);
+    }
+
+    public void testCompatibility() {
+        Random random = new Random(123);
+        PathManager<String> list = new PathManager<String>();
+        ConcurrentPathManager<String> p = new ConcurrentPathManager<String>();
+        PathManagerAssert.assertModifications(list, p, random, 5000);
+        PathManagerAssert.assertCompatible(list, p, random, 2000);
+        assertEquals(list.getAllEntries().length, p.size());
+    }
+
+    public void testConcurrentModifications() throws Exception {
+        final ConcurrentPathManager<String> p = new ConcurrentPathManager<String>();
+        p.add("/", "root");
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String base = "/t" + t + "/";
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            String path = base + (i % 50) + "/";
+                            if (i % 3 == 2) {
+                                p.remove(path);
+                            } else {
+                                p.add(path, path);
+                            }
+                            String nearest = p.getNearestPath(path + "x/y");
+                            assertTrue(nearest, nearest.equals(path)
+                                || nearest.equals("/"));
+                        }
+                        for (int i = 0; i < 50; i++) {
+                            p.add(base + i, base + i + "/");
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Arrays.asList(), errors);
+        assertEquals(1 + threads.length * 50, p.size());
+        for (int t = 0; t < threads.length; t++) {
+            assertEquals(50, p.getSubtreeSize("/t" + t));
+            assertEquals("/t" + t + "/7/", p.getNearestValue("/t" + t + "/7/z"));
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class ExtensionRegistryTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public ExtensionRegistryTest(String name) {
+        super(name);
+    }
+
+    public void testBatch() {
+        ExtensionRegistry<String> registry = new ExtensionRegistry<String>();
+        AbstractExtensionRegistry.Snapshot<String> empty = registry
+            .getSnapshot();
+        ExtensionRegistry<String>.Batch batch = registry
+            .newBatch()
+            .addExtension("/a", "x")
+            .addExtension("/a", "y")
+            .addExtension("/b", "x");
+        // Nothing is visible before commit
+        assertNull(registry.getExtensions("/a"));
+        assertFalse(batch.commit());
+        assertNull(empty.getExtensions("/a"));
+        assertEquals(0, empty.getPrefixes().length);
+
+        AbstractExtensionRegistry.Snapshot<String> snapshot = registry
+            .getSnapshot();
+        assertEquals("[/a/, /b/]", Arrays.toString(snapshot.getPrefixes()));
+        assertEquals("[x, y]", snapshot.getExtensions("/a/c").toString());
+
+        assertTrue(batch
+            .removeExtension("x")
+            .addExtension("/c", "z")
+            .commit());
+        assertEquals("[/a/, /c/]", Arrays.toString(registry
+            .getSnapshot()
+            .getPrefixes()));
+        assertEquals("[y]", registry.getExtensions("/a/c").toString());
+        // The old snapshot is not changed
+        assertEquals("[/a/, /b/]", Arrays.toString(snapshot.getPrefixes()));
+        assertEquals("[x, y]", snapshot.getExtensions("/a/c").toString());
+    }
+
+    public void testDelimiter() {
+        // The delimiter is defined by a field of the subclass
+        class Registry extends ExtensionRegistry<String> {
+            private final char fDelimiter;
+
+            public Registry(char delimiter) {
+                fDelimiter = delimiter;
+            }
+
+            @Override
+            protected Character getSegmentDelimiter() {
+                return fDelimiter;
+            }
+        }
+        Registry registry = new Registry('.');
+        registry.addExtension("a.b", "x");
+        assertEquals("[x]", registry.getExtensions("a.b.c").toString());
+        assertEquals(".a.b.", registry.getNearestPath("a.b.c"));
+        assertEquals("[.a.b.]", Arrays.toString(registry.getPrefixes("x")));
+    }
+
+    public void testExtensions() {
+        ExtensionRegistry<String> registry = new ExtensionRegistry<String>();
+        assertNull(registry.getExtensions("/a/b"));
+        registry.addExtension("/a", "z");
+        registry.addExtension("/a", "x");
+        registry.addExtension("/a/b/c", "y");
+        assertEquals("[x, z]", registry.getExtensions("/a/b").toString());
+        assertEquals("[y]", registry.getExtensions("/a/b/c/d").toString());
+        assertEquals("/a/b/c/", registry.getNearestPath("/a/b/c/d"));
+        assertNull(registry.getExtensions("/b"));
+        StringBuilder buf = new StringBuilder("x/a/b/c/d?q=1");
+        assertEquals("[y]", registry.getExtensions(buf, 1, 9).toString());
+        assertEquals("[x, z]", registry.getExtensions(buf, 1, 4).toString());
+
+        Collection<String> list = registry.getExtensions("/a");
+        try {
+            list.add("w");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+
+        assertTrue(registry.removeExtension("/a", "x"));
+        assertFalse(registry.removeExtension("/a", "x"));
+        assertFalse(registry.removeExtension("/unknown", "x"));
+        // Returned collections are not changed by further modifications
+        assertEquals("[x, z]", list.toString());
+        assertEquals("[z]", registry.getExtensions("/a/b").toString());
+
+        registry.addExtension("/b", "y");
+        assertTrue(registry.removeExtension("y"));
+        assertNull(registry.getExtensions("/b"));
+        assertEquals("[z]", registry.getExtensions("/a/b/c/d").toString());
+        assertEquals("/a/", registry.getNearestPath("/a/b/c/d"));
+    }
+
+    public void testMergedExtensions() {
+        ExtensionRegistry<String> registry = new ExtensionRegistry<String>();
+        assertNull(registry.getMergedExtensions("/a/b/c"));
+        registry
+            .newBatch()
+            .addExtension("/", "d")
+            .addExtension("/a", "c")
+            .addExtension("/a/b", "a")
+            .addExtension("/a/b/c", "b")
+            .addExtension("/x", "e")
+            .commit();
+        Collection<String> abc = registry.getMergedExtensions("/a/b/c/d");
+        assertEquals("[a, b, c, d]", abc.toString());
+        assertSame(abc, registry.getMergedExtensions("/a/b/c"));
+        StringBuilder buf = new StringBuilder("x/a/b/c?q=1");
+        assertSame(abc, registry.getMergedExtensions(buf, 1, 7));
+        Collection<String> ab = registry.getMergedExtensions("/a/b/z");
+        assertEquals("[a, c, d]", ab.toString());
+        Collection<String> x = registry.getMergedExtensions("/x/y");
+        assertEquals("[d, e]", x.toString());
+
+        // Results of other prefixes are kept
+        AbstractExtensionRegistry.Snapshot<String> snapshot = registry
+            .getSnapshot();
+        registry.addExtension("/a/b", "f");
+        assertSame(abc, snapshot.getMergedExtensions("/a/b/c"));
+        assertSame(x, registry.getMergedExtensions("/x"));
+        assertEquals("[a, c, d, f]", registry
+            .getMergedExtensions("/a/b")
+            .toString());
+        assertEquals("[a, b, c, d, f]", registry
+            .getMergedExtensions("/a/b/c")
+            .toString());
+
+        // A new prefix between registered ones
+        registry.addExtension("/a/b/c/d", "g");
+        assertEquals("[a, b, c, d, f]", registry
+            .getMergedExtensions("/a/b/c")
+            .toString());
+        assertEquals("[a, b, c, d, f, g]", registry
+            .getMergedExtensions("/a/b/c/d/e")
+            .toString());
+
+        registry.removeExtension("d");
+        assertEquals("[e]", registry.getMergedExtensions("/x").toString());
+        assertNull(registry.getMergedExtensions("/y"));
+    }
+
+    public void testReverseIndex() {
+        ExtensionRegistry<String> registry = new ExtensionRegistry<String>();
+        assertEquals(0, registry.getPrefixes("x").length);
+        registry
+            .newBatch()
+            .addExtension("/b", "x")
+            .addExtension("a", "x")
+            .addExtension("/a/", "x")
+            .addExtension("/a/c", "y")
+            .commit();
+        assertEquals("[/a/, /b/]", Arrays.toString(registry.getPrefixes("x")));
+        assertEquals("[x, x]", registry.getExtensions("/a").toString());
+
+        // One of two registrations is removed
+        assertTrue(registry.removeExtension("/a", "x"));
+        assertEquals("[/a/, /b/]", Arrays.toString(registry.getPrefixes("x")));
+        assertTrue(registry.removeExtension("x"));
+        assertEquals(0, registry.getPrefixes("x").length);
+        assertFalse(registry.removeExtension("x"));
+        assertEquals("[/a/c/]", Arrays.toString(registry
+            .getSnapshot()
+            .getPrefixes()));
+        assertEquals("[/a/c/]", Arrays.toString(registry.getPrefixes("y")));
+
+        // Extensions added and removed in the same batch
+        assertTrue(registry
+            .newBatch()
+            .addExtension("/d", "y")
+            .removeExtension("y")
+            .addExtension("/e", "y")
+            .commit());
+        assertEquals("[/e/]", Arrays.toString(registry.getPrefixes("y")));
+        assertEquals("[/e/]", Arrays.toString(registry
+            .getSnapshot()
+            .getPrefixes()));
+    }
+
+}
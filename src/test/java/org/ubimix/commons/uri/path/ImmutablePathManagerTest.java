@@ -0,0 +1,134 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class ImmutablePathManagerTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public ImmutablePathManagerTest(String name) {
+        super(name);
+    }
+
+    public void test() {
+        ImmutablePathManager<String> p = new ImmutablePathManager.Builder<String>()
+            .add("/x/y/z/", "XYZ")
+            .add("/a/b/c/d", "ABCD")
+            .add("/a/", "A")
+            .add("/a/b/c/", "ABC")
+            .add("a", "A2")
+            .build();
+        assertEquals(4, p.size());
+        assertEquals("A", p.getExactValue("/a/"));
+        assertEquals("/a/", p.getNearestPath("/a/b/"));
+        assertEquals("/a/", p.getNearestPath("/a/b/d/"));
+        assertEquals("/a/b/c/", p.getNearestPath("/a/b/c/x/"));
+        assertEquals("/a/b/c/d/", p.getNearestPath("/a/b/c/d/e"));
+        assertEquals("/", p.getNearestPath("/A/B/"));
+        assertEquals("/", p.getNearestPath("/x/y/"));
+        assertEquals("/x/y/z/", p.getNearestPath("/x/y/z/A/B/C/"));
+        assertTrue(p.exists("/a/b/c"));
+        assertFalse(p.exists("/a/b"));
+        assertNull(p.getNearestEntry("/b/"));
+    }
+
+    public void testCompatibility() {
+        Random random = new Random(123);
+        ImmutablePathManager.Builder<String> builder = new ImmutablePathManager.Builder<String>();
+        PathManager<String> list = new PathManager<String>();
+        for (int i = 0; i < 300; i++) {
+            String path = PathManagerAssert.newPath(random);
+            builder.add(path, "v" + i);
+            list.add(path, "v" + i);
+        }
+        PathManagerAssert.assertCompatible(list, builder.build(), random, 2000);
+    }
+
+    public void testDerive() {
+        Random random = new Random(321);
+        PathManager<String> list = new PathManager<String>();
+        ImmutablePathManager<String> p = new ImmutablePathManager.Builder<String>()
+            .build();
+        for (int i = 0; i < 100; i++) {
+            Map<String, String> additions = new LinkedHashMap<String, String>();
+            for (int j = random.nextInt(5); j > 0; j--) {
+                String path = PathManagerAssert.newPath(random);
+                additions.put(path, "v" + i + "-" + j);
+            }
+            String removed = PathManagerAssert.newPath(random);
+            list.remove(removed);
+            for (Entry<String, String> entry : additions.entrySet()) {
+                list.remove(entry.getKey());
+                list.add(entry.getKey(), entry.getValue());
+            }
+            ImmutablePathManager<String> next = p.derive(
+                additions,
+                Collections.singleton(removed));
+            PathManagerAssert.assertCompatible(
+                list,
+                next,
+                PathManagerAssert.newPath(random));
+            p = next;
+        }
+        assertEquals(
+            Arrays.asList(list.getAllEntries()),
+            Arrays.asList(p.toBuilder().build().getAllEntries()));
+        PathManagerAssert.assertCompatible(list, p, random, 500);
+    }
+
+    public void testImmutable() {
+        ImmutablePathManager<String> p = new ImmutablePathManager.Builder<String>()
+            .add("/a/", "A")
+            .build();
+        ImmutablePathManager<String> q = p.derive(Collections.singletonMap(
+            "/b",
+            "B"), null);
+        assertNull(p.getExactEntry("/b/"));
+        assertEquals("B", q.getExactValue("/b/"));
+        try {
+            p.add("/c/", "C");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            p.remove("/a/");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            p.getExactEntry("/a/").setValue("X");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        p.getAllEntries()[0] = null;
+        assertEquals("A", p.getExactValue("/a/"));
+    }
+
+}
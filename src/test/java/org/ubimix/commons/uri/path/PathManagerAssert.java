@@ -0,0 +1,187 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+/**
+ * Shared fixtures and checks for tests of path managers. Each backend is
+ * compared with the reference {@link PathManager} on random paths; tests of
+ * backends add only their specific cases.
+ * 
+ * @author kotelnikov
+ */
+public class PathManagerAssert extends Assert {
+
+    private static final String[] SEGMENTS = { "a", "b", "ab", "a-b", "c", "" };
+
+    /**
+     * Checks that the given manager contains the same entries as the
+     * reference manager and gives the same results for random paths.
+     * 
+     * @param expected the reference manager
+     * @param actual the checked manager
+     * @param random the source of random paths
+     * @param count the number of random paths to check
+     * @param segments additional segments of random paths
+     */
+    public static void assertCompatible(
+        PathManager<String> expected,
+        AbstractPathManager<String> actual,
+        Random random,
+        int count,
+        String... segments) {
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(
+            Arrays.asList(expected.getAllPrefixes()),
+            Arrays.asList(actual.getAllPrefixes()));
+        for (String path : new String[] { "", "/", "//", "a", "a/", "//a//" }) {
+            assertCompatible(expected, actual, path);
+        }
+        for (int i = 0; i < count; i++) {
+            String path = newPath(random, segments);
+            if (random.nextBoolean() && path.length() > 0) {
+                path = path.substring(1);
+            }
+            if (random.nextBoolean()) {
+                path += "/";
+            }
+            assertCompatible(expected, actual, path);
+        }
+    }
+
+    /**
+     * Checks that the given manager gives the same results as the reference
+     * manager for the specified path and for a region of a longer sequence
+     * containing this path.
+     * 
+     * @param expected the reference manager
+     * @param actual the checked manager
+     * @param path the path to check
+     */
+    public static void assertCompatible(
+        PathManager<String> expected,
+        AbstractPathManager<String> actual,
+        String path) {
+        assertEquals(path, expected.getNearestEntry(path), actual
+            .getNearestEntry(path));
+        assertEquals(path, expected.getNearestPath(path), actual
+            .getNearestPath(path));
+        assertEquals(path, expected.getExactEntry(path), actual
+            .getExactEntry(path));
+        StringBuilder buf = new StringBuilder("xx/");
+        buf.append(path).append("/yy");
+        int end = 3 + path.length();
+        assertEquals(path, expected.getNearestEntry(path), actual
+            .getNearestEntry(buf, 3, end));
+        assertEquals(path, expected.getExactEntry(path), actual
+            .getExactEntry(buf, 3, end));
+        assertEquals(path, expected.getNearestValue(path), actual
+            .getNearestValue(buf, 3, end));
+        assertEquals(
+            path,
+            list(expected.getSubtreeEntries(path)),
+            list(actual.getSubtreeEntries(path)));
+        assertEquals(path, expected.getSubtreeSize(path), actual
+            .getSubtreeSize(path));
+        assertEquals(
+            path,
+            list(expected.getAncestorEntries(path)),
+            list(actual.getAncestorEntries(path)));
+    }
+
+    /**
+     * Applies the same random modifications to the reference manager and to
+     * the checked one and compares their results after each modification.
+     * 
+     * @param expected the reference manager
+     * @param actual the checked manager
+     * @param random the source of random paths
+     * @param count the number of modifications
+     */
+    public static void assertModifications(
+        PathManager<String> expected,
+        AbstractPathManager<String> actual,
+        Random random,
+        int count) {
+        for (int i = 0; i < count; i++) {
+            String path = newPath(random);
+            if (random.nextInt(3) > 0) {
+                assertEquals(path, expected.add(path, "v" + i), actual.add(
+                    path,
+                    "v" + i));
+            } else {
+                assertEquals(path, expected.remove(path), actual.remove(path));
+            }
+            assertCompatible(expected, actual, newPath(random));
+        }
+        assertCompatible(expected, actual, random, 0);
+    }
+
+    /**
+     * Returns all entries of the given iterator.
+     * 
+     * @param iterator the iterator
+     * @return a list of entries
+     */
+    public static List<Entry<String, String>> list(
+        Iterator<Entry<String, String>> iterator) {
+        List<Entry<String, String>> result = new ArrayList<Entry<String, String>>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a random path of up to four segments. Segments are chosen from
+     * a small set, so random paths often have common prefixes.
+     * 
+     * @param random the source of random numbers
+     * @param segments additional segments of paths
+     * @return a random path
+     */
+    public static String newPath(Random random, String... segments) {
+        StringBuilder buf = new StringBuilder();
+        int len = random.nextInt(5);
+        int count = SEGMENTS.length + segments.length;
+        for (int i = 0; i < len; i++) {
+            int pos = random.nextInt(count);
+            buf.append('/').append(
+                pos < SEGMENTS.length
+                    ? SEGMENTS[pos]
+                    : segments[pos - SEGMENTS.length]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * This class contains only static methods.
+     */
+    private PathManagerAssert() {
+    }
+
+}
@@ -0,0 +1,105 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.uri.path;
+
+import java.util.Map.Entry;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kotelnikov
+ */
+public class RadixPathManagerTest extends TestCase {
+
+    /**
+     * @param name
+     */
+    public RadixPathManagerTest(String name) {
+        super(name);
+    }
+
+    private void add(AbstractPathManager<String> p, String string) {
+        p.add(string, string);
+    }
+
+    public void test() {
+        RadixPathManager<String> p = new RadixPathManager<String>();
+        add(p, "/a/b/c/");
+        add(p, "/a/");
+        Entry<String, String> entry = p.remove("/a/b/c/");
+        assertEquals("/a/b/c/", entry.getKey());
+        entry = p.remove("/a/");
+        assertEquals("/a/", entry.getKey());
+        assertEquals(0, p.size());
+
+        add(p, "/a/b/c/");
+        add(p, "/a/b/c/d/");
+        add(p, "/a/");
+        add(p, "/x/y/z/");
+        assertEquals("/a/", p.getNearestPath("/a/"));
+        assertEquals("/a/", p.getNearestPath("/a/b/"));
+        assertEquals("/a/", p.getNearestPath("/a/b/d/"));
+        assertEquals("/a/b/c/", p.getNearestPath("/a/b/c/"));
+        assertEquals("/a/b/c/", p.getNearestPath("/a/b/c/x/"));
+        assertEquals("/a/b/c/d/", p.getNearestPath("/a/b/c/d/"));
+        assertEquals("/", p.getNearestPath("/A/B/"));
+        assertEquals("/", p.getNearestPath("/"));
+        assertEquals("/x/y/z/", p.getNearestPath("/x/y/z/A/B/C/"));
+        assertEquals("/", p.getNearestPath("/x/y/"));
+        assertTrue(p.exists("/a/b/c"));
+        assertFalse(p.exists("/a/b"));
+        assertNull(p.remove("/a/b/"));
+    }
+
+    public void testCompatibility() {
+        Random random = new Random(123);
+        PathManager<String> list = new PathManager<String>();
+        RadixPathManager<String> tree = new RadixPathManager<String>();
+        PathManagerAssert.assertModifications(list, tree, random, 5000);
+        PathManagerAssert.assertCompatible(list, tree, random, 2000);
+        assertEquals(list.toString(), tree.toString());
+    }
+
+    public void testDelimiter() {
+        RadixPathManager<String> p = new RadixPathManager<String>() {
+            @Override
+            protected Character getSegmentDelimiter() {
+                return '.';
+            }
+        };
+        add(p, "com.foo");
+        add(p, "com.foo.www");
+        assertEquals(".com.foo.", p.getNearestPath("com.foo.images"));
+        assertEquals(".com.foo.www.", p.getNearestPath("com.foo.www.a"));
+        assertEquals(".", p.getNearestPath("com.bar"));
+    }
+
+    public void testTwo() {
+        RadixPathManager<String> p = new RadixPathManager<String>();
+        p.add("/n", "N");
+        p.add("/x", "X");
+        p.add("", "A");
+        p.add("", "B");
+
+        assertEquals("A", p.getNearestValue("/m"));
+        assertEquals("N", p.getNearestValue("/n/m"));
+        assertEquals("A", p.getNearestValue("/b"));
+        assertEquals(3, p.size());
+    }
+
+}